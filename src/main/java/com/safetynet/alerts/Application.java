@@ -2,11 +2,13 @@ package com.safetynet.alerts;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 /**
  * Main application class for SafetyNet Alerts.
  */
 @SpringBootApplication
+@EnableScheduling
 public class Application {
 
 	/**
@@ -0,0 +1,171 @@
+package com.safetynet.alerts.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.PathContainer;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the number of requests handled at the same time, by priority class, so that a burst of
+ * heavy requests cannot take all request threads from life-safety searches.
+ *
+ * <p>Life-safety searches, {@code /fire} and {@code /childAlert}, are never limited. Bulk requests
+ * (flood coverage, community emails, exports and bulk imports) and standard requests (all others)
+ * each have their own number of slots. Bulk requests are CPU-bound, so they get one slot per core
+ * unless configured otherwise: more would only slow down the searches sharing the cores. A request
+ * finding no free slot in its class waits for one at most {@code admission.max-queue-time}, then
+ * is refused with 503 Service Unavailable and a {@code Retry-After} header, before any work is
+ * done.
+ *
+ * <p>Time spent waiting for a slot is published as the {@code admission.queue} timer, tagged by
+ * {@code priority} and {@code outcome} (admitted or rejected), and requests holding a slot as the
+ * {@code admission.active} gauge.
+ */
+@Component
+@Slf4j
+public class AdmissionInterceptor implements HandlerInterceptor {
+
+	/**
+	 * Priority classes, each matching request paths. A request belongs to the first class matching
+	 * its path.
+	 */
+	public enum Priority {
+		LIFE_SAFETY("/fire/**", "/childAlert/**"),
+		BULK("/flood/**", "/communityEmail", "/export", "/*/bulk"),
+		STANDARD("/**");
+
+		private final List<PathPattern> patterns;
+
+		Priority(String... patterns) {
+			this.patterns = Arrays.stream(patterns).map(PathPatternParser.defaultInstance::parse).toList();
+		}
+
+		/**
+		 * Returns the priority class of a request path.
+		 *
+		 * @param path the request path, without context path
+		 * @return the priority class
+		 */
+		public static Priority of(String path) {
+			var pathContainer = PathContainer.parsePath(path);
+			for (var priority : values()) {
+				if (priority.patterns.stream().anyMatch(pattern -> pattern.matches(pathContainer))) {
+					return priority;
+				}
+			}
+			return STANDARD;
+		}
+
+		private String tag() {
+			return name().toLowerCase(Locale.ROOT).replace('_', '-');
+		}
+	}
+
+	// held by a request from admission to completion, including asynchronous dispatches
+	private static final String SLOT_ATTRIBUTE = AdmissionInterceptor.class.getName() + ".slot";
+
+	private static final String RETRY_AFTER_SECONDS = "1";
+
+	private final Map<Priority, Semaphore> slots = new EnumMap<>(Priority.class);
+
+	private final Map<Priority, Timer> admitted = new EnumMap<>(Priority.class);
+
+	private final Map<Priority, Timer> rejected = new EnumMap<>(Priority.class);
+
+	private final Duration maxQueueTime;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param meterRegistry registry for admission metrics
+	 * @param standardSlots number of standard requests handled at the same time
+	 * @param bulkSlots number of bulk requests handled at the same time, or 0 for one per available
+	 *                  core
+	 * @param maxQueueTime how long a request may wait for a slot before being refused
+	 */
+	public AdmissionInterceptor(MeterRegistry meterRegistry,
+								@Value("${admission.standard.max-concurrent:32}") int standardSlots,
+								@Value("${admission.bulk.max-concurrent:0}") int bulkSlots,
+								@Value("${admission.max-queue-time:100ms}") Duration maxQueueTime) {
+		this.maxQueueTime = maxQueueTime;
+		if (bulkSlots <= 0) {
+			bulkSlots = Runtime.getRuntime().availableProcessors();
+		}
+		slots.put(Priority.STANDARD, new Semaphore(standardSlots, true));
+		slots.put(Priority.BULK, new Semaphore(bulkSlots, true));
+
+		slots.forEach((priority, semaphore) -> {
+			int maxSlots = semaphore.availablePermits();
+			admitted.put(priority, Timer.builder("admission.queue")
+					.tag("priority", priority.tag()).tag("outcome", "admitted")
+					.description("Time spent by requests waiting for a slot")
+					.register(meterRegistry));
+			rejected.put(priority, Timer.builder("admission.queue")
+					.tag("priority", priority.tag()).tag("outcome", "rejected")
+					.description("Time spent by requests waiting for a slot")
+					.register(meterRegistry));
+			Gauge.builder("admission.active", semaphore, free -> maxSlots - free.availablePermits())
+					.tag("priority", priority.tag())
+					.description("Requests holding a slot")
+					.register(meterRegistry);
+		});
+		log.info("Admission of {} standard and {} bulk requests at a time, waiting at most {}",
+				standardSlots, bulkSlots, maxQueueTime);
+	}
+
+	@Override
+	public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler)
+			throws InterruptedException {
+		if (request.getAttribute(SLOT_ATTRIBUTE) != null) {
+			// asynchronous dispatch of an admitted request, still holding its slot
+			return true;
+		}
+		var priority = Priority.of(request.getRequestURI().substring(request.getContextPath().length()));
+		var semaphore = slots.get(priority);
+		if (semaphore == null) {
+			return true;
+		}
+
+		long start = System.nanoTime();
+		if (!semaphore.tryAcquire(maxQueueTime.toNanos(), TimeUnit.NANOSECONDS)) {
+			rejected.get(priority).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+			log.warn("{} {} refused, no {} slot freed within {}", request.getMethod(), request.getRequestURI(),
+					priority.tag(), maxQueueTime);
+			response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+			response.setHeader(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS);
+			return false;
+		}
+		admitted.get(priority).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+		request.setAttribute(SLOT_ATTRIBUTE, semaphore);
+		return true;
+	}
+
+	@Override
+	public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+								Exception ex) {
+		if (request.getAttribute(SLOT_ATTRIBUTE) instanceof Semaphore semaphore) {
+			request.removeAttribute(SLOT_ATTRIBUTE);
+			semaphore.release();
+		}
+	}
+
+}
@@ -0,0 +1,24 @@
+package com.safetynet.alerts.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Clock;
+
+/**
+ * Configuration class for the application clock.
+ */
+@Configuration
+public class ClockConfig {
+
+	/**
+	 * Creates the clock giving the current date, in the default time zone like scheduled tasks.
+	 *
+	 * @return the system clock
+	 */
+	@Bean
+	public Clock clock() {
+		return Clock.systemDefaultZone();
+	}
+
+}
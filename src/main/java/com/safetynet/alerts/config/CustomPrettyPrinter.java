@@ -2,18 +2,27 @@ package com.safetynet.alerts.config;
 
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.PrettyPrinter;
+import com.fasterxml.jackson.core.util.Instantiatable;
 
 import java.io.IOException;
 
 /**
  * A custom pretty printer keeping current data.json formatting. Its semi-compact layout makes it
  * easier to manually check the actual stored data.
+ *
+ * <p>The printer keeps track of nesting levels, so each serialization gets its own
+ * {@link #createInstance() instance}: a single ObjectMapper can serve concurrent requests.
  */
-public class CustomPrettyPrinter implements PrettyPrinter {
+public class CustomPrettyPrinter implements PrettyPrinter, Instantiatable<CustomPrettyPrinter> {
 
 	private int indentationLevel = 0;
 	private int arrayLevel = 0;
 
+	@Override
+	public CustomPrettyPrinter createInstance() {
+		return new CustomPrettyPrinter();
+	}
+
 	@Override
 	public void writeRootValueSeparator(JsonGenerator g) { }
 
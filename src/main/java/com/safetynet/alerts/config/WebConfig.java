@@ -0,0 +1,40 @@
+package com.safetynet.alerts.config;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.convert.ApplicationConversionService;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.format.FormatterRegistry;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Configuration class for request handling.
+ */
+@Configuration
+@RequiredArgsConstructor
+public class WebConfig implements WebMvcConfigurer {
+
+	private final AdmissionInterceptor admissionInterceptor;
+
+	/**
+	 * Registers the Spring Boot converters, so enum request parameters are bound leniently: for
+	 * example {@code ignore-case} or {@code Ignore_Case} both bind to {@code IGNORE_CASE}.
+	 *
+	 * @param registry the registry of converters
+	 */
+	@Override
+	public void addFormatters(FormatterRegistry registry) {
+		ApplicationConversionService.addApplicationConverters(registry);
+	}
+
+	/**
+	 * Registers admission control, limiting concurrent requests by priority class.
+	 *
+	 * @param registry the registry of interceptors
+	 */
+	@Override
+	public void addInterceptors(InterceptorRegistry registry) {
+		registry.addInterceptor(admissionInterceptor);
+	}
+
+}
@@ -0,0 +1,422 @@
+package com.safetynet.alerts.data;
+
+import com.safetynet.alerts.firestation.FirestationDTO;
+import com.safetynet.alerts.medicalrecord.MedicalRecordDTO;
+import com.safetynet.alerts.person.PersonDTO;
+import com.safetynet.alerts.util.JsonUtils;
+import com.safetynet.alerts.util.JsonUtils.ReadStatistics;
+import com.safetynet.alerts.util.JsonUtils.Section;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Compact binary copy of data.json, for fast cold starts.
+ *
+ * <p>When enabled with {@code data.binary-snapshot.enabled}, the snapshot is written next to
+ * data.json ({@code data.json.bin}) after each flush, and read instead of data.json at startup
+ * as long as data.json is unchanged since. data.json, or its split files, remain the
+ * human-editable source of truth: once edited, they no longer match the snapshot and are read
+ * again. Their {@link JsonUtils.Fingerprint size and checksum}, recorded in the snapshot header,
+ * tell whether they changed, so that copies, restores or clock changes affecting modification
+ * times can neither hide an edit nor discard a valid snapshot.
+ *
+ * <p>After its header, the snapshot holds, for each node array of data.json, its name, its number
+ * of elements and the fields of each element. Strings are stored as length-prefixed UTF-8,
+ * birthdates as epoch days. Sections are streamed to and from the file, so neither writing nor
+ * reading holds more than one element at a time besides the buffers, whatever the file size.
+ *
+ * <p>A snapshot that cannot be read is never fatal: the store then loads data.json instead.
+ */
+@Component
+@Slf4j
+public class BinarySnapshot {
+
+	private static final int MAGIC = 0x534E4254; // "SNBT"
+
+	private static final int FORMAT_VERSION = 3;
+
+	private static final Map<String, Codec<?>> CODECS = new LinkedHashMap<>();
+
+	static {
+		CODECS.put("persons", new PersonCodec());
+		CODECS.put("firestations", new FirestationCodec());
+		CODECS.put("medicalrecords", new MedicalRecordCodec());
+	}
+
+	private final Path snapshotPath;
+
+	private final boolean enabled;
+
+	/**
+	 * Constructor locating the snapshot.
+	 *
+	 * @param path JSON file path, the snapshot being stored alongside
+	 * @param enabled whether binary snapshots are written and read
+	 */
+	public BinarySnapshot(@Value("${data.path}") String path,
+						  @Value("${data.binary-snapshot.enabled:false}") boolean enabled) {
+		var dataPath = Paths.get(path);
+		this.snapshotPath = dataPath.resolveSibling(dataPath.getFileName() + ".bin");
+		this.enabled = enabled;
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public Path getPath() {
+		return snapshotPath;
+	}
+
+	/**
+	 * Tells whether the snapshot should be read instead of JSON data files: it must be enabled,
+	 * exist, and have been written from data files of the same size and checksum.
+	 *
+	 * @param jsonUtils JSON data access
+	 * @return true if the snapshot is usable
+	 */
+	public boolean isFresh(JsonUtils jsonUtils) {
+		if (!enabled || !Files.exists(snapshotPath)) {
+			return false;
+		}
+		try (var input = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshotPath)))) {
+			if (input.readInt() != MAGIC || input.readInt() != FORMAT_VERSION) {
+				return false;
+			}
+			var written = new JsonUtils.Fingerprint(input.readLong(), input.readLong());
+			return written.equals(jsonUtils.fingerprint());
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Writes the snapshot. It is written to a temporary file first, forced to disk, then moved over
+	 * the previous snapshot.
+	 *
+	 * @param sections Collections of objects, by name of node array, which must not change while
+	 *                 written
+	 * @param source fingerprint of the data files holding the same objects
+	 */
+	public void write(Map<String, ? extends Collection<?>> sections, JsonUtils.Fingerprint source) {
+		var tempPath = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".tmp");
+		try {
+			try (var output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempPath), 1 << 16))) {
+				output.writeInt(MAGIC);
+				output.writeInt(FORMAT_VERSION);
+				output.writeLong(source != null ? source.size() : -1);
+				output.writeLong(source != null ? source.checksum() : -1);
+				output.writeInt(sections.size());
+				for (var section : sections.entrySet()) {
+					writeSection(output, section.getKey(), section.getValue());
+				}
+			}
+			JsonUtils.replace(tempPath, snapshotPath);
+			log.debug("Binary snapshot written");
+		} catch (IOException e) {
+			log.error("Cannot write binary snapshot: {}", e.getMessage());
+			throw new RuntimeException("Cannot write binary snapshot: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Deletes the snapshot, so that it is neither read again nor trusted until rewritten.
+	 */
+	public void delete() {
+		try {
+			Files.deleteIfExists(snapshotPath);
+		} catch (IOException e) {
+			log.warn("Cannot delete binary snapshot: {}", e.getMessage());
+		}
+	}
+
+	/**
+	 * Reads the snapshot, decoding elements of the given node arrays. Elements of other node
+	 * arrays are decoded and dropped.
+	 *
+	 * @param sections Node arrays to decode
+	 * @return read statistics
+	 * @throws RuntimeException if the snapshot cannot be read or decoded, the given node arrays
+	 *         having possibly received part of its elements
+	 */
+	public ReadStatistics read(List<Section<?>> sections) {
+		var sectionsByName = sections.stream().collect(Collectors.toMap(Section::name, Function.identity()));
+		var heapPools = ManagementFactory.getMemoryPoolMXBeans().stream()
+				.filter(pool -> pool.getType() == MemoryType.HEAP).toList();
+		heapPools.forEach(MemoryPoolMXBean::resetPeakUsage);
+		long start = System.nanoTime();
+		long records = 0;
+		long discarded = 0;
+
+		try (var input = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshotPath), 1 << 16))) {
+			if (input.readInt() != MAGIC || input.readInt() != FORMAT_VERSION) {
+				throw new IOException("not a binary snapshot of a supported version");
+			}
+			// fingerprint of the source data files
+			input.skipNBytes(2 * Long.BYTES);
+			int sectionCount = input.readInt();
+			for (int i = 0; i < sectionCount; i++) {
+				var name = readString(input);
+				var codec = codec(name);
+				int count = input.readInt();
+				var section = sectionsByName.get(name);
+				for (int j = 0; j < count; j++) {
+					if (section == null) {
+						codec.decode(input);
+						continue;
+					}
+					if (!decode(input, section)) {
+						discarded++;
+					}
+					records++;
+				}
+			}
+		} catch (IOException | RuntimeException e) {
+			// left to the caller to recover from
+			throw new RuntimeException("Cannot read binary snapshot: " + e.getMessage(), e);
+		}
+
+		long peakHeap = heapPools.stream().mapToLong(pool -> pool.getPeakUsage().getUsed()).sum();
+		return new ReadStatistics(records, discarded, snapshotPath.toFile().length(),
+				Duration.ofNanos(System.nanoTime() - start), peakHeap);
+	}
+
+	/**
+	 * Rewrites the snapshot from the content of data.json, whatever its freshness.
+	 *
+	 * @param jsonUtils JSON data access
+	 * @return statistics of the data.json read
+	 */
+	public ReadStatistics fromJson(JsonUtils jsonUtils) {
+		var sections = emptySections();
+		var statistics = jsonUtils.read(collectors(sections));
+		write(sections, jsonUtils.fingerprint());
+		return statistics;
+	}
+
+	/**
+	 * Rewrites data.json from the content of the snapshot.
+	 *
+	 * @param jsonUtils JSON data access
+	 * @return statistics of the snapshot read
+	 */
+	public ReadStatistics toJson(JsonUtils jsonUtils) {
+		var sections = emptySections();
+		var statistics = read(collectors(sections));
+		// matches the rewritten data.json
+		write(sections, jsonUtils.update(sections));
+		return statistics;
+	}
+
+	private static Map<String, List<Object>> emptySections() {
+		var sections = new LinkedHashMap<String, List<Object>>();
+		CODECS.keySet().forEach(name -> sections.put(name, new ArrayList<>()));
+		return sections;
+	}
+
+	private static List<Section<?>> collectors(Map<String, List<Object>> sections) {
+		return CODECS.entrySet().stream()
+				.<Section<?>>map(codec -> collector(codec.getKey(), codec.getValue().type(), sections.get(codec.getKey())))
+				.toList();
+	}
+
+	private static <T> Section<T> collector(String name, Class<T> type, List<Object> values) {
+		return new Section<>(name, type, values::add);
+	}
+
+	private void writeSection(DataOutputStream output, String name, Collection<?> values) throws IOException {
+		var codec = codec(name);
+		writeString(output, name);
+		output.writeInt(values.size());
+		for (var value : values) {
+			codec.encodeUnchecked(output, value);
+		}
+	}
+
+	private <T> boolean decode(DataInputStream input, Section<T> section) throws IOException {
+		var value = codec(section.name()).decode(input);
+		return section.consumer().test(section.type().cast(value));
+	}
+
+	private static Codec<?> codec(String name) {
+		var codec = CODECS.get(name);
+		if (codec == null) {
+			throw new IllegalArgumentException("No binary codec for " + name);
+		}
+		return codec;
+	}
+
+	private static void writeString(DataOutputStream output, String value) throws IOException {
+		if (value == null) {
+			output.writeInt(-1);
+		} else {
+			var bytes = value.getBytes(UTF_8);
+			output.writeInt(bytes.length);
+			output.write(bytes);
+		}
+	}
+
+	private static String readString(DataInputStream input) throws IOException {
+		int length = input.readInt();
+		if (length < 0) {
+			return null;
+		}
+		return new String(input.readNBytes(length), UTF_8);
+	}
+
+	private static void writeStrings(DataOutputStream output, Set<String> values) throws IOException {
+		if (values == null) {
+			output.writeInt(-1);
+		} else {
+			output.writeInt(values.size());
+			for (var value : values) {
+				writeString(output, value);
+			}
+		}
+	}
+
+	private static Set<String> readStrings(DataInputStream input) throws IOException {
+		int size = input.readInt();
+		if (size < 0) {
+			return null;
+		}
+		var values = new HashSet<String>(size * 2);
+		for (int i = 0; i < size; i++) {
+			values.add(readString(input));
+		}
+		return values;
+	}
+
+	/**
+	 * Binary encoding of one type of data.
+	 */
+	private interface Codec<T> {
+
+		Class<T> type();
+
+		void encode(DataOutputStream output, T value) throws IOException;
+
+		T decode(DataInputStream input) throws IOException;
+
+		@SuppressWarnings("unchecked")
+		default void encodeUnchecked(DataOutputStream output, Object value) throws IOException {
+			encode(output, (T) value);
+		}
+
+	}
+
+	private static class PersonCodec implements Codec<PersonDTO> {
+
+		@Override
+		public Class<PersonDTO> type() {
+			return PersonDTO.class;
+		}
+
+		@Override
+		public void encode(DataOutputStream output, PersonDTO person) throws IOException {
+			writeString(output, person.getFirstName());
+			writeString(output, person.getLastName());
+			writeString(output, person.getAddress());
+			writeString(output, person.getCity());
+			writeString(output, person.getZip());
+			writeString(output, person.getPhone());
+			writeString(output, person.getEmail());
+		}
+
+		@Override
+		public PersonDTO decode(DataInputStream input) throws IOException {
+			var person = new PersonDTO();
+			person.setFirstName(readString(input));
+			person.setLastName(readString(input));
+			person.setAddress(readString(input));
+			person.setCity(readString(input));
+			person.setZip(readString(input));
+			person.setPhone(readString(input));
+			person.setEmail(readString(input));
+			return person;
+		}
+
+	}
+
+	private static class FirestationCodec implements Codec<FirestationDTO> {
+
+		@Override
+		public Class<FirestationDTO> type() {
+			return FirestationDTO.class;
+		}
+
+		@Override
+		public void encode(DataOutputStream output, FirestationDTO firestation) throws IOException {
+			writeString(output, firestation.getAddress());
+			output.writeInt(firestation.getStation());
+		}
+
+		@Override
+		public FirestationDTO decode(DataInputStream input) throws IOException {
+			var firestation = new FirestationDTO();
+			firestation.setAddress(readString(input));
+			firestation.setStation(input.readInt());
+			return firestation;
+		}
+
+	}
+
+	private static class MedicalRecordCodec implements Codec<MedicalRecordDTO> {
+
+		private static final long NO_BIRTHDATE = Long.MIN_VALUE;
+
+		@Override
+		public Class<MedicalRecordDTO> type() {
+			return MedicalRecordDTO.class;
+		}
+
+		@Override
+		public void encode(DataOutputStream output, MedicalRecordDTO record) throws IOException {
+			writeString(output, record.getFirstName());
+			writeString(output, record.getLastName());
+			output.writeLong(record.getBirthdate() != null ? record.getBirthdate().toEpochDay() : NO_BIRTHDATE);
+			writeStrings(output, record.getMedications());
+			writeStrings(output, record.getAllergies());
+		}
+
+		@Override
+		public MedicalRecordDTO decode(DataInputStream input) throws IOException {
+			var record = new MedicalRecordDTO();
+			record.setFirstName(readString(input));
+			record.setLastName(readString(input));
+			long birthdate = input.readLong();
+			record.setBirthdate(birthdate != NO_BIRTHDATE ? LocalDate.ofEpochDay(birthdate) : null);
+			record.setMedications(readStrings(input));
+			record.setAllergies(readStrings(input));
+			return record;
+		}
+
+	}
+
+}
@@ -0,0 +1,92 @@
+package com.safetynet.alerts.data;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.exc.StreamReadException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.Validator;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Comparator;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Imports many entities at once from a JSON array or a stream of newline-delimited JSON objects.
+ *
+ * <p>Rows are decoded, validated and applied one at a time as the input is read, so the input is
+ * never held in memory. All changes are applied within a single {@link DataWriter#batch batch},
+ * written by one flush at the end of the import. Invalid rows are rejected without stopping the
+ * import; malformed JSON stops it, keeping the rows applied so far.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class BulkImporter {
+
+	private final ObjectMapper objectMapper;
+
+	private final Validator validator;
+
+	private final DataWriter writer;
+
+	/**
+	 * Imports rows of an input.
+	 *
+	 * @param input JSON array or newline-delimited JSON objects
+	 * @param type type of the rows
+	 * @param importer function applying a valid row, returning why it was rejected, or null if it
+	 *                 was created
+	 * @return the import summary
+	 */
+	public <T> ImportResult importRows(InputStream input, Class<T> type, Function<T, String> importer) {
+		var result = new ImportResult();
+		writer.batch(() -> {
+			try (var parser = objectMapper.getFactory().createParser(input)) {
+				var token = parser.nextToken();
+				var inArray = token == JsonToken.START_ARRAY;
+				if (inArray) {
+					token = parser.nextToken();
+				}
+				while (token != null && token != JsonToken.END_ARRAY) {
+					result.accept(importRow(parser, type, importer));
+					token = parser.nextToken();
+				}
+			} catch (StreamReadException e) {
+				log.error("Cannot read row {}: {}", result.getRows() + 1, e.getOriginalMessage());
+				result.setError("Cannot read row " + (result.getRows() + 1) + ": " + e.getOriginalMessage());
+			} catch (IOException e) {
+				log.error("Cannot read import: {}", e.getMessage());
+				throw new RuntimeException("Cannot read import: " + e.getMessage());
+			}
+			return result;
+		});
+		return result;
+	}
+
+	// decoded as a tree first, so that a row of the wrong shape leaves the parser on the next row
+	private <T> String importRow(JsonParser parser, Class<T> type, Function<T, String> importer) throws IOException {
+		var node = objectMapper.readTree(parser);
+		T row;
+		try {
+			row = objectMapper.treeToValue(node, type);
+		} catch (JsonProcessingException e) {
+			return "Invalid row: " + e.getOriginalMessage();
+		}
+
+		var violations = validator.validate(row);
+		if (!violations.isEmpty()) {
+			return violations.stream()
+					.map(violation -> violation.getPropertyPath() + " " + violation.getMessage())
+					.sorted(Comparator.naturalOrder())
+					.collect(Collectors.joining(", "));
+		}
+		return importer.apply(row);
+	}
+
+}
@@ -0,0 +1,25 @@
+package com.safetynet.alerts.data;
+
+/**
+ * Listener notified of every change applied to an {@link EntityTable}.
+ *
+ * <p>Listeners are called before the change is applied, holding the lock of the changed
+ * identifier, to derive and check whatever they need from it without any visible effect: throwing
+ * refuses the change, leaving the table and all listeners as they were. Once the change is applied,
+ * the action they returned publishes it.
+ *
+ * @param <T> type of the stored entities
+ */
+@FunctionalInterface
+public interface ChangeListener<T> {
+
+	/**
+	 * Called before an entity is added, replaced or removed.
+	 *
+	 * @param previous the entity before the change, or null if it is added
+	 * @param current the entity after the change, or null if it is removed
+	 * @return the action publishing the change once applied, which must not fail
+	 */
+	Runnable onChange(T previous, T current);
+
+}
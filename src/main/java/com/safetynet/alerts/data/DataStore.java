@@ -0,0 +1,132 @@
+package com.safetynet.alerts.data;
+
+import com.safetynet.alerts.firestation.FirestationDTO;
+import com.safetynet.alerts.medicalrecord.MedicalRecordDTO;
+import com.safetynet.alerts.person.PersonDTO;
+import com.safetynet.alerts.util.JsonUtils;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Long-lived typed store of SafetyNet Alerts data.
+ *
+ * <p>data.json is streamed once at startup into one {@link EntityTable} per array node. CRUD
+ * services then update these tables in place and search services read them directly, without
+ * going through the JSON tree again.
+ *
+ * <p>When a fresh {@link BinarySnapshot} is available, it is read instead of data.json, unless it
+ * turns out to be unreadable.
+ *
+ * <p>Changes recorded in the {@link Journal} since data.json was last written are replayed on
+ * top of it, once the store is constructed.
+ */
+@Component
+@Slf4j
+public class DataStore {
+
+	private static final int LOCK_STRIPES = 64;
+
+	private final StripedLocks locks = new StripedLocks(LOCK_STRIPES);
+
+	private final EntityTable<PersonDTO> persons = new EntityTable<>("persons", PersonDTO.class, PersonDTO::getId, locks);
+
+	private final EntityTable<MedicalRecordDTO> medicalRecords = new EntityTable<>("medicalrecords", MedicalRecordDTO.class, MedicalRecordDTO::getId, locks);
+
+	private final EntityTable<FirestationDTO> firestations = new EntityTable<>("firestations", FirestationDTO.class, FirestationDTO::getAddress, locks);
+
+	// in data.json order
+	private final List<EntityTable<?>> tables = List.of(persons, firestations, medicalRecords);
+
+	private final Journal journal;
+
+	private int replayedChanges;
+
+	/**
+	 * Constructor loading all data.
+	 *
+	 * @param jsonUtils JSON data access
+	 * @param journal journal of changes not written to data.json yet
+	 * @param binarySnapshot binary copy of data.json
+	 */
+	public DataStore(JsonUtils jsonUtils, Journal journal, BinarySnapshot binarySnapshot) {
+		this.journal = journal;
+		var sections = tables.stream().<JsonUtils.Section<?>>map(DataStore::section).toList();
+		JsonUtils.ReadStatistics statistics = null;
+		if (binarySnapshot.isFresh(jsonUtils)) {
+			try {
+				statistics = binarySnapshot.read(sections);
+				log.info("Data loaded from binary snapshot: {}", statistics);
+			} catch (RuntimeException e) {
+				// data.json holds the same data, and the snapshot is rewritten from it
+				log.warn("{}, deleted and loading data.json instead", e.getMessage());
+				binarySnapshot.delete();
+				tables.forEach(EntityTable::clear);
+			}
+		}
+		if (statistics == null) {
+			statistics = jsonUtils.read(sections);
+			log.info("Data loaded: {}", statistics);
+		}
+		if (statistics.discarded() > 0) {
+			log.warn("{} duplicated records ignored", statistics.discarded());
+		}
+		tables.forEach(table -> log.info("{} \"{}\" loaded", table.size(), table.name()));
+	}
+
+	/**
+	 * Replays the changes journaled since data.json was last written, without notifying
+	 * listeners. Called once the store is constructed, before it is used.
+	 */
+	@PostConstruct
+	public void replayJournal() {
+		replayedChanges = journal.replay(this);
+	}
+
+	public EntityTable<PersonDTO> persons() {
+		return persons;
+	}
+
+	public EntityTable<MedicalRecordDTO> medicalRecords() {
+		return medicalRecords;
+	}
+
+	public EntityTable<FirestationDTO> firestations() {
+		return firestations;
+	}
+
+	/**
+	 * Returns the number of journaled changes replayed at startup.
+	 *
+	 * @return the number of replayed changes
+	 */
+	public int getReplayedChanges() {
+		return replayedChanges;
+	}
+
+	/**
+	 * Returns a table by name.
+	 *
+	 * @param name the table name
+	 * @return the table, or null if there is none with this name
+	 */
+	public EntityTable<?> table(String name) {
+		return tables.stream().filter(table -> table.name().equals(name)).findFirst().orElse(null);
+	}
+
+	/**
+	 * Returns all tables, in data.json order.
+	 *
+	 * @return the tables
+	 */
+	public List<EntityTable<?>> tables() {
+		return tables;
+	}
+
+	private static <T> JsonUtils.Section<T> section(EntityTable<T> table) {
+		return new JsonUtils.Section<>(table.name(), table.type(), table::load);
+	}
+
+}
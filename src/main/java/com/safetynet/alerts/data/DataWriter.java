@@ -0,0 +1,334 @@
+package com.safetynet.alerts.data;
+
+import com.safetynet.alerts.util.JsonUtils;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * Persists {@link DataStore} changes into data.json.
+ *
+ * <p>In {@link Mode#WRITE_THROUGH write-through} mode, each change rewrites data.json before
+ * being acknowledged. In {@link Mode#WRITE_BEHIND write-behind} mode, changes are acknowledged
+ * as soon as they are applied in memory: changed tables are only marked dirty, then flushed
+ * together at a regular interval, or as soon as enough changes are pending. In
+ * {@link Mode#JOURNAL journal} mode, changes are acknowledged once appended to the
+ * {@link Journal}, and flushes compact the journal into data.json. Pending changes are always
+ * flushed on shutdown, and changes replayed from the journal at startup are flushed right away.
+ *
+ * <p>Changes applied within a {@link #batch(Supplier) batch} are neither journaled nor flushed one
+ * by one: the batch ends with a single flush writing all of them, whatever the mode.
+ *
+ * <p>When enabled, the {@link BinarySnapshot} is rewritten after data.json on each flush, and at
+ * startup if it is missing or does not match data.json.
+ *
+ * <p>Each change is marked dirty and journaled before being applied, holding the lock of the
+ * changed identifier, so a change failing to be journaled is not applied at all. Data.json is
+ * rewritten once that lock is released, so rewriting it never holds up other changes of the
+ * identifier. Should a write-through flush fail, the change stays applied and pending, and the next
+ * flush writes it.
+ *
+ * <p>Flushes run under a {@link ReentrantLock} rather than a monitor, so that with virtual threads
+ * enabled, requests waiting for a flush writing to a slow disk release their carrier thread to
+ * other requests. The flusher then runs on a virtual thread too.
+ *
+ * <p>Flush latency is published as the {@code data.flush} timer, and the number of changes
+ * waiting for a flush as the {@code data.flush.pending} gauge.
+ */
+@Component
+@Slf4j
+public class DataWriter {
+
+	public enum Mode {
+		WRITE_THROUGH, WRITE_BEHIND, JOURNAL,
+	}
+
+	private final DataStore store;
+
+	private final JsonUtils jsonUtils;
+
+	private final Journal journal;
+
+	private final BinarySnapshot binarySnapshot;
+
+	private final Mode mode;
+
+	private final Duration flushInterval;
+
+	private final int flushThreshold;
+
+	private final Set<EntityTable<?>> dirtyTables = ConcurrentHashMap.newKeySet();
+
+	private final AtomicInteger pendingChanges = new AtomicInteger();
+
+	// whether a flush triggered by the threshold is waiting to run
+	private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+	private final ScheduledExecutorService flusher;
+
+	private final ReentrantLock flushLock = new ReentrantLock();
+
+	// held by changes from being journaled to being applied, and by flushes rotating the journal
+	private final ReentrantReadWriteLock rotationLock = new ReentrantReadWriteLock();
+
+	// whether the changes of the current thread belong to a batch
+	private final ThreadLocal<Boolean> batching = ThreadLocal.withInitial(() -> false);
+
+	private final Timer flushTimer;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param store the data store to persist
+	 * @param jsonUtils JSON data access
+	 * @param journal journal of changes
+	 * @param binarySnapshot binary copy of data.json
+	 * @param meterRegistry registry for flush metrics
+	 * @param mode write-through, write-behind or journal
+	 * @param flushInterval maximum delay before flushing changes in write-behind or journal mode
+	 * @param flushThreshold number of pending changes triggering a flush in write-behind or
+	 *                       journal mode
+	 * @param virtualThreads whether scheduled flushes run on a virtual thread
+	 */
+	public DataWriter(DataStore store, JsonUtils jsonUtils, Journal journal, BinarySnapshot binarySnapshot,
+					  MeterRegistry meterRegistry,
+					  @Value("${data.persistence.mode:write-through}") Mode mode,
+					  @Value("${data.persistence.flush-interval:1s}") Duration flushInterval,
+					  @Value("${data.persistence.flush-threshold:1000}") int flushThreshold,
+					  @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+		this.store = store;
+		this.jsonUtils = jsonUtils;
+		this.journal = journal;
+		this.binarySnapshot = binarySnapshot;
+		this.mode = mode;
+		this.flushInterval = flushInterval;
+		this.flushThreshold = flushThreshold;
+
+		flushTimer = Timer.builder("data.flush")
+				.description("Time spent writing changes to data.json")
+				.register(meterRegistry);
+		Gauge.builder("data.flush.pending", pendingChanges, AtomicInteger::get)
+				.description("Changes waiting to be written to data.json")
+				.register(meterRegistry);
+
+		if (mode != Mode.WRITE_THROUGH) {
+			var threads = virtualThreads ? Thread.ofVirtual() : Thread.ofPlatform();
+			flusher = Executors.newSingleThreadScheduledExecutor(threads.name("data-flusher").factory());
+		} else {
+			flusher = null;
+		}
+	}
+
+	/**
+	 * Registers for data changes, writes changes replayed from the journal, and schedules
+	 * flushes. Called once the writer is constructed, before any change.
+	 */
+	@PostConstruct
+	public void start() {
+		store.tables().forEach(this::register);
+
+		if (store.getReplayedChanges() > 0) {
+			dirtyTables.addAll(store.tables());
+			flush();
+		} else if (binarySnapshot.isEnabled() && !binarySnapshot.isFresh(jsonUtils)) {
+			binarySnapshot.write(sections(store.tables()), jsonUtils.fingerprint());
+		}
+
+		if (flusher != null) {
+			flusher.scheduleWithFixedDelay(this::flushQuietly,
+					flushInterval.toMillis(), flushInterval.toMillis(), TimeUnit.MILLISECONDS);
+			log.info("{} persistence, flushing every {} or {} changes", mode, flushInterval, flushThreshold);
+		}
+	}
+
+	public Mode getMode() {
+		return mode;
+	}
+
+	/**
+	 * Returns the number of changes not written to data.json yet.
+	 *
+	 * @return the number of pending changes
+	 */
+	public int getPendingChanges() {
+		return pendingChanges.get();
+	}
+
+	/**
+	 * Writes all tables to data.json at once, if any of them changed. In split layout, only the
+	 * files of changed tables are rewritten.
+	 */
+	public void flush() {
+		flushLock.lock();
+		try {
+			// changes from now on may schedule another flush
+			flushScheduled.set(false);
+			flushDirtyTables();
+		} finally {
+			flushLock.unlock();
+		}
+	}
+
+	private void flushDirtyTables() {
+		if (dirtyTables.isEmpty()) {
+			return;
+		}
+
+		// sealed before collecting dirty tables, and while no change is between its journal entry and
+		// its application, so that every change of a sealed segment is applied to a table written by
+		// this flush
+		long sealedBoundary;
+		List<EntityTable<?>> flushedTables;
+		int flushedChanges;
+		Map<String, Collection<?>> sections;
+		var split = jsonUtils.getLayout() == JsonUtils.Layout.SPLIT;
+		rotationLock.writeLock().lock();
+		try {
+			sealedBoundary = journal.rotate();
+			flushedTables = new ArrayList<>(dirtyTables);
+			dirtyTables.removeAll(flushedTables);
+			flushedChanges = pendingChanges.getAndSet(0);
+			// copied while no change is applied, so that data.json and the binary snapshot hold the
+			// same data, that of the sealed segments
+			sections = sections(split && !binarySnapshot.isEnabled() ? flushedTables : store.tables());
+		} finally {
+			rotationLock.writeLock().unlock();
+		}
+
+		var writtenSections = sections;
+		if (split) {
+			writtenSections = new LinkedHashMap<>(sections);
+			writtenSections.keySet().retainAll(flushedTables.stream().map(EntityTable::name).toList());
+		}
+		var jsonSections = writtenSections;
+		try {
+			flushTimer.record(() -> {
+				var fingerprint = jsonUtils.update(jsonSections);
+				if (binarySnapshot.isEnabled()) {
+					binarySnapshot.write(sections, fingerprint);
+				}
+				journal.deleteSealed(sealedBoundary);
+			});
+			log.debug("{} changes flushed", flushedChanges);
+		} catch (RuntimeException e) {
+			dirtyTables.addAll(flushedTables);
+			pendingChanges.addAndGet(flushedChanges);
+			throw e;
+		}
+	}
+
+	/**
+	 * Applies a batch of changes, then writes them with a single flush. Changes applied by the
+	 * current thread meanwhile are not journaled, so a batch interrupted by a crash is lost as a
+	 * whole, unless a scheduled flush already wrote part of it. Nested batches join the outer one.
+	 *
+	 * @param changes the changes to apply
+	 * @return the result of the changes
+	 */
+	public <T> T batch(Supplier<T> changes) {
+		if (batching.get()) {
+			return changes.get();
+		}
+
+		batching.set(true);
+		try {
+			return changes.get();
+		} finally {
+			batching.remove();
+			flush();
+		}
+	}
+
+	/**
+	 * Stops scheduled flushes and writes all pending changes.
+	 */
+	@PreDestroy
+	public void shutdown() throws InterruptedException {
+		if (flusher != null) {
+			flusher.shutdown();
+			flusher.awaitTermination(1, TimeUnit.MINUTES);
+		}
+		flush();
+		log.info("Data flushed on shutdown");
+	}
+
+	// copies of the given tables, in data.json order
+	private Map<String, Collection<?>> sections(Collection<EntityTable<?>> tables) {
+		var sections = new LinkedHashMap<String, Collection<?>>();
+		store.tables().stream().filter(tables::contains)
+				.forEach(table -> sections.put(table.name(), List.copyOf(table.values())));
+		return sections;
+	}
+
+	private <T> void register(EntityTable<T> table) {
+		table.setWriter(new EntityTable.Writer<>() {
+			@Override
+			public void write(T previous, T current, Runnable apply) {
+				changed(table, previous, current, apply);
+			}
+
+			@Override
+			public void afterWrite() {
+				written();
+			}
+		});
+	}
+
+	private <T> void changed(EntityTable<T> table, T previous, T current, Runnable apply) {
+		rotationLock.readLock().lock();
+		try {
+			if (mode == Mode.JOURNAL && !batching.get()) {
+				journal.append(Journal.entries(table, previous, current));
+			}
+			dirtyTables.add(table);
+			apply.run();
+			pendingChanges.incrementAndGet();
+		} finally {
+			rotationLock.readLock().unlock();
+		}
+	}
+
+	private void written() {
+		if (batching.get()) {
+			// written by the flush ending the batch
+			return;
+		}
+		if (mode == Mode.WRITE_THROUGH) {
+			flush();
+		} else if (pendingChanges.get() >= flushThreshold && flushScheduled.compareAndSet(false, true)) {
+			// past the threshold rather than at it, since batches and failed flushes overshoot it
+			flusher.execute(this::flushQuietly);
+		}
+	}
+
+	private void flushQuietly() {
+		try {
+			flush();
+		} catch (RuntimeException e) {
+			log.error("Flush failed, will retry: {}", e.getMessage());
+		}
+	}
+
+}
@@ -0,0 +1,292 @@
+package com.safetynet.alerts.data;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * In-memory table of decoded entities of one type, keyed by their unique identifier.
+ *
+ * <p>Entities are decoded once when the store is loaded and then served as is, so reading a
+ * table never involves any JSON processing.
+ *
+ * <p>Reads never block. Each change holds the {@link StripedLocks lock} of the changed
+ * identifier while listeners prepare it, it is written and applied, then listeners publish it, so
+ * listeners see the changes of an entity in the order they were applied, while changes of other
+ * entities proceed in parallel. A change refused by a listener or failing to be written is not
+ * applied at all. Writing work that must not hold up other changes, such as rewriting data.json,
+ * runs once the lock is released.
+ *
+ * @param <T> type of the stored entities
+ */
+public class EntityTable<T> {
+
+	private final String name;
+
+	private final Class<T> type;
+
+	private final Function<T, String> idMapper;
+
+	private final StripedLocks locks;
+
+	private final Map<String, T> entities = new ConcurrentHashMap<>();
+
+	private final List<ChangeListener<T>> listeners = new CopyOnWriteArrayList<>();
+
+	private volatile Writer<T> writer;
+
+	/**
+	 * Persistence of the changes of a table.
+	 *
+	 * @param <T> type of the stored entities
+	 */
+	interface Writer<T> {
+
+		/**
+		 * Records a change, then applies it, holding the lock of the changed identifier. Throwing
+		 * before applying the change refuses it.
+		 *
+		 * @param previous the entity before the change, or null if it is added
+		 * @param current the entity after the change, or null if it is removed
+		 * @param apply applies the change to the table
+		 */
+		void write(T previous, T current, Runnable apply);
+
+		/**
+		 * Called once a change is published and the lock of its identifier released.
+		 */
+		void afterWrite();
+
+	}
+
+	EntityTable(String name, Class<T> type, Function<T, String> idMapper, StripedLocks locks) {
+		this.name = name;
+		this.type = type;
+		this.idMapper = idMapper;
+		this.locks = locks;
+	}
+
+	/**
+	 * Returns the name of the table, matching the name of its array node in data.json.
+	 *
+	 * @return the table name
+	 */
+	public String name() {
+		return name;
+	}
+
+	public Class<T> type() {
+		return type;
+	}
+
+	/**
+	 * Returns the identifier of an entity of this table.
+	 *
+	 * @param entity the entity
+	 * @return the entity identifier
+	 */
+	public String idOf(T entity) {
+		return idMapper.apply(entity);
+	}
+
+	/**
+	 * Registers a listener notified of every subsequent change. Loading the table does not notify
+	 * listeners.
+	 *
+	 * @param listener the listener to register
+	 */
+	public void addListener(ChangeListener<T> listener) {
+		listeners.add(listener);
+	}
+
+	/**
+	 * Sets the writer of every subsequent change.
+	 *
+	 * @param writer the writer
+	 */
+	void setWriter(Writer<T> writer) {
+		this.writer = writer;
+	}
+
+	/**
+	 * Returns the entity with the given identifier.
+	 *
+	 * @param id the entity identifier
+	 * @return the entity, or null if there is none
+	 */
+	public T get(String id) {
+		return entities.get(id);
+	}
+
+	public boolean contains(String id) {
+		return entities.containsKey(id);
+	}
+
+	/**
+	 * Returns an unmodifiable live view of all entities of the table.
+	 *
+	 * @return the entities
+	 */
+	public Collection<T> values() {
+		return Collections.unmodifiableCollection(entities.values());
+	}
+
+	public int size() {
+		return entities.size();
+	}
+
+	/**
+	 * Adds a new entity, unless one with the same identifier already exists.
+	 *
+	 * @param entity the entity to add
+	 * @return true if the entity was added
+	 */
+	public boolean insert(T entity) {
+		return insert(entity, id -> true);
+	}
+
+	/**
+	 * Adds a new entity, provided a condition on its identifier holds, unless one with the same
+	 * identifier already exists. The condition is checked holding the lock of the identifier, so
+	 * changes of other entities sharing it, such as the person of a medical record, cannot
+	 * invalidate it before the entity is added.
+	 *
+	 * @param entity the entity to add
+	 * @param condition condition on the identifier of the entity
+	 * @return true if the entity was added
+	 */
+	public boolean insert(T entity, Predicate<String> condition) {
+		var id = idMapper.apply(entity);
+		var inserted = locks.locked(id, () -> {
+			if (entities.containsKey(id) || !condition.test(id)) {
+				return false;
+			}
+			change(null, entity);
+			return true;
+		});
+		if (inserted) {
+			afterChange();
+		}
+		return inserted;
+	}
+
+	/**
+	 * Replaces an existing entity. The new entity may carry a different identifier, in which case
+	 * it is stored under its new identifier, provided no other entity already uses it.
+	 *
+	 * @param id the identifier of the entity to replace
+	 * @param entity the replacing entity
+	 * @return true if the entity was replaced
+	 */
+	public boolean replace(String id, T entity) {
+		var newId = idMapper.apply(entity);
+		var replaced = locks.locked(id, newId, () -> {
+			var previous = entities.get(id);
+			if (previous == null || !newId.equals(id) && entities.containsKey(newId)) {
+				return false;
+			}
+			change(previous, entity);
+			return true;
+		});
+		if (replaced) {
+			afterChange();
+		}
+		return replaced;
+	}
+
+	/**
+	 * Removes an entity.
+	 *
+	 * @param id the identifier of the entity to remove
+	 * @return the removed entity, or null if there was none
+	 */
+	public T remove(String id) {
+		var removed = locks.locked(id, () -> {
+			var previous = entities.get(id);
+			if (previous != null) {
+				change(previous, null);
+			}
+			return previous;
+		});
+		if (removed != null) {
+			afterChange();
+		}
+		return removed;
+	}
+
+	/**
+	 * Adds a decoded entity without notifying listeners. Duplicated identifiers keep their first
+	 * occurrence.
+	 *
+	 * @param entity the decoded entity
+	 * @return false if the entity is a duplicate and was discarded
+	 */
+	boolean load(T entity) {
+		return entities.putIfAbsent(idMapper.apply(entity), entity) == null;
+	}
+
+	/**
+	 * Stores an entity, replacing any entity with the same identifier, without notifying
+	 * listeners. Used to replay journaled changes.
+	 *
+	 * @param entity the entity to store
+	 */
+	void restore(T entity) {
+		entities.put(idMapper.apply(entity), entity);
+	}
+
+	/**
+	 * Removes all entities without notifying listeners. Used to discard a partial load.
+	 */
+	void clear() {
+		entities.clear();
+	}
+
+	/**
+	 * Removes an entity without notifying listeners. Used to replay journaled changes.
+	 *
+	 * @param id the identifier of the entity to remove
+	 */
+	void discard(String id) {
+		entities.remove(id);
+	}
+
+	// holding the lock of the changed identifiers
+	private void change(T previous, T current) {
+		var publications = new ArrayList<Runnable>(listeners.size());
+		for (var listener : listeners) {
+			publications.add(listener.onChange(previous, current));
+		}
+
+		var writer = this.writer;
+		if (writer != null) {
+			writer.write(previous, current, () -> apply(previous, current));
+		} else {
+			apply(previous, current);
+		}
+		publications.forEach(Runnable::run);
+	}
+
+	private void apply(T previous, T current) {
+		if (current != null) {
+			entities.put(idMapper.apply(current), current);
+		}
+		if (previous != null && (current == null || !idMapper.apply(previous).equals(idMapper.apply(current)))) {
+			entities.remove(idMapper.apply(previous));
+		}
+	}
+
+	private void afterChange() {
+		var writer = this.writer;
+		if (writer != null) {
+			writer.afterWrite();
+		}
+	}
+
+}
@@ -0,0 +1,49 @@
+package com.safetynet.alerts.data;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Summary of a bulk import: how many rows were read and created, and why the other rows were
+ * rejected.
+ */
+@Data
+public class ImportResult {
+
+	private int rows;
+
+	private int created;
+
+	private final List<Rejection> rejected = new ArrayList<>();
+
+	/**
+	 * Why the import stopped before the end of the input, if it did.
+	 */
+	@JsonInclude(JsonInclude.Include.NON_NULL)
+	private String error;
+
+	/**
+	 * A rejected row.
+	 *
+	 * @param row the row number, starting at 1
+	 * @param reason why the row was rejected
+	 */
+	public record Rejection(int row, String reason) { }
+
+	public boolean isComplete() {
+		return error == null;
+	}
+
+	void accept(String rejection) {
+		rows++;
+		if (rejection == null) {
+			created++;
+		} else {
+			rejected.add(new Rejection(rows, rejection));
+		}
+	}
+
+}
@@ -0,0 +1,314 @@
+package com.safetynet.alerts.data;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Append-only journal of data changes.
+ *
+ * <p>Each change is appended as one JSON line to the active journal segment, next to data.json
+ * ({@code data.json.journal.1}, {@code data.json.journal.2}...). Writing a change therefore
+ * costs the size of the change, not the size of the dataset. With {@code data.journal.fsync}
+ * enabled, each appended batch is forced to disk before being acknowledged.
+ *
+ * <p>Compaction folds the journal into a fresh data.json: the active segment is first sealed,
+ * data.json is rewritten from memory, then sealed segments are deleted. At startup, segments left
+ * over are replayed on top of data.json. Replaying a change already present in data.json is
+ * harmless, since each entry holds the complete new state of an entity.
+ */
+@Component
+@Slf4j
+public class Journal {
+
+	private final Path directory;
+
+	private final String segmentPrefix;
+
+	private final ObjectMapper objectMapper;
+
+	private final ObjectWriter lineWriter;
+
+	private final boolean fsync;
+
+	// not a monitor, so that virtual threads waiting for a slow disk do not pin their carrier
+	private final ReentrantLock lock = new ReentrantLock();
+
+	private long activeSequence;
+
+	private FileChannel activeSegment;
+
+	/**
+	 * One journaled change: the new state of an entity, or its removal when value is null.
+	 *
+	 * @param table name of the changed table
+	 * @param id identifier of the changed entity
+	 * @param value new state of the entity, or null if it has been removed
+	 */
+	public record Entry(String table, String id, Object value) { }
+
+	/**
+	 * Constructor locating journal segments.
+	 *
+	 * @param path JSON file path, journal segments being stored alongside
+	 * @param objectMapper Jackson ObjectMapper
+	 * @param fsync whether to force each appended batch to disk
+	 */
+	public Journal(@Value("${data.path}") String path, ObjectMapper objectMapper,
+				   @Value("${data.journal.fsync:false}") boolean fsync) {
+		var dataPath = Paths.get(path).toAbsolutePath();
+		this.directory = dataPath.getParent();
+		this.segmentPrefix = dataPath.getFileName() + ".journal.";
+		this.objectMapper = objectMapper;
+		this.lineWriter = objectMapper.writer().without(SerializationFeature.INDENT_OUTPUT);
+		this.fsync = fsync;
+		this.activeSequence = segments().stream().mapToLong(this::sequenceOf).max().orElse(0) + 1;
+	}
+
+	/**
+	 * Converts a table change into journal entries. A change of identifier is journaled as the
+	 * removal of the previous entity followed by the new one.
+	 *
+	 * @param table the changed table
+	 * @param previous the entity before the change, or null if it has been added
+	 * @param current the entity after the change, or null if it has been removed
+	 * @return the journal entries
+	 */
+	public static <T> List<Entry> entries(EntityTable<T> table, T previous, T current) {
+		var entries = new ArrayList<Entry>(2);
+		if (previous != null && (current == null || !table.idOf(previous).equals(table.idOf(current)))) {
+			entries.add(new Entry(table.name(), table.idOf(previous), null));
+		}
+		if (current != null) {
+			entries.add(new Entry(table.name(), table.idOf(current), current));
+		}
+		return entries;
+	}
+
+	/**
+	 * Appends a batch of entries to the active segment.
+	 *
+	 * @param entries the entries to append
+	 */
+	public void append(List<Entry> entries) {
+		var lines = new ByteArrayOutputStream();
+		lock.lock();
+		try {
+			for (var entry : entries) {
+				lines.write(lineWriter.writeValueAsBytes(entry));
+				lines.write('\n');
+			}
+			if (activeSegment == null) {
+				activeSegment = FileChannel.open(segmentPath(activeSequence), CREATE, WRITE, APPEND);
+			}
+			var buffer = ByteBuffer.wrap(lines.toByteArray());
+			while (buffer.hasRemaining()) {
+				activeSegment.write(buffer);
+			}
+			if (fsync) {
+				activeSegment.force(false);
+			}
+		} catch (IOException e) {
+			log.error("Cannot write journal: {}", e.getMessage());
+			throw new RuntimeException("Cannot write journal: " + e.getMessage());
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Seals the active segment, so that the next entries go to a new segment.
+	 *
+	 * @return the sequence number of the new active segment; all segments before it are sealed
+	 */
+	public long rotate() {
+		lock.lock();
+		try {
+			if (activeSegment != null) {
+				try {
+					activeSegment.close();
+				} catch (IOException e) {
+					log.warn("Cannot close journal segment: {}", e.getMessage());
+				}
+				activeSegment = null;
+				activeSequence++;
+			}
+			return activeSequence;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Deletes sealed segments once their changes are written to data.json.
+	 *
+	 * @param boundary sequence number returned by {@link #rotate()}
+	 */
+	public void deleteSealed(long boundary) {
+		for (var segment : segments()) {
+			if (sequenceOf(segment) < boundary) {
+				try {
+					Files.deleteIfExists(segment);
+				} catch (IOException e) {
+					log.warn("Cannot delete journal segment {}: {}", segment, e.getMessage());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Applies all journaled changes to the store, without notifying listeners. Only the last line
+	 * of the last segment may be torn, by a crash during an append: it is ignored and cut off the
+	 * segment, so that it does not end up amid the segments appended afterwards.
+	 *
+	 * @param store the store loaded from data.json
+	 * @return the number of replayed changes
+	 * @throws RuntimeException if a segment cannot be read, or holds any other unreadable line
+	 */
+	int replay(DataStore store) {
+		int replayed = 0;
+		var segments = segments();
+		for (int i = 0; i < segments.size(); i++) {
+			var segment = segments.get(i);
+			var lastSegment = i == segments.size() - 1;
+			// decoding replaces malformed characters, so that a torn character fails parsing only
+			try (var reader = new BufferedReader(new InputStreamReader(Files.newInputStream(segment), UTF_8))) {
+				var line = reader.readLine();
+				while (line != null) {
+					var next = reader.readLine();
+					JsonNode entry;
+					try {
+						entry = objectMapper.readTree(line);
+					} catch (JsonProcessingException e) {
+						if (!lastSegment || next != null) {
+							throw corrupt(segment, "unreadable change: " + e.getOriginalMessage());
+						}
+						log.warn("Journal segment {} ends with an incomplete change, ignored", segment.getFileName());
+						cutLastLine(segment);
+						break;
+					}
+					replay(store, segment, entry);
+					replayed++;
+					line = next;
+				}
+			} catch (IOException e) {
+				log.error("Cannot read journal: {}", e.getMessage());
+				throw new RuntimeException("Cannot read journal: " + e.getMessage());
+			}
+		}
+		if (replayed > 0) {
+			log.info("{} journaled changes replayed", replayed);
+		}
+		return replayed;
+	}
+
+	private <T> void replay(DataStore store, Path segment, JsonNode entry) {
+		var name = entry.path("table").asText();
+		@SuppressWarnings("unchecked")
+		var table = (EntityTable<T>) store.table(name);
+		if (table == null) {
+			throw corrupt(segment, "change of unknown table '" + name + "'");
+		}
+		var value = entry.get("value");
+
+		if (value == null || value.isNull()) {
+			if (!entry.path("id").isTextual()) {
+				throw corrupt(segment, "removal from " + name + " without identifier");
+			}
+			table.discard(entry.get("id").asText());
+		} else {
+			T entity;
+			try {
+				entity = objectMapper.treeToValue(value, table.type());
+			} catch (JsonProcessingException e) {
+				throw corrupt(segment, "unreadable change of " + name + ": " + e.getOriginalMessage());
+			}
+			table.restore(entity);
+		}
+	}
+
+	// truncates a segment after its last newline, the torn line having none
+	private void cutLastLine(Path segment) throws IOException {
+		try (var channel = FileChannel.open(segment, READ, WRITE)) {
+			var buffer = ByteBuffer.allocate(8192);
+			var end = channel.size();
+			var length = end;
+			while (end > 0) {
+				var start = Math.max(0, end - buffer.capacity());
+				buffer.clear().limit((int) (end - start));
+				while (buffer.hasRemaining()) {
+					if (channel.read(buffer, start + buffer.position()) < 0) {
+						break;
+					}
+				}
+				for (int i = buffer.position() - 1; i >= 0; i--) {
+					if (buffer.get(i) == '\n' && start + i < length - 1) {
+						channel.truncate(start + i + 1);
+						channel.force(false);
+						return;
+					}
+				}
+				end = start;
+			}
+			channel.truncate(0);
+			channel.force(false);
+		}
+	}
+
+	// a complete line that is not a change of the store, unlike a torn last line
+	private static RuntimeException corrupt(Path segment, String reason) {
+		log.error("Journal segment {} is corrupt: {}", segment.getFileName(), reason);
+		return new RuntimeException("Journal segment " + segment.getFileName() + " is corrupt: " + reason);
+	}
+
+	private List<Path> segments() {
+		try (Stream<Path> files = Files.list(directory)) {
+			return files.filter(file -> file.getFileName().toString().startsWith(segmentPrefix))
+					.filter(file -> sequenceOf(file) > 0)
+					.sorted(Comparator.comparingLong(this::sequenceOf))
+					.toList();
+		} catch (IOException e) {
+			log.error("Cannot list journal segments: {}", e.getMessage());
+			throw new RuntimeException("Cannot list journal segments: " + e.getMessage());
+		}
+	}
+
+	private long sequenceOf(Path segment) {
+		try {
+			return Long.parseLong(segment.getFileName().toString().substring(segmentPrefix.length()));
+		} catch (NumberFormatException e) {
+			return 0;
+		}
+	}
+
+	private Path segmentPath(long sequence) {
+		return directory.resolve(segmentPrefix + sequence);
+	}
+
+}
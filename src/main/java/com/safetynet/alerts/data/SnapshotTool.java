@@ -0,0 +1,43 @@
+package com.safetynet.alerts.data;
+
+import com.safetynet.alerts.config.JsonConfig;
+import com.safetynet.alerts.util.JsonUtils;
+import com.safetynet.alerts.util.JsonUtils.Layout;
+
+/**
+ * Command line conversion between data.json and its {@link BinarySnapshot}, without starting
+ * the application.
+ *
+ * <p>Usage: {@code SnapshotTool json-to-binary|binary-to-json <path of data.json> [single|split]},
+ * the layout of JSON data files being single by default.
+ */
+public final class SnapshotTool {
+
+	private SnapshotTool() { }
+
+	public static void main(String[] args) {
+		if (args.length < 2 || args.length > 3) {
+			System.err.println("Usage: SnapshotTool json-to-binary|binary-to-json <path of data.json> [single|split]");
+			System.exit(2);
+		}
+
+		var layout = args.length == 3 ? Layout.valueOf(args[2].toUpperCase()) : Layout.SINGLE;
+		var jsonUtils = new JsonUtils(args[1], new JsonConfig().objectMapper(), layout);
+		var binarySnapshot = new BinarySnapshot(args[1], true);
+		switch (args[0]) {
+			case "json-to-binary" -> {
+				var statistics = binarySnapshot.fromJson(jsonUtils);
+				System.out.printf("%s written from %s%n", binarySnapshot.getPath(), statistics);
+			}
+			case "binary-to-json" -> {
+				var statistics = binarySnapshot.toJson(jsonUtils);
+				System.out.printf("%s written from %s%n", args[1], statistics);
+			}
+			default -> {
+				System.err.println("Unknown conversion: " + args[0]);
+				System.exit(2);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,83 @@
+package com.safetynet.alerts.data;
+
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Fixed pool of locks shared by entity identifiers.
+ *
+ * <p>An identifier always maps to the same lock, so changes of a given entity are serialized,
+ * while changes of entities mapped to different locks proceed in parallel. Since persons and
+ * medical records share identifiers, a person and their medical record are changed under the
+ * same lock.
+ */
+final class StripedLocks {
+
+	private final ReentrantLock[] locks;
+
+	/**
+	 * Constructor creating the locks.
+	 *
+	 * @param stripes the number of locks, rounded up to a power of two
+	 */
+	StripedLocks(int stripes) {
+		locks = new ReentrantLock[Integer.highestOneBit(Math.max(1, stripes - 1)) << 1];
+		for (int i = 0; i < locks.length; i++) {
+			locks[i] = new ReentrantLock();
+		}
+	}
+
+	/**
+	 * Runs an action holding the lock of an identifier.
+	 *
+	 * @param id the identifier
+	 * @param action the action to run
+	 * @return the result of the action
+	 */
+	<R> R locked(String id, Supplier<R> action) {
+		var lock = locks[index(id)];
+		lock.lock();
+		try {
+			return action.get();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Runs an action holding the locks of two identifiers. Locks are always acquired in the same
+	 * order, so that two threads locking the same identifiers cannot deadlock.
+	 *
+	 * @param id the first identifier
+	 * @param otherId the second identifier
+	 * @param action the action to run
+	 * @return the result of the action
+	 */
+	<R> R locked(String id, String otherId, Supplier<R> action) {
+		int index = index(id);
+		int otherIndex = index(otherId);
+		if (index == otherIndex) {
+			return locked(id, action);
+		}
+
+		var first = locks[Math.min(index, otherIndex)];
+		var second = locks[Math.max(index, otherIndex)];
+		first.lock();
+		try {
+			second.lock();
+			try {
+				return action.get();
+			} finally {
+				second.unlock();
+			}
+		} finally {
+			first.unlock();
+		}
+	}
+
+	private int index(String id) {
+		int hash = id.hashCode();
+		return (hash ^ (hash >>> 16)) & (locks.length - 1);
+	}
+
+}
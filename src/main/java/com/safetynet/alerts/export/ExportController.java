@@ -0,0 +1,62 @@
+package com.safetynet.alerts.export;
+
+import com.safetynet.alerts.search.DataSnapshot;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import static com.safetynet.alerts.search.SearchController.DATA_VERSION_HEADER;
+
+/**
+ * REST controller exporting the whole dataset: persons, fire station assignments and medical
+ * records.
+ *
+ * <p>An export reads a single {@link DataSnapshot}, whose version is returned in the
+ * {@value com.safetynet.alerts.search.SearchController#DATA_VERSION_HEADER} response header, and is
+ * written as it is encoded, with chunked transfer. Clients accepting
+ * {@value MediaType#APPLICATION_NDJSON_VALUE} rather than JSON get one entity per line.
+ */
+@RestController
+@RequiredArgsConstructor
+@Slf4j
+public class ExportController {
+
+	private final ExportService service;
+
+	/**
+	 * Exports all data as a JSON document laid out as data.json.
+	 *
+	 * @return a ResponseEntity with 200 OK, streaming the document
+	 */
+	@GetMapping(value = "/export", produces = MediaType.APPLICATION_JSON_VALUE)
+	public ResponseEntity<StreamingResponseBody> exportJson() {
+		var snapshot = service.snapshot();
+		log.info("Exporting data version {} as JSON", snapshot.version());
+		return export(snapshot, MediaType.APPLICATION_JSON, out -> service.writeJson(snapshot, out));
+	}
+
+	/**
+	 * Exports all data as newline-delimited JSON, one entity per line.
+	 *
+	 * @return a ResponseEntity with 200 OK, streaming the lines
+	 */
+	@GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+	public ResponseEntity<StreamingResponseBody> exportNdjson() {
+		var snapshot = service.snapshot();
+		log.info("Exporting data version {} as NDJSON", snapshot.version());
+		return export(snapshot, MediaType.APPLICATION_NDJSON, out -> service.writeNdjson(snapshot, out));
+	}
+
+	private static ResponseEntity<StreamingResponseBody> export(DataSnapshot snapshot, MediaType contentType,
+																StreamingResponseBody body) {
+		return ResponseEntity.ok()
+				.header(DATA_VERSION_HEADER, String.valueOf(snapshot.version()))
+				.contentType(contentType)
+				.body(body);
+	}
+
+}
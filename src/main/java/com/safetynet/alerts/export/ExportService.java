@@ -0,0 +1,123 @@
+package com.safetynet.alerts.export;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.safetynet.alerts.data.DataStore;
+import com.safetynet.alerts.data.EntityTable;
+import com.safetynet.alerts.data.Journal;
+import com.safetynet.alerts.search.DataSnapshot;
+import com.safetynet.alerts.search.SearchIndex;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Exports the whole dataset of one {@link DataSnapshot}, for backups and downstream analytics.
+ *
+ * <p>Entities are encoded one at a time as they are written, so an export holds a single entity
+ * besides the output buffer, whatever the size of the dataset. A snapshot never changes: changes
+ * keep being applied during an export, which sees none of them.
+ */
+@Service
+public class ExportService {
+
+	private final SearchIndex index;
+
+	private final DataStore store;
+
+	// output is flushed by the generator buffer only, and left open for the caller
+	private final ObjectWriter documentWriter;
+
+	private final ObjectWriter lineWriter;
+
+	private record Section<T>(EntityTable<T> table, Iterator<T> entities) { }
+
+	/**
+	 * Constructor.
+	 *
+	 * @param index the search index publishing snapshots
+	 * @param store the data store, naming tables and identifying their entities
+	 * @param objectMapper the mapper encoding entities as in data.json
+	 */
+	public ExportService(SearchIndex index, DataStore store, ObjectMapper objectMapper) {
+		this.index = index;
+		this.store = store;
+		this.documentWriter = objectMapper.writer()
+				.without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+				.without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+		this.lineWriter = documentWriter
+				.without(SerializationFeature.INDENT_OUTPUT)
+				.withRootValueSeparator("\n");
+	}
+
+	/**
+	 * Returns the current data snapshot, which an export reads from start to end.
+	 *
+	 * @return the current snapshot
+	 */
+	public DataSnapshot snapshot() {
+		return index.snapshot();
+	}
+
+	/**
+	 * Writes a snapshot as a single JSON document, laid out as data.json.
+	 *
+	 * @param snapshot the exported snapshot
+	 * @param out the output, left open
+	 * @throws IOException if the output cannot be written
+	 */
+	public void writeJson(DataSnapshot snapshot, OutputStream out) throws IOException {
+		var document = new LinkedHashMap<String, Iterator<?>>();
+		sections(snapshot).forEach(section -> document.put(section.table().name(), section.entities()));
+		documentWriter.writeValue(out, document);
+	}
+
+	/**
+	 * Writes a snapshot as newline-delimited JSON, one line per entity, shaped as journal entries:
+	 * the table name, the entity identifier and the entity.
+	 *
+	 * @param snapshot the exported snapshot
+	 * @param out the output, left open
+	 * @throws IOException if the output cannot be written
+	 */
+	public void writeNdjson(DataSnapshot snapshot, OutputStream out) throws IOException {
+		long count = 0;
+		try (var lines = lineWriter.writeValues(out)) {
+			for (var section : sections(snapshot)) {
+				count += writeLines(lines, section);
+			}
+		}
+		// lines are separated as they are written, the last one ends here
+		if (count > 0) {
+			out.write('\n');
+		}
+	}
+
+	// tables in the order of data.json
+	private List<Section<?>> sections(DataSnapshot snapshot) {
+		return List.of(
+				new Section<>(store.persons(), snapshot.persons().iterator()),
+				new Section<>(store.firestations(), snapshot.firestations().iterator()),
+				new Section<>(store.medicalRecords(), snapshot.medicalRecords().iterator()));
+	}
+
+	private <T> long writeLines(SequenceWriter lines, Section<T> section) throws IOException {
+		var table = section.table();
+		var entities = section.entities();
+		long count = 0;
+		while (entities.hasNext()) {
+			var entity = entities.next();
+			lines.write(new Journal.Entry(table.name(), table.idOf(entity), entity));
+			count++;
+		}
+		return count;
+	}
+
+}
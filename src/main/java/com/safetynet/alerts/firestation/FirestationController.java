@@ -1,12 +1,16 @@
 package com.safetynet.alerts.firestation;
 
+import com.safetynet.alerts.data.ImportResult;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.InputStream;
+
 import static org.springframework.http.HttpStatus.CONFLICT;
 import static org.springframework.http.HttpStatus.CREATED;
 
@@ -40,6 +44,27 @@ public class FirestationController {
 		}
 	}
 
+	/**
+	 * Adds many new assignments at once.
+	 *
+	 * <p>The body is either a JSON array or newline-delimited JSON assignments. Rows are read and
+	 * applied one at a time, then written to data.json together at the end of the import.
+	 *
+	 * @param body the assignments to add
+	 * @return ResponseEntity with status OK and the import summary, listing rejected rows, or
+	 *         BAD_REQUEST and the summary of the rows read so far if the body is malformed
+	 */
+	@PostMapping(value = "/bulk", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+	public ResponseEntity<ImportResult> importAll(InputStream body) {
+		var result = service.importFirestations(body);
+		log.info("{} assignments added, {} rejected", result.getCreated(), result.getRejected().size());
+		if (result.isComplete()) {
+			return ResponseEntity.ok(result);
+		} else {
+			return ResponseEntity.badRequest().body(result);
+		}
+	}
+
 	/**
 	 * Updates an assignment.
 	 *
@@ -1,57 +1,42 @@
 package com.safetynet.alerts.firestation;
 
-import com.safetynet.alerts.util.JsonUtils;
+import com.safetynet.alerts.data.BulkImporter;
+import com.safetynet.alerts.data.DataStore;
+import com.safetynet.alerts.data.ImportResult;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
-import java.util.Map;
-import java.util.stream.Collectors;
+import java.io.InputStream;
 
 @Service
 @RequiredArgsConstructor
 public class FirestationService {
 
-	private final JsonUtils jsonUtils;
+	private final DataStore store;
+
+	private final BulkImporter importer;
 
 	public boolean createFirestation(FirestationDTO newFirestation) {
-		var firestationMap = getFirestationMap();
-
-		if (firestationMap.putIfAbsent(newFirestation.getAddress(), newFirestation) == null) {
-			updateJSON(firestationMap);
-			return true;
-		} else {
-			return false;
-		}
+		return store.firestations().insert(newFirestation);
 	}
 
 	public boolean updateFirestation(String address, FirestationDTO updatedFirestation) {
-		var firestationMap = getFirestationMap();
-
-		if (firestationMap.containsKey(address)) {
-			firestationMap.replace(address, updatedFirestation);
-			updateJSON(firestationMap);
-			return true;
-		}
-		return false;
+		return store.firestations().replace(address, updatedFirestation);
 	}
 
 	public FirestationDTO deleteFirestation(String address) {
-		var firestationMap = getFirestationMap();
-		var deletedFirestation = firestationMap.remove(address);
-
-		if (deletedFirestation != null) {
-			updateJSON(firestationMap);
-		}
-		return deletedFirestation;
-	}
-
-	private Map<String, FirestationDTO> getFirestationMap() {
-		return jsonUtils.get(FirestationDTO.class).stream()
-				.collect(Collectors.toConcurrentMap(FirestationDTO::getAddress, x -> x));
+		return store.firestations().remove(address);
 	}
 
-	private void updateJSON(Map<String, FirestationDTO> firestationMap) {
-		jsonUtils.update("firestations", firestationMap);
+	/**
+	 * Adds many new assignments at once, skipping addresses already assigned.
+	 *
+	 * @param input JSON array or newline-delimited JSON assignments
+	 * @return the import summary
+	 */
+	public ImportResult importFirestations(InputStream input) {
+		return importer.importRows(input, FirestationDTO.class,
+				firestation -> createFirestation(firestation) ? null : firestation.getAddress() + " is already assigned");
 	}
 
 }
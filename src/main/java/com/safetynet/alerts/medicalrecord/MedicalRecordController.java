@@ -1,12 +1,16 @@
 package com.safetynet.alerts.medicalrecord;
 
+import com.safetynet.alerts.data.ImportResult;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.InputStream;
+
 import static org.springframework.http.HttpStatus.CONFLICT;
 import static org.springframework.http.HttpStatus.CREATED;
 import static org.springframework.http.HttpStatus.PRECONDITION_REQUIRED;
@@ -51,6 +55,27 @@ public class MedicalRecordController {
 		}
 	}
 
+	/**
+	 * Adds many new medical records at once.
+	 *
+	 * <p>The body is either a JSON array or newline-delimited JSON medical records. Rows are read and
+	 * applied one at a time, then written to data.json together at the end of the import.
+	 *
+	 * @param body the medical records to add
+	 * @return ResponseEntity with status OK and the import summary, listing rejected rows, or
+	 *         BAD_REQUEST and the summary of the rows read so far if the body is malformed
+	 */
+	@PostMapping(value = "/bulk", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+	public ResponseEntity<ImportResult> importAll(InputStream body) {
+		var result = service.importMedicalRecords(body);
+		log.info("{} medical records added, {} rejected", result.getCreated(), result.getRejected().size());
+		if (result.isComplete()) {
+			return ResponseEntity.ok(result);
+		} else {
+			return ResponseEntity.badRequest().body(result);
+		}
+	}
+
 	/**
 	 * Updates a medical record.
 	 *
@@ -2,12 +2,12 @@ package com.safetynet.alerts.medicalrecord;
 
 import com.fasterxml.jackson.annotation.JsonFormat;
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.safetynet.alerts.util.AgeUtils;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import lombok.Data;
 
 import java.time.LocalDate;
-import java.time.Period;
 import java.util.Set;
 
 /**
@@ -40,9 +40,14 @@ public class MedicalRecordDTO {
 		return firstName + " " + lastName;
 	}
 
-	@JsonIgnore
-	public int getAge() {
-		return Period.between(birthdate, LocalDate.now()).getYears();
+	/**
+	 * Computes the age of the person on a date.
+	 *
+	 * @param today the date
+	 * @return the age in full years
+	 */
+	public int getAge(LocalDate today) {
+		return AgeUtils.age(birthdate, today);
 	}
 
 }
@@ -1,67 +1,58 @@
 package com.safetynet.alerts.medicalrecord;
 
-import com.safetynet.alerts.person.PersonDTO;
-import com.safetynet.alerts.util.JsonUtils;
+import com.safetynet.alerts.data.BulkImporter;
+import com.safetynet.alerts.data.DataStore;
+import com.safetynet.alerts.data.ImportResult;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
-import java.util.Map;
-import java.util.stream.Collectors;
+import java.io.InputStream;
 
 @Service
 @RequiredArgsConstructor
 public class MedicalRecordService {
 
-	private final JsonUtils jsonUtils;
+	private final DataStore store;
+
+	private final BulkImporter importer;
 
 	public enum CreateResult {
 		RECORD_CREATED, PERSON_NOT_FOUND, ALREADY_EXISTS,
 	}
 
 	public CreateResult createMedicalRecord(MedicalRecordDTO newMedicalRecord) {
-		var medicalRecordMap = getMedicalRecordMap();
-		var personList = jsonUtils.get(PersonDTO.class);
-
-		if (personList.stream().noneMatch(person -> person.getId().equals(newMedicalRecord.getId()))) {
-			return CreateResult.PERSON_NOT_FOUND;
-		}
-
-		if (medicalRecordMap.putIfAbsent(newMedicalRecord.getId(), newMedicalRecord) == null) {
-			updateJSON(medicalRecordMap);
+		// the person is checked holding the lock shared by their identifier, so they cannot be
+		// removed before the record is inserted
+		if (store.medicalRecords().insert(newMedicalRecord, store.persons()::contains)) {
 			return CreateResult.RECORD_CREATED;
+		} else if (!store.persons().contains(newMedicalRecord.getId())) {
+			return CreateResult.PERSON_NOT_FOUND;
 		} else {
 			return CreateResult.ALREADY_EXISTS;
 		}
 	}
 
 	public boolean updateMedicalRecord(String id, MedicalRecordDTO updatedMedicalRecord) {
-		var medicalRecordMap = getMedicalRecordMap();
-
-		if (medicalRecordMap.containsKey(id)) {
-			medicalRecordMap.replace(id, updatedMedicalRecord);
-			updateJSON(medicalRecordMap);
-			return true;
-		}
-		return false;
+		return store.medicalRecords().replace(id, updatedMedicalRecord);
 	}
 
 	public MedicalRecordDTO deleteMedicalRecord(String id) {
-		var medicalRecordMap = getMedicalRecordMap();
-		var deletedMedicalRecord = medicalRecordMap.remove(id);
-
-		if (deletedMedicalRecord != null) {
-			updateJSON(medicalRecordMap);
-		}
-		return deletedMedicalRecord;
-	}
-
-	private Map<String, MedicalRecordDTO> getMedicalRecordMap() {
-		return jsonUtils.get(MedicalRecordDTO.class).stream()
-				.collect(Collectors.toMap(MedicalRecordDTO::getId, x -> x));
+		return store.medicalRecords().remove(id);
 	}
 
-	private void updateJSON(Map<String, MedicalRecordDTO> firestationMap) {
-		jsonUtils.update("medicalrecords", firestationMap);
+	/**
+	 * Adds many new medical records at once, skipping records of unknown persons and persons
+	 * already having one. Persons imported earlier in the same import are known.
+	 *
+	 * @param input JSON array or newline-delimited JSON medical records
+	 * @return the import summary
+	 */
+	public ImportResult importMedicalRecords(InputStream input) {
+		return importer.importRows(input, MedicalRecordDTO.class, record -> switch (createMedicalRecord(record)) {
+			case RECORD_CREATED -> null;
+			case PERSON_NOT_FOUND -> record.getFullName() + " does not exist";
+			case ALREADY_EXISTS -> record.getFullName() + " already has a medical record";
+		});
 	}
 
 }
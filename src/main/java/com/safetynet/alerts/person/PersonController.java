@@ -1,12 +1,16 @@
 package com.safetynet.alerts.person;
 
+import com.safetynet.alerts.data.ImportResult;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.InputStream;
+
 import static org.springframework.http.HttpStatus.CONFLICT;
 import static org.springframework.http.HttpStatus.CREATED;
 
@@ -41,6 +45,27 @@ public class PersonController {
 		}
 	}
 
+	/**
+	 * Adds many new persons at once.
+	 *
+	 * <p>The body is either a JSON array or newline-delimited JSON persons. Rows are read and
+	 * applied one at a time, then written to data.json together at the end of the import.
+	 *
+	 * @param body the persons to add
+	 * @return ResponseEntity with status OK and the import summary, listing rejected rows, or
+	 *         BAD_REQUEST and the summary of the rows read so far if the body is malformed
+	 */
+	@PostMapping(value = "/bulk", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+	public ResponseEntity<ImportResult> importAll(InputStream body) {
+		var result = service.importPersons(body);
+		log.info("{} persons added, {} rejected", result.getCreated(), result.getRejected().size());
+		if (result.isComplete()) {
+			return ResponseEntity.ok(result);
+		} else {
+			return ResponseEntity.badRequest().body(result);
+		}
+	}
+
 	/**
 	 * Updates person's information.
 	 *
@@ -50,7 +75,7 @@ public class PersonController {
 	 *         does not exist in the system
 	 */
 	@PutMapping("/{id}")
-	public ResponseEntity<Void> update(@PathVariable String id, @RequestBody PersonDTO updatedPerson) {
+	public ResponseEntity<Void> update(@PathVariable String id, @RequestBody @Valid PersonDTO updatedPerson) {
 		if (service.updatePerson(id, updatedPerson)) {
 			log.info("{} information updated", updatedPerson.getFullName());
 			return ResponseEntity.ok().build();
@@ -1,57 +1,42 @@
 package com.safetynet.alerts.person;
 
-import com.safetynet.alerts.util.JsonUtils;
+import com.safetynet.alerts.data.BulkImporter;
+import com.safetynet.alerts.data.DataStore;
+import com.safetynet.alerts.data.ImportResult;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
-import java.util.Map;
-import java.util.stream.Collectors;
+import java.io.InputStream;
 
 @Service
 @RequiredArgsConstructor
 public class PersonService {
 
-	private final JsonUtils jsonUtils;
+	private final DataStore store;
+
+	private final BulkImporter importer;
 
 	public boolean createPerson(PersonDTO newPerson) {
-		var personMap = getPersonMap();
-
-		if (personMap.putIfAbsent(newPerson.getId(), newPerson) == null) {
-			updateJSON(personMap);
-			return true;
-		} else {
-			return false;
-		}
+		return store.persons().insert(newPerson);
 	}
 
 	public boolean updatePerson(String id, PersonDTO updatedPerson) {
-		var personMap = getPersonMap();
-
-		if (personMap.containsKey(id)) {
-			personMap.replace(id, updatedPerson);
-			updateJSON(personMap);
-			return true;
-		}
-		return false;
+		return store.persons().replace(id, updatedPerson);
 	}
 
 	public PersonDTO deletePerson(String id) {
-		var personMap = getPersonMap();
-		var deletedPerson = personMap.remove(id);
-
-		if (deletedPerson != null) {
-			updateJSON(personMap);
-		}
-		return deletedPerson;
-	}
-
-	private Map<String, PersonDTO> getPersonMap() {
-		return jsonUtils.get(PersonDTO.class).stream()
-				.collect(Collectors.toMap(PersonDTO::getId, x -> x));
+		return store.persons().remove(id);
 	}
 
-	private void updateJSON(Map<String, PersonDTO> firestationMap) {
-		jsonUtils.update("persons", firestationMap);
+	/**
+	 * Adds many new persons at once, skipping persons that already exist.
+	 *
+	 * @param input JSON array or newline-delimited JSON persons
+	 * @return the import summary
+	 */
+	public ImportResult importPersons(InputStream input) {
+		return importer.importRows(input, PersonDTO.class,
+				person -> createPerson(person) ? null : person.getFullName() + " already exists");
 	}
 
 }
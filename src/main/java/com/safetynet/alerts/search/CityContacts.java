@@ -0,0 +1,121 @@
+package com.safetynet.alerts.search;
+
+import com.safetynet.alerts.person.PersonDTO;
+import com.safetynet.alerts.search.result.CommunityEmailResult;
+import com.safetynet.alerts.util.ShardedMap;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable email addresses and phone numbers of the residents of a city.
+ *
+ * <p>Addresses and numbers are counted by resident, so a contact shared by several residents
+ * remains until the last of them leaves. Contact sets and their encoded form are computed on first
+ * use, then reused by all searches until residents of the city change.
+ */
+public final class CityContacts {
+
+	static final CityContacts EMPTY = new CityContacts(ShardedMap.empty(), ShardedMap.empty());
+
+	private final ShardedMap<String, Integer> emailCounts;
+
+	private final ShardedMap<String, Integer> phoneCounts;
+
+	private volatile Set<String> emails;
+
+	private volatile Set<String> phones;
+
+	private volatile EncodedResult<CommunityEmailResult> emailsResult;
+
+	private CityContacts(ShardedMap<String, Integer> emailCounts, ShardedMap<String, Integer> phoneCounts) {
+		this.emailCounts = emailCounts;
+		this.phoneCounts = phoneCounts;
+	}
+
+	public boolean isEmpty() {
+		return emailCounts.isEmpty();
+	}
+
+	public Set<String> emails() {
+		var result = emails;
+		if (result == null) {
+			emails = result = Set.copyOf(emailCounts.keys());
+		}
+		return result;
+	}
+
+	public Set<String> phones() {
+		var result = phones;
+		if (result == null) {
+			phones = result = Set.copyOf(phoneCounts.keys());
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the email addresses as a search result, kept with its encoded forms.
+	 *
+	 * @return the email addresses result
+	 */
+	public EncodedResult<CommunityEmailResult> emailsResult() {
+		var result = emailsResult;
+		if (result == null) {
+			emailsResult = result = new EncodedResult<>(new CommunityEmailResult(emails()));
+		}
+		return result;
+	}
+
+	/**
+	 * Builds the contacts of every city.
+	 *
+	 * @param persons all persons
+	 * @return the contacts, by city
+	 */
+	static Map<String, CityContacts> of(Collection<PersonDTO> persons) {
+		var emailCounts = new HashMap<String, Map<String, Integer>>();
+		var phoneCounts = new HashMap<String, Map<String, Integer>>();
+		for (var person : persons) {
+			emailCounts.computeIfAbsent(person.getCity(), city -> new HashMap<>()).merge(person.getEmail(), 1, Integer::sum);
+			phoneCounts.computeIfAbsent(person.getCity(), city -> new HashMap<>()).merge(person.getPhone(), 1, Integer::sum);
+		}
+		var contacts = new HashMap<String, CityContacts>();
+		emailCounts.forEach((city, emails) -> contacts.put(city,
+				new CityContacts(ShardedMap.copyOf(emails), ShardedMap.copyOf(phoneCounts.get(city)))));
+		return contacts;
+	}
+
+	/**
+	 * Returns the contacts including those of a new resident.
+	 *
+	 * @param person the resident
+	 * @return the updated contacts
+	 */
+	CityContacts with(PersonDTO person) {
+		return new CityContacts(emailCounts.compute(person.getEmail(), CityContacts::increment),
+				phoneCounts.compute(person.getPhone(), CityContacts::increment));
+	}
+
+	/**
+	 * Returns the contacts excluding those of a former resident.
+	 *
+	 * @param person the former resident
+	 * @return the updated contacts, or null if the city has no residents left
+	 */
+	CityContacts without(PersonDTO person) {
+		var contacts = new CityContacts(emailCounts.compute(person.getEmail(), CityContacts::decrement),
+				phoneCounts.compute(person.getPhone(), CityContacts::decrement));
+		return contacts.isEmpty() ? null : contacts;
+	}
+
+	private static Integer increment(String contact, Integer count) {
+		return count == null ? 1 : count + 1;
+	}
+
+	private static Integer decrement(String contact, Integer count) {
+		return count == null || count == 1 ? null : count - 1;
+	}
+
+}
@@ -0,0 +1,535 @@
+package com.safetynet.alerts.search;
+
+import com.safetynet.alerts.firestation.FirestationDTO;
+import com.safetynet.alerts.medicalrecord.MedicalRecordDTO;
+import com.safetynet.alerts.person.PersonDTO;
+import com.safetynet.alerts.util.AgeUtils;
+import com.safetynet.alerts.util.ShardedMap;
+import com.safetynet.alerts.util.SortedKeySet;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Immutable version of the searchable data and its indexes.
+ *
+ * <p>A snapshot never changes once published by {@link SearchIndex}: each data change publishes
+ * a new snapshot with the next version number, sharing all unchanged parts with the previous one.
+ * A search pinning one snapshot therefore sees every index in the same state, whatever the
+ * changes applied meanwhile.
+ */
+public final class DataSnapshot {
+
+	private static final int FEBRUARY_29 = 229;
+
+	// persons born on the same day are split in buckets by identifier, so that adding one of them
+	// copies a small bucket rather than everyone born that day
+	private static final int BIRTHDAY_BUCKETS = 64;
+
+	private final long version;
+
+	private final LocalDate today;
+
+	private final ShardedMap<String, PersonDTO> persons;
+
+	private final ShardedMap<String, MedicalRecordDTO> medicalRecords;
+
+	private final ShardedMap<String, PersonData> personData;
+
+	private final ShardedMap<Integer, Set<String>> idsByBirthday;
+
+	private final ShardedMap<Integer, Set<String>> addressesByStation;
+
+	private final ShardedMap<String, Set<String>> residentsByAddress;
+
+	// assignments by normalized address, one per spelling, so that removing the assignment of one
+	// spelling keeps those of other spellings of the same address
+	private final ShardedMap<String, Map<String, Integer>> stationsByAddress;
+
+	private final ShardedMap<String, Set<String>> personsByLastName;
+
+	private final SortedKeySet lastNames;
+
+	private final ShardedMap<String, CityContacts> contactsByCity;
+
+	private DataSnapshot(long version,
+						 LocalDate today,
+						 ShardedMap<String, PersonDTO> persons,
+						 ShardedMap<String, MedicalRecordDTO> medicalRecords,
+						 ShardedMap<String, PersonData> personData,
+						 ShardedMap<Integer, Set<String>> idsByBirthday,
+						 ShardedMap<Integer, Set<String>> addressesByStation,
+						 ShardedMap<String, Set<String>> residentsByAddress,
+						 ShardedMap<String, Map<String, Integer>> stationsByAddress,
+						 ShardedMap<String, Set<String>> personsByLastName,
+						 SortedKeySet lastNames,
+						 ShardedMap<String, CityContacts> contactsByCity) {
+		this.version = version;
+		this.today = today;
+		this.persons = persons;
+		this.medicalRecords = medicalRecords;
+		this.personData = personData;
+		this.idsByBirthday = idsByBirthday;
+		this.addressesByStation = addressesByStation;
+		this.residentsByAddress = residentsByAddress;
+		this.stationsByAddress = stationsByAddress;
+		this.personsByLastName = personsByLastName;
+		this.lastNames = lastNames;
+		this.contactsByCity = contactsByCity;
+	}
+
+	/**
+	 * Returns the version of the snapshot, incremented by each data change.
+	 *
+	 * @return the version
+	 */
+	public long version() {
+		return version;
+	}
+
+	/**
+	 * Returns the date on which the ages of persons are computed.
+	 *
+	 * @return the date of the snapshot
+	 */
+	public LocalDate today() {
+		return today;
+	}
+
+	public Collection<PersonDTO> persons() {
+		return persons.values();
+	}
+
+	/**
+	 * Returns all medical records, including those of persons not added yet.
+	 *
+	 * @return the medical records
+	 */
+	public Collection<MedicalRecordDTO> medicalRecords() {
+		return medicalRecords.values();
+	}
+
+	/**
+	 * Returns all fire station assignments, station by station.
+	 *
+	 * @return the assignments, built as they are iterated
+	 */
+	public Stream<FirestationDTO> firestations() {
+		return addressesByStation.keys().stream()
+				.sorted()
+				.flatMap(station -> addressesByStation.get(station).stream()
+						.map(address -> assignment(address, station)));
+	}
+
+	/**
+	 * Returns all persons joined with their medical record.
+	 *
+	 * @return PersonData of all persons having a medical record
+	 */
+	public Collection<PersonData> personData() {
+		return personData.values();
+	}
+
+	/**
+	 * Returns the addresses covered by a fire station.
+	 *
+	 * @param station the fire station number
+	 * @return the covered addresses, empty if the station is unknown
+	 */
+	public Set<String> addresses(int station) {
+		return addressesByStation.getOrDefault(station, Set.of());
+	}
+
+	/**
+	 * Returns the fire station covering an address. Should the address be assigned under several
+	 * spellings, the lowest of their stations is returned, whatever the spelling searched.
+	 *
+	 * @param address the address
+	 * @return the fire station number, or null if the address is not covered
+	 */
+	public Integer station(String address) {
+		var stations = stationsByAddress.get(SearchIndex.normalize(address));
+		return stations != null ? stations.values().stream().min(Integer::compare).orElseThrow() : null;
+	}
+
+	/**
+	 * Returns the persons living at an address.
+	 *
+	 * @param address the address
+	 * @return the residents
+	 */
+	public List<PersonDTO> residents(String address) {
+		return residentIds(address).stream()
+				.map(persons::get)
+				.filter(Objects::nonNull)
+				.toList();
+	}
+
+	/**
+	 * Returns the persons living at an address, joined with their medical record.
+	 *
+	 * @param address the address
+	 * @return the searchable residents
+	 */
+	public List<PersonData> residentData(String address) {
+		return residentIds(address).stream()
+				.map(personData::get)
+				.filter(Objects::nonNull)
+				.toList();
+	}
+
+	private Set<String> residentIds(String address) {
+		return residentsByAddress.getOrDefault(SearchIndex.normalize(address), Set.of());
+	}
+
+	/**
+	 * Returns the persons whose last name matches a {@link SearchIndex#normalize(String) normalized}
+	 * last name, joined with their medical record.
+	 *
+	 * @param lastName the normalized last name
+	 * @return the searchable persons, in no particular order
+	 */
+	public List<PersonData> personDataByLastName(String lastName) {
+		return personsByLastName.getOrDefault(lastName, Set.of()).stream()
+				.map(personData::get)
+				.filter(Objects::nonNull)
+				.toList();
+	}
+
+	/**
+	 * Returns the first normalized last names starting with a prefix, in alphabetical order.
+	 *
+	 * @param prefix the normalized prefix, empty to match all last names
+	 * @param limit the maximum number of returned last names
+	 * @return the matching normalized last names
+	 */
+	public List<String> lastNames(String prefix, int limit) {
+		return lastNames.startingWith(prefix, limit);
+	}
+
+	/**
+	 * Returns the last name of a person, as spelled in the data, for a normalized last name.
+	 *
+	 * @param lastName the normalized last name
+	 * @return the last name of one of the matching persons, or null if none
+	 */
+	public String lastNameSpelling(String lastName) {
+		var ids = personsByLastName.get(lastName);
+		if (ids == null) {
+			return null;
+		}
+		var person = persons.get(ids.iterator().next());
+		return person != null ? person.getLastName() : null;
+	}
+
+	/**
+	 * Returns the email addresses and phone numbers of the residents of a city.
+	 *
+	 * @param city the city
+	 * @return the contacts, empty if the city is unknown
+	 */
+	public CityContacts contacts(String city) {
+		return contactsByCity.getOrDefault(city, CityContacts.EMPTY);
+	}
+
+	/**
+	 * Builds the first snapshot from loaded data.
+	 *
+	 * @param persons all persons
+	 * @param medicalRecords all medical records
+	 * @param personData all persons joined with their medical record, by identifier
+	 * @param firestations all fire station assignments
+	 * @param today the date on which ages are computed
+	 * @return the snapshot, with version 1
+	 */
+	static DataSnapshot of(Collection<PersonDTO> persons, Collection<MedicalRecordDTO> medicalRecords,
+						   Map<String, PersonData> personData, Collection<FirestationDTO> firestations,
+						   LocalDate today) {
+		var agedPersonData = new HashMap<String, PersonData>();
+		var idsByBirthday = new HashMap<Integer, Set<String>>();
+		personData.forEach((id, data) -> {
+			agedPersonData.put(id, data.withAge(AgeUtils.age(data.birthdate(), today)));
+			idsByBirthday.computeIfAbsent(birthdayBucket(data.birthdate(), id), bucket -> new HashSet<>()).add(id);
+		});
+		idsByBirthday.replaceAll((bucket, ids) -> Set.copyOf(ids));
+
+		var personsById = new HashMap<String, PersonDTO>();
+		var residentsByAddress = new HashMap<String, Set<String>>();
+		var personsByLastName = new HashMap<String, Set<String>>();
+		for (var person : persons) {
+			personsById.put(person.getId(), person);
+			residentsByAddress.computeIfAbsent(SearchIndex.normalize(person.getAddress()), address -> new HashSet<>())
+					.add(person.getId());
+			personsByLastName.computeIfAbsent(SearchIndex.normalize(person.getLastName()), lastName -> new HashSet<>())
+					.add(person.getId());
+		}
+		var addressesByStation = new HashMap<Integer, Set<String>>();
+		var stationsByAddress = new HashMap<String, Map<String, Integer>>();
+		for (var firestation : firestations) {
+			addressesByStation.computeIfAbsent(firestation.getStation(), station -> new HashSet<>())
+					.add(firestation.getAddress());
+			stationsByAddress.computeIfAbsent(SearchIndex.normalize(firestation.getAddress()), address -> new HashMap<>())
+					.put(firestation.getAddress(), firestation.getStation());
+		}
+		var medicalRecordsById = new HashMap<String, MedicalRecordDTO>();
+		medicalRecords.forEach(record -> medicalRecordsById.put(record.getId(), record));
+		residentsByAddress.replaceAll((address, residents) -> Set.copyOf(residents));
+		addressesByStation.replaceAll((station, addresses) -> Set.copyOf(addresses));
+		stationsByAddress.replaceAll((address, stations) -> Map.copyOf(stations));
+		personsByLastName.replaceAll((lastName, ids) -> Set.copyOf(ids));
+
+		return new DataSnapshot(1, today, ShardedMap.copyOf(personsById), ShardedMap.copyOf(medicalRecordsById),
+				ShardedMap.copyOf(agedPersonData),
+				ShardedMap.copyOf(idsByBirthday), ShardedMap.copyOf(addressesByStation),
+				ShardedMap.copyOf(residentsByAddress), ShardedMap.copyOf(stationsByAddress),
+				ShardedMap.copyOf(personsByLastName), SortedKeySet.copyOf(personsByLastName.keySet()),
+				ShardedMap.copyOf(CityContacts.of(persons)));
+	}
+
+	/**
+	 * Returns the next snapshot after a person change.
+	 *
+	 * @param previous the person before the change, or null if added
+	 * @param current the person after the change, or null if removed
+	 * @param currentData the current person joined with their medical record, or null if none
+	 * @return the next snapshot
+	 */
+	DataSnapshot withPerson(PersonDTO previous, PersonDTO current, PersonData currentData) {
+		var persons = this.persons;
+		var personData = this.personData;
+		var idsByBirthday = reindexBirthday(previous != null ? previous.getId() : null,
+				current != null ? current.getId() : null, currentData);
+		var residentsByAddress = this.residentsByAddress;
+		var personsByLastName = this.personsByLastName;
+		var lastNames = this.lastNames;
+		var contactsByCity = this.contactsByCity;
+		if (!sameContacts(previous, current)) {
+			if (previous != null) {
+				contactsByCity = contactsByCity.compute(previous.getCity(),
+						(city, contacts) -> contacts != null ? contacts.without(previous) : null);
+			}
+			if (current != null) {
+				contactsByCity = contactsByCity.compute(current.getCity(),
+						(city, contacts) -> (contacts != null ? contacts : CityContacts.EMPTY).with(current));
+			}
+		}
+		if (previous != null) {
+			persons = persons.without(previous.getId());
+			personData = personData.without(previous.getId());
+			residentsByAddress = residentsByAddress.compute(SearchIndex.normalize(previous.getAddress()),
+					(address, residents) -> remove(residents, previous.getId()));
+			var lastName = SearchIndex.normalize(previous.getLastName());
+			personsByLastName = personsByLastName.compute(lastName, (name, ids) -> remove(ids, previous.getId()));
+			if (!personsByLastName.containsKey(lastName)) {
+				lastNames = lastNames.without(lastName);
+			}
+		}
+		if (current != null) {
+			persons = persons.with(current.getId(), current);
+			if (currentData != null) {
+				personData = personData.with(current.getId(), currentData.withAge(age(currentData)));
+			}
+			residentsByAddress = residentsByAddress.compute(SearchIndex.normalize(current.getAddress()),
+					(address, residents) -> add(residents, current.getId()));
+			var lastName = SearchIndex.normalize(current.getLastName());
+			personsByLastName = personsByLastName.compute(lastName, (name, ids) -> add(ids, current.getId()));
+			lastNames = lastNames.with(lastName);
+		}
+		return new DataSnapshot(version + 1, today, persons, medicalRecords, personData, idsByBirthday,
+				addressesByStation, residentsByAddress, stationsByAddress, personsByLastName, lastNames, contactsByCity);
+	}
+
+	/**
+	 * Returns the next snapshot after a medical record change.
+	 *
+	 * @param previous the record before the change, or null if added
+	 * @param current the record after the change, or null if removed
+	 * @param currentData the person of the current record joined with it, or null if none
+	 * @return the next snapshot
+	 */
+	DataSnapshot withMedicalRecord(MedicalRecordDTO previous, MedicalRecordDTO current, PersonData currentData) {
+		var previousId = previous != null ? previous.getId() : null;
+		var currentId = current != null ? current.getId() : null;
+		var medicalRecords = this.medicalRecords;
+		var personData = this.personData;
+		var idsByBirthday = reindexBirthday(previousId, currentId, currentData);
+		if (previous != null) {
+			medicalRecords = medicalRecords.without(previousId);
+			personData = personData.without(previousId);
+		}
+		if (current != null) {
+			medicalRecords = medicalRecords.with(currentId, current);
+			if (currentData != null) {
+				personData = personData.with(currentId, currentData.withAge(age(currentData)));
+			}
+		}
+		return new DataSnapshot(version + 1, today, persons, medicalRecords, personData, idsByBirthday,
+				addressesByStation, residentsByAddress, stationsByAddress, personsByLastName, lastNames, contactsByCity);
+	}
+
+	/**
+	 * Returns the next snapshot after a fire station assignment change.
+	 *
+	 * @param previous the assignment before the change, or null if added
+	 * @param current the assignment after the change, or null if removed
+	 * @return the next snapshot
+	 */
+	DataSnapshot withFirestation(FirestationDTO previous, FirestationDTO current) {
+		var addressesByStation = this.addressesByStation;
+		var stationsByAddress = this.stationsByAddress;
+		if (previous != null) {
+			addressesByStation = addressesByStation.compute(previous.getStation(),
+					(station, addresses) -> remove(addresses, previous.getAddress()));
+			stationsByAddress = stationsByAddress.compute(SearchIndex.normalize(previous.getAddress()),
+					(address, stations) -> unassign(stations, previous.getAddress()));
+		}
+		if (current != null) {
+			addressesByStation = addressesByStation.compute(current.getStation(),
+					(station, addresses) -> add(addresses, current.getAddress()));
+			stationsByAddress = stationsByAddress.compute(SearchIndex.normalize(current.getAddress()),
+					(address, stations) -> assign(stations, current.getAddress(), current.getStation()));
+		}
+		return new DataSnapshot(version + 1, today, persons, medicalRecords, personData, idsByBirthday,
+				addressesByStation, residentsByAddress, stationsByAddress, personsByLastName, lastNames, contactsByCity);
+	}
+
+	/**
+	 * Returns the next snapshot after a change of date, where persons whose birthday passed
+	 * since the date of this snapshot get their new age.
+	 *
+	 * @param today the new date
+	 * @return the next snapshot, or this snapshot if the date is unchanged
+	 */
+	DataSnapshot withToday(LocalDate today) {
+		if (today.equals(this.today)) {
+			return this;
+		}
+
+		var personData = this.personData;
+		var days = ChronoUnit.DAYS.between(this.today, today);
+		if (days > 0 && days < 366) {
+			for (var day = this.today.plusDays(1); !day.isAfter(today); day = day.plusDays(1)) {
+				personData = withAges(personData, birthday(day), today);
+				// February 29 birthdays are celebrated on March 1 in non-leap years
+				if (day.getMonthValue() == 3 && day.getDayOfMonth() == 1 && !day.isLeapYear()) {
+					personData = withAges(personData, FEBRUARY_29, today);
+				}
+			}
+		} else {
+			var agedPersonData = new HashMap<String, PersonData>();
+			for (var id : personData.keys()) {
+				var data = personData.get(id);
+				agedPersonData.put(id, data.withAge(AgeUtils.age(data.birthdate(), today)));
+			}
+			personData = ShardedMap.copyOf(agedPersonData);
+		}
+		return new DataSnapshot(version + 1, today, persons, medicalRecords, personData, idsByBirthday,
+				addressesByStation, residentsByAddress, stationsByAddress, personsByLastName, lastNames, contactsByCity);
+	}
+
+	private int age(PersonData data) {
+		return AgeUtils.age(data.birthdate(), today);
+	}
+
+	// person data after re-aging everyone born on a birthday
+	private ShardedMap<String, PersonData> withAges(ShardedMap<String, PersonData> personData,
+													int birthday, LocalDate today) {
+		for (int bucket = birthday * BIRTHDAY_BUCKETS; bucket < (birthday + 1) * BIRTHDAY_BUCKETS; bucket++) {
+			for (var id : idsByBirthday.getOrDefault(bucket, Set.of())) {
+				var data = personData.get(id);
+				if (data != null) {
+					personData = personData.with(id, data.withAge(AgeUtils.age(data.birthdate(), today)));
+				}
+			}
+		}
+		return personData;
+	}
+
+	// birthday index after replacing the joined data of a person, unchanged if the birthday is
+	private ShardedMap<Integer, Set<String>> reindexBirthday(String previousId, String currentId, PersonData currentData) {
+		var previousData = previousId != null ? personData.get(previousId) : null;
+		if (previousData != null && currentData != null && previousId.equals(currentId)
+				&& previousData.birthEpochDay() == currentData.birthEpochDay()) {
+			return idsByBirthday;
+		}
+
+		var idsByBirthday = this.idsByBirthday;
+		if (previousData != null) {
+			idsByBirthday = idsByBirthday.compute(birthdayBucket(previousData.birthdate(), previousId),
+					(bucket, ids) -> remove(ids, previousId));
+		}
+		if (currentId != null && currentData != null) {
+			idsByBirthday = idsByBirthday.compute(birthdayBucket(currentData.birthdate(), currentId),
+					(bucket, ids) -> add(ids, currentId));
+		}
+		return idsByBirthday;
+	}
+
+	private static FirestationDTO assignment(String address, int station) {
+		var firestation = new FirestationDTO();
+		firestation.setAddress(address);
+		firestation.setStation(station);
+		return firestation;
+	}
+
+	private static int birthday(LocalDate date) {
+		return date.getMonthValue() * 100 + date.getDayOfMonth();
+	}
+
+	private static int birthdayBucket(LocalDate birthdate, String id) {
+		return birthday(birthdate) * BIRTHDAY_BUCKETS + (id.hashCode() & (BIRTHDAY_BUCKETS - 1));
+	}
+
+	// whether a person change leaves contacts unchanged, so cities keep their encoded contacts
+	private static boolean sameContacts(PersonDTO previous, PersonDTO current) {
+		return previous != null && current != null
+				&& previous.getCity().equals(current.getCity())
+				&& previous.getEmail().equals(current.getEmail())
+				&& previous.getPhone().equals(current.getPhone());
+	}
+
+	private static Set<String> add(Set<String> set, String element) {
+		if (set == null) {
+			return Set.of(element);
+		}
+		var result = new HashSet<>(set);
+		result.add(element);
+		return Set.copyOf(result);
+	}
+
+	private static Set<String> remove(Set<String> set, String element) {
+		if (set == null || !set.contains(element)) {
+			return set;
+		}
+		var result = new HashSet<>(set);
+		result.remove(element);
+		return result.isEmpty() ? null : Set.copyOf(result);
+	}
+
+	private static Map<String, Integer> assign(Map<String, Integer> stations, String spelling, int station) {
+		if (stations == null) {
+			return Map.of(spelling, station);
+		}
+		var result = new HashMap<>(stations);
+		result.put(spelling, station);
+		return Map.copyOf(result);
+	}
+
+	private static Map<String, Integer> unassign(Map<String, Integer> stations, String spelling) {
+		if (stations == null || !stations.containsKey(spelling)) {
+			return stations;
+		}
+		var result = new HashMap<>(stations);
+		result.remove(spelling);
+		return result.isEmpty() ? null : Map.copyOf(result);
+	}
+
+}
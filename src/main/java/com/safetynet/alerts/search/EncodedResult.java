@@ -0,0 +1,80 @@
+package com.safetynet.alerts.search;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.function.Function;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Search result along with its encoded forms, computed on first use then reused as long as the
+ * result is, so a result served repeatedly is encoded and compressed only once.
+ *
+ * @param <T> type of result
+ */
+public final class EncodedResult<T> {
+
+	private final T result;
+
+	private volatile byte[] json;
+
+	private volatile byte[] gzip;
+
+	public EncodedResult(T result) {
+		this.result = result;
+	}
+
+	public T result() {
+		return result;
+	}
+
+	/**
+	 * Returns the encoded result, encoding it on first call.
+	 *
+	 * @param encoder the function encoding the result
+	 * @return the encoded result, not to be modified
+	 */
+	public byte[] json(Function<Object, byte[]> encoder) {
+		var encoded = json;
+		if (encoded == null) {
+			json = encoded = encoder.apply(result);
+		}
+		return encoded;
+	}
+
+	/**
+	 * Returns the size of the encoded result.
+	 *
+	 * @return the size of the encoded result, or 0 if it is not encoded yet
+	 */
+	public int jsonSize() {
+		var encoded = json;
+		return encoded != null ? encoded.length : 0;
+	}
+
+	/**
+	 * Returns the gzip-compressed encoded result, encoding and compressing it on first call.
+	 *
+	 * @param encoder the function encoding the result
+	 * @return the compressed result, not to be modified
+	 */
+	public byte[] gzip(Function<Object, byte[]> encoder) {
+		var compressed = gzip;
+		if (compressed == null) {
+			gzip = compressed = compress(json(encoder));
+		}
+		return compressed;
+	}
+
+	static byte[] compress(byte[] bytes) {
+		var output = new ByteArrayOutputStream(bytes.length / 4);
+		try (var gzipOutput = new GZIPOutputStream(output)) {
+			gzipOutput.write(bytes);
+		} catch (IOException e) {
+			// not thrown by in-memory streams
+			throw new UncheckedIOException(e);
+		}
+		return output.toByteArray();
+	}
+
+}
@@ -0,0 +1,24 @@
+package com.safetynet.alerts.search;
+
+/**
+ * How a searched last name matches the last names of persons.
+ */
+public enum NameMatch {
+
+	/**
+	 * Last names equal to the searched one, with the same case.
+	 */
+	EXACT,
+
+	/**
+	 * Last names equal to the searched one, ignoring case and extra spaces.
+	 */
+	IGNORE_CASE,
+
+	/**
+	 * Last names starting with the searched one, ignoring case and extra spaces, at most the first
+	 * {@value SearchService#MAX_PREFIX_LAST_NAMES} in alphabetical order.
+	 */
+	PREFIX
+
+}
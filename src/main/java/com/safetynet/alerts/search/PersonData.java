@@ -1,11 +1,13 @@
 package com.safetynet.alerts.search;
 
 import java.time.LocalDate;
-import java.time.Period;
 import java.util.Set;
 
 /**
  * Convenience class aggregating Person and MedicalRecord data.
+ *
+ * <p>The birthdate is kept as an epoch day, along with the age it gives on the date of the
+ * {@link DataSnapshot} holding the record, so searches never compute ages.
  */
 public record PersonData(
 	// Person
@@ -17,21 +19,43 @@ public record PersonData(
 	String phone,
 	String email,
 	// MedicalRecord
-	LocalDate birthdate,
+	int birthEpochDay,
 	Set<String> medications,
-	Set<String> allergies
+	Set<String> allergies,
+	// derived from birthdate
+	int age
 ) {
 
+	public static final int MAJORITY_AGE = 18;
+
+	public LocalDate birthdate() {
+		return LocalDate.ofEpochDay(birthEpochDay);
+	}
+
 	public int getAge() {
-		return Period.between(birthdate, LocalDate.now()).getYears();
+		return age;
 	}
 
 	public boolean isMinor() {
-		return getAge() < 18;
+		return age < MAJORITY_AGE;
 	}
 
 	public boolean isMajor() {
 		return !isMinor();
 	}
 
+	/**
+	 * Returns this record with its age on a date.
+	 *
+	 * @param age the age on the date
+	 * @return this record if its age is unchanged, or an updated copy
+	 */
+	PersonData withAge(int age) {
+		if (age == this.age) {
+			return this;
+		}
+		return new PersonData(firstName, lastName, address, city, zip, phone, email,
+				birthEpochDay, medications, allergies, age);
+	}
+
 }
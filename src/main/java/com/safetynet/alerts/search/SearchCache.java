@@ -0,0 +1,244 @@
+package com.safetynet.alerts.search;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Bounded cache of search results, keyed by endpoint and parameters.
+ *
+ * <p>Each result is stored with the version of the {@link DataSnapshot} it was computed from, and
+ * only served to searches pinning the same version: any data change, which publishes a new
+ * snapshot version, invalidates all results at once. The least recently used results are evicted
+ * beyond {@code search.cache.max-entries}; 0 disables the cache. Cached {@link EncodedResult}s are
+ * also weighed by the size of their encoded JSON, once encoded: the least recently used results
+ * are evicted beyond {@code search.cache.max-size} bytes, and a larger result is not cached at all.
+ *
+ * <p>Recency is approximated with the CLOCK algorithm, so that hits never take a lock: a hit only
+ * marks its result as referenced. Evictions then scan results in insertion order, giving referenced
+ * ones a second chance and evicting the first one not referenced since the previous scan. Only
+ * misses, caching their result, lock the cache.
+ *
+ * <p>Identical searches on the same snapshot running at the same time are coalesced: the first
+ * one searches, the others wait for its result instead of searching again.
+ */
+@Component
+@Slf4j
+public class SearchCache {
+
+	private final int maxEntries;
+
+	private final long maxSize;
+
+	// changed holding the clock monitor only
+	private final Map<Key, CachedResult> results = new ConcurrentHashMap<>();
+
+	// keys of cached results, in the order they are scanned for eviction
+	private final Deque<Key> clock = new ArrayDeque<>();
+
+	// total size of cached results, updated holding the clock monitor
+	private final AtomicLong cachedBytes = new AtomicLong();
+
+	private final Map<Flight, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+	private final Counter hits;
+
+	private final Counter misses;
+
+	private final Counter evictions;
+
+	private final Counter coalesced;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param meterRegistry registry for cache metrics
+	 * @param maxEntries maximum number of cached results, 0 to disable the cache
+	 * @param maxSize maximum total size of the encoded JSON of cached results
+	 */
+	public SearchCache(MeterRegistry meterRegistry, @Value("${search.cache.max-entries:10000}") int maxEntries,
+					   @Value("${search.cache.max-size:64MB}") DataSize maxSize) {
+		this.maxEntries = maxEntries;
+		this.maxSize = maxSize.toBytes();
+
+		hits = Counter.builder("search.cache.requests").tag("result", "hit")
+				.description("Searches answered from the cache")
+				.register(meterRegistry);
+		misses = Counter.builder("search.cache.requests").tag("result", "miss")
+				.description("Searches computed, then cached")
+				.register(meterRegistry);
+		evictions = Counter.builder("search.cache.evictions")
+				.description("Least recently used results evicted from the cache")
+				.register(meterRegistry);
+		coalesced = Counter.builder("search.cache.coalesced")
+				.description("Searches answered by an identical search in progress")
+				.register(meterRegistry);
+		Gauge.builder("search.cache.size", results, Map::size)
+				.description("Results in the cache")
+				.register(meterRegistry);
+		Gauge.builder("search.cache.bytes", cachedBytes, AtomicLong::get)
+				.description("Size of the encoded JSON of results in the cache")
+				.register(meterRegistry);
+		log.info("Search cache of {} results, {} at most", maxEntries, maxSize);
+	}
+
+	/**
+	 * Returns the cached result of a search on a snapshot, or performs and caches the search.
+	 *
+	 * @param snapshot the snapshot searched
+	 * @param endpoint the search endpoint
+	 * @param parameters the search parameters, compared by equality
+	 * @param search the search, performed on the same snapshot
+	 * @return the search result
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T get(DataSnapshot snapshot, String endpoint, Object parameters, Supplier<T> search) {
+		var key = new Key(endpoint, parameters);
+		if (maxEntries > 0) {
+			var cached = results.get(key);
+			if (cached != null && cached.version() == snapshot.version()) {
+				cached.reference();
+				hits.increment();
+				return (T) cached.result();
+			}
+		}
+
+		var flight = new Flight(key, snapshot.version());
+		var pending = new CompletableFuture<>();
+		var inProgress = inFlight.putIfAbsent(flight, pending);
+		if (inProgress != null) {
+			coalesced.increment();
+			return (T) await(inProgress);
+		}
+
+		misses.increment();
+		try {
+			var result = search.get();
+			cache(key, snapshot.version(), result);
+			pending.complete(result);
+			return result;
+		} catch (RuntimeException e) {
+			pending.completeExceptionally(e);
+			throw e;
+		} finally {
+			inFlight.remove(flight);
+		}
+	}
+
+	private void cache(Key key, long version, Object result) {
+		long resultSize = result instanceof EncodedResult<?> encoded ? encoded.jsonSize() : 0;
+		if (maxEntries <= 0 || resultSize > maxSize) {
+			return;
+		}
+		synchronized (clock) {
+			var cached = results.get(key);
+			// a concurrent search may have cached a result from a more recent snapshot
+			if (cached == null || cached.version() < version) {
+				results.put(key, new CachedResult(version, result, resultSize));
+				if (cached == null) {
+					clock.addLast(key);
+				}
+				cachedBytes.addAndGet(resultSize - (cached != null ? cached.size() : 0));
+				evict(key);
+			}
+		}
+	}
+
+	// holding the clock monitor; never evicts the result just cached, being within bounds alone
+	private void evict(Key cachedKey) {
+		while (results.size() > maxEntries || cachedBytes.get() > maxSize) {
+			var key = clock.removeFirst();
+			var cached = results.get(key);
+			if (key.equals(cachedKey) || cached.referenced()) {
+				cached.clearReference();
+				clock.addLast(key);
+				continue;
+			}
+			results.remove(key);
+			cachedBytes.addAndGet(-cached.size());
+			evictions.increment();
+		}
+	}
+
+	// result of a search in progress, with the exception it failed with if any
+	private static Object await(CompletableFuture<Object> inProgress) {
+		try {
+			return inProgress.join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException cause) {
+				throw cause;
+			}
+			throw e;
+		}
+	}
+
+	public int size() {
+		return results.size();
+	}
+
+	private record Key(String endpoint, Object parameters) {
+	}
+
+	private static final class CachedResult {
+
+		private final long version;
+
+		private final Object result;
+
+		private final long size;
+
+		// whether hit since the last eviction scan
+		private volatile boolean referenced;
+
+		CachedResult(long version, Object result, long size) {
+			this.version = version;
+			this.result = result;
+			this.size = size;
+		}
+
+		long version() {
+			return version;
+		}
+
+		Object result() {
+			return result;
+		}
+
+		long size() {
+			return size;
+		}
+
+		boolean referenced() {
+			return referenced;
+		}
+
+		void reference() {
+			// read first, so that frequent hits do not keep writing a shared cache line
+			if (!referenced) {
+				referenced = true;
+			}
+		}
+
+		void clearReference() {
+			referenced = false;
+		}
+
+	}
+
+	private record Flight(Key key, long version) {
+	}
+
+}
@@ -1,12 +1,27 @@
 package com.safetynet.alerts.search;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import com.safetynet.alerts.search.result.*;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.BufferedOutputStream;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Supplier;
 
 /**
  * REST controller for handling various search and alert-related endpoints in the SafetyNet Alerts
@@ -19,19 +34,85 @@ import java.util.Set;
  * <li>Generating child alerts for specific addresses
  * <li>Creating phone alerts for areas covered by specific fire stations
  * <li>Fetching person information by last name
+ * <li>Suggesting last names for autocompletion
  * <li>Retrieving community email lists
  * </ul>
  *
  * <p>Each endpoint is designed to return specific data formats to support various emergency and
  * community service needs.
+ *
+ * <p>Each search runs against a single {@link DataSnapshot}, whose version is returned in the
+ * {@value #DATA_VERSION_HEADER} response header. Results are cached by {@link SearchCache} until
+ * the next data change.
+ *
+ * <p>Search results carry an ETag derived from the snapshot version and the search, suffixed when
+ * the body is compressed. A request whose {@code If-None-Match} header matches the tag of the body
+ * it would get is answered 304 Not Modified without searching. Searches finding nothing carry no
+ * ETag.
+ *
+ * <p>Results are encoded into JSON once, along with their gzip-compressed form if enabled, and
+ * written as is by all responses serving the same cached result.
+ *
+ * <p>Clients accepting {@value MediaType#APPLICATION_NDJSON_VALUE} rather than JSON get fire station
+ * and flood coverage as a stream of households, one JSON object per line, written as they are
+ * found instead of being collected into a single result first.
+ *
+ * <p>Fire, child alert and person information searches also have batch variants, POSTed a JSON
+ * array of addresses or last names. All searches of a batch run against the same snapshot, and
+ * return a JSON object keyed by the requested address or last name, leaving out those without
+ * results.
  */
 @RestController
-@RequiredArgsConstructor
 @Slf4j
 public class SearchController {
 
+	public static final String DATA_VERSION_HEADER = "X-Data-Version";
+
+	private static final int MAX_LAST_NAMES = SearchService.MAX_PREFIX_LAST_NAMES;
+
+	private static final int MAX_BATCH_SIZE = 1000;
+
+	private static final int MIN_GZIP_SIZE = 2048;
+
+	private static final int STREAM_BUFFER_SIZE = 8192;
+
 	private final SearchService service;
 
+	private final SearchCache cache;
+
+	private final ObjectMapper objectMapper;
+
+	// lines of a stream must not be indented
+	private final ObjectWriter lineWriter;
+
+	private final boolean cacheEncoded;
+
+	private final boolean gzip;
+
+	private final String etagPrefix = Long.toString(System.currentTimeMillis(), 36);
+
+	/**
+	 * Constructor.
+	 *
+	 * @param service the search service
+	 * @param cache the cache of search results
+	 * @param objectMapper the mapper encoding search results
+	 * @param cacheEncoded whether encoded results are kept with cached results, rather than
+	 *                     encoded for each response
+	 * @param gzip whether results of at least {@value #MIN_GZIP_SIZE} bytes are compressed for
+	 *             clients accepting gzip
+	 */
+	public SearchController(SearchService service, SearchCache cache, ObjectMapper objectMapper,
+							@Value("${search.response.cache-encoded:true}") boolean cacheEncoded,
+							@Value("${search.response.gzip:false}") boolean gzip) {
+		this.service = service;
+		this.cache = cache;
+		this.objectMapper = objectMapper;
+		this.lineWriter = objectMapper.writer().without(SerializationFeature.INDENT_OUTPUT);
+		this.cacheEncoded = cacheEncoded;
+		this.gzip = gzip;
+	}
+
 	/**
 	 * Retrieves people information in a fire station's coverage area.
 	 *
@@ -41,22 +122,65 @@ public class SearchController {
 	 *
 	 * @param stationNumber the fire station number for which coverage information is
 	 *                      requested.
+	 * @param request the request, answered 304 Not Modified if its ETag is up to date
 	 * @return a ResponseEntity containing:
 	 * <ul>
 	 * <li>200 OK and a FirestationResponse,
 	 * <li>or 404 Not Found if the station number doesn't exist.
 	 * </ul>
 	 */
-	@GetMapping("/firestation")
-	public ResponseEntity<FirestationResult> getFirestation(@RequestParam("stationNumber") int stationNumber) {
-		var firestationResult = service.getFirestation(stationNumber);
+	@GetMapping(value = "/firestation", produces = MediaType.APPLICATION_JSON_VALUE)
+	public ResponseEntity<byte[]> getFirestation(@RequestParam("stationNumber") int stationNumber,
+															WebRequest request) {
+		var snapshot = service.snapshot();
+		var etag = etag(snapshot, "/firestation", stationNumber);
+		if (isNotModified(etag, request)) {
+			return notModified(snapshot, etag, request);
+		}
+		var encodedResult = cached(snapshot, "/firestation", stationNumber,
+				() -> service.getFirestation(snapshot, stationNumber));
+		var firestationResult = encodedResult.result();
 
 		if (firestationResult.isNotEmpty()) {
 			log.info("{} persons covered by fire station #{}", firestationResult.size(), stationNumber);
-			return ResponseEntity.ok(firestationResult);
+			return ok(snapshot, encodedResult, request, etag);
+		} else {
+			log.warn("Fire station #{} not found", stationNumber);
+			return status(snapshot, HttpStatus.NOT_FOUND);
+		}
+	}
+
+	/**
+	 * Streams the households in a fire station's coverage area, as newline-delimited JSON.
+	 *
+	 * <p>Each line holds the address of a household, its child/adult counts and its covered
+	 * people, as in {@link #getFirestation(int, WebRequest)}.
+	 *
+	 * @param stationNumber the fire station number for which coverage information is
+	 *                      requested.
+	 * @param request the request, answered 304 Not Modified if its ETag is up to date
+	 * @return a ResponseEntity containing:
+	 * <ul>
+	 * <li>200 OK and a stream of households,
+	 * <li>or 404 Not Found if the station number doesn't exist.
+	 * </ul>
+	 */
+	@GetMapping(value = "/firestation", produces = MediaType.APPLICATION_NDJSON_VALUE)
+	public ResponseEntity<StreamingResponseBody> streamFirestation(@RequestParam("stationNumber") int stationNumber,
+																	WebRequest request) {
+		var snapshot = service.snapshot();
+		var etag = etag(snapshot, "/firestation.ndjson", stationNumber);
+		if (isNotModified(etag, request)) {
+			return notModified(snapshot, etag, request);
+		}
+		var households = service.streamFirestation(snapshot, stationNumber).iterator();
+
+		if (households.hasNext()) {
+			log.info("Streaming households covered by fire station #{}", stationNumber);
+			return stream(snapshot, households, etag);
 		} else {
 			log.warn("Fire station #{} not found", stationNumber);
-			return ResponseEntity.notFound().build();
+			return status(snapshot, HttpStatus.NOT_FOUND);
 		}
 	}
 
@@ -67,6 +191,7 @@ public class SearchController {
 	 * includes each child's first name, last name, age, and a list of other household members.
 	 *
 	 * @param address the address to search for children
+	 * @param request the request, answered 304 Not Modified if its ETag is up to date
 	 * @return a ResponseEntity containing:
 	 * <ul>
 	 * <li>200 OK and a ChildAlertResponse,
@@ -74,20 +199,52 @@ public class SearchController {
 	 * <li>or 404 Not Found if the address doesn't exist.
 	 * </ul>
 	 */
-	@GetMapping("/childAlert")
-	public ResponseEntity<ChildAlertResult> getChildAlert(@RequestParam("address") String address) {
-		var childAlertResult = service.getChildAlert(address);
+	@GetMapping(value = "/childAlert", produces = MediaType.APPLICATION_JSON_VALUE)
+	public ResponseEntity<byte[]> getChildAlert(@RequestParam("address") String address,
+														  WebRequest request) {
+		var snapshot = service.snapshot();
+		var etag = etag(snapshot, "/childAlert", address);
+		if (isNotModified(etag, request)) {
+			return notModified(snapshot, etag, request);
+		}
+		var encodedResult = cached(snapshot, "/childAlert", address,
+				() -> service.getChildAlert(snapshot, address));
+		var childAlertResult = encodedResult.result();
 
 		if (childAlertResult.hasChildren()) {
 			log.info("{} children found", childAlertResult.size());
-			return ResponseEntity.ok(childAlertResult);
+			return ok(snapshot, encodedResult, request, etag);
 		} else if (childAlertResult.hasAdultsOnly()) {
 			log.info("No children found");
-			return ResponseEntity.ok().build();
-        } else {
+			return status(snapshot, HttpStatus.OK, etag);
+		} else {
 			log.warn("No household found");
-			return ResponseEntity.notFound().build();
+			return status(snapshot, HttpStatus.NOT_FOUND);
+		}
+	}
+
+	/**
+	 * Retrieves child alert information for many addresses in one request.
+	 *
+	 * @param addresses the addresses to search for children, at most {@value #MAX_BATCH_SIZE}
+	 * @param request the request
+	 * @return a ResponseEntity containing:
+	 * <ul>
+	 * <li>200 OK and the ChildAlertResponse of each address where children live, by address,
+	 * <li>or 400 Bad Request if there are no addresses or too many.
+	 * </ul>
+	 */
+	@PostMapping(value = "/childAlert/batch", consumes = MediaType.APPLICATION_JSON_VALUE,
+			produces = MediaType.APPLICATION_JSON_VALUE)
+	public ResponseEntity<byte[]> getChildAlerts(@RequestBody List<String> addresses, WebRequest request) {
+		var snapshot = service.snapshot();
+		if (!isBatchSize(addresses)) {
+			return status(snapshot, HttpStatus.BAD_REQUEST);
 		}
+		var childAlertResults = service.getChildAlerts(snapshot, addresses);
+
+		log.info("Children found at {} of {} addresses", childAlertResults.size(), addresses.size());
+		return ok(snapshot, new EncodedResult<>(childAlertResults), request, null);
 	}
 
 	/**
@@ -97,22 +254,31 @@ public class SearchController {
 	 *
 	 * @param firestationNumber the fire station number for which covered phone
 	 *                          numbers are requested.
+	 * @param request the request, answered 304 Not Modified if its ETag is up to date
 	 * @return a ResponseEntity containing:
 	 * <ul>
 	 * <li>200 OK and a Set of phone numbers,
 	 * <li>or 404 Not Found if no phone numbers are found.
 	 * </ul>
 	 */
-	@GetMapping("/phoneAlert")
-	public ResponseEntity<PhoneAlertResult> getPhoneAlert(@RequestParam("firestation") int firestationNumber) {
-		var phoneAlertResult = service.getPhoneAlert(firestationNumber);
+	@GetMapping(value = "/phoneAlert", produces = MediaType.APPLICATION_JSON_VALUE)
+	public ResponseEntity<byte[]> getPhoneAlert(@RequestParam("firestation") int firestationNumber,
+														  WebRequest request) {
+		var snapshot = service.snapshot();
+		var etag = etag(snapshot, "/phoneAlert", firestationNumber);
+		if (isNotModified(etag, request)) {
+			return notModified(snapshot, etag, request);
+		}
+		var encodedResult = cached(snapshot, "/phoneAlert", firestationNumber,
+				() -> service.getPhoneAlert(snapshot, firestationNumber));
+		var phoneAlertResult = encodedResult.result();
 
 		if (phoneAlertResult.isNotEmpty()) {
 			log.info("{} phone numbers found", phoneAlertResult.size());
-			return ResponseEntity.ok(phoneAlertResult);
+			return ok(snapshot, encodedResult, request, etag);
 		} else {
 			log.warn("No phone numbers found");
-			return ResponseEntity.notFound().build();
+			return status(snapshot, HttpStatus.NOT_FOUND);
 		}
 	}
 
@@ -124,25 +290,60 @@ public class SearchController {
 	 * allergies) of each person.
 	 *
 	 * @param address the address for which to retrieve inhabitant information
+	 * @param request the request, answered 304 Not Modified if its ETag is up to date
 	 * @return a ResponseEntity containing:
 	 * <ul>
 	 * <li>200 OK and a FireResponse object,
 	 * <li>or 404 Not Found if no persons with the specified last name are found.
 	 * </ul>
 	 */
-	@GetMapping("/fire")
-	public ResponseEntity<FireResult> getFire(@RequestParam("address") String address) {
-		var fireResult = service.getFire(address);
+	@GetMapping(value = "/fire", produces = MediaType.APPLICATION_JSON_VALUE)
+	public ResponseEntity<byte[]> getFire(@RequestParam("address") String address,
+											  WebRequest request) {
+		var snapshot = service.snapshot();
+		var etag = etag(snapshot, "/fire", address);
+		if (isNotModified(etag, request)) {
+			return notModified(snapshot, etag, request);
+		}
+		var encodedResult = cached(snapshot, "/fire", address,
+				() -> service.getFire(snapshot, address));
+		var fireResult = encodedResult.result();
 
 		if (fireResult.isNotEmpty()) {
 			log.info("{} persons covered by fire station #{} found", fireResult.size(), fireResult.getFirestation());
-			return ResponseEntity.ok(fireResult);
+			return ok(snapshot, encodedResult, request, etag);
 		} else {
 			log.warn("No people found");
-			return ResponseEntity.notFound().build();
+			return status(snapshot, HttpStatus.NOT_FOUND);
 		}
 	}
 
+	/**
+	 * Retrieves the persons living at many addresses, along with the fire station serving them,
+	 * in one request.
+	 *
+	 * @param addresses the addresses for which to retrieve inhabitant information, at most
+	 *                  {@value #MAX_BATCH_SIZE}
+	 * @param request the request
+	 * @return a ResponseEntity containing:
+	 * <ul>
+	 * <li>200 OK and the FireResponse of each inhabited address, by address,
+	 * <li>or 400 Bad Request if there are no addresses or too many.
+	 * </ul>
+	 */
+	@PostMapping(value = "/fire/batch", consumes = MediaType.APPLICATION_JSON_VALUE,
+			produces = MediaType.APPLICATION_JSON_VALUE)
+	public ResponseEntity<byte[]> getFires(@RequestBody List<String> addresses, WebRequest request) {
+		var snapshot = service.snapshot();
+		if (!isBatchSize(addresses)) {
+			return status(snapshot, HttpStatus.BAD_REQUEST);
+		}
+		var fireResults = service.getFires(snapshot, addresses);
+
+		log.info("People found at {} of {} addresses", fireResults.size(), addresses.size());
+		return ok(snapshot, new EncodedResult<>(fireResults), request, null);
+	}
+
 	/**
 	 * Retrieves a list of all households covered by the specified fire station(s).
 	 *
@@ -151,23 +352,66 @@ public class SearchController {
 	 *
 	 * @param stationNumbers a set of fire station numbers for which to retrieve
 	 *                       household information
+	 * @param request the request, answered 304 Not Modified if its ETag is up to date
 	 * @return ResponseEntity containing:
 	 * <ul>
 	 * <li>200 OK and a FloodStationsResponse object,
 	 * <li>or 404 Not Found if no fire stations are found.
 	 * </ul>
 	 */
-	@GetMapping("/flood/stations")
-	public ResponseEntity<FloodStationsResult> getFloodStations(@RequestParam("stations") Set<Integer> stationNumbers) {
-		var floodStationResult = service.getFloodStations(stationNumbers);
+	@GetMapping(value = "/flood/stations", produces = MediaType.APPLICATION_JSON_VALUE)
+	public ResponseEntity<byte[]> getFloodStations(@RequestParam("stations") Set<Integer> stationNumbers,
+																WebRequest request) {
+		var snapshot = service.snapshot();
+		var etag = etag(snapshot, "/flood/stations", new TreeSet<>(stationNumbers));
+		if (isNotModified(etag, request)) {
+			return notModified(snapshot, etag, request);
+		}
+		var encodedResult = cached(snapshot, "/flood/stations", new TreeSet<>(stationNumbers),
+				() -> service.getFloodStations(snapshot, stationNumbers));
+		var floodStationResult = encodedResult.result();
 
 		if (floodStationResult.isNotEmpty()) {
 			log.info("{} persons in {} households found",
 					floodStationResult.getNumberOfCoveredPersons(), floodStationResult.getNumberOfCoveredHouseholds());
-			return ResponseEntity.ok(floodStationResult);
+			return ok(snapshot, encodedResult, request, etag);
+		} else {
+			log.warn("There is(are) no fire station(s) {}", stationNumbers);
+			return status(snapshot, HttpStatus.NOT_FOUND);
+		}
+	}
+
+	/**
+	 * Streams the households covered by the specified fire station(s), as newline-delimited JSON.
+	 *
+	 * <p>Each line holds the address of a household and its residents, as in
+	 * {@link #getFloodStations(Set, WebRequest)}. Households are listed by station.
+	 *
+	 * @param stationNumbers a set of fire station numbers for which to retrieve
+	 *                       household information
+	 * @param request the request, answered 304 Not Modified if its ETag is up to date
+	 * @return ResponseEntity containing:
+	 * <ul>
+	 * <li>200 OK and a stream of households,
+	 * <li>or 404 Not Found if no fire stations are found.
+	 * </ul>
+	 */
+	@GetMapping(value = "/flood/stations", produces = MediaType.APPLICATION_NDJSON_VALUE)
+	public ResponseEntity<StreamingResponseBody> streamFloodStations(@RequestParam("stations") Set<Integer> stationNumbers,
+																	  WebRequest request) {
+		var snapshot = service.snapshot();
+		var etag = etag(snapshot, "/flood/stations.ndjson", new TreeSet<>(stationNumbers));
+		if (isNotModified(etag, request)) {
+			return notModified(snapshot, etag, request);
+		}
+		var households = service.streamFloodStations(snapshot, stationNumbers).iterator();
+
+		if (households.hasNext()) {
+			log.info("Streaming households covered by fire station(s) {}", stationNumbers);
+			return stream(snapshot, households, etag);
 		} else {
 			log.warn("There is(are) no fire station(s) {}", stationNumbers);
-			return ResponseEntity.notFound().build();
+			return status(snapshot, HttpStatus.NOT_FOUND);
 		}
 	}
 
@@ -176,46 +420,302 @@ public class SearchController {
 	 * history (medications and allergies).
 	 *
 	 * @param lastName The last name to search for
+	 * @param match how last names are matched: exactly (default), ignoring case, or by prefix
+	 * @param request the request, answered 304 Not Modified if its ETag is up to date
 	 * @return a ResponseEntity containing:
 	 * <ul>
 	 * <li>200 OK and a Set of PersonInfoLastNameResponse objects,
 	 * <li>or 404 Not Found if no persons with the specified last name are found.
 	 * </ul>
 	 */
-	@GetMapping("/personInfo")
-	public ResponseEntity<PersonInfoResult> getPersonInfo(@RequestParam("lastName") String lastName) {
-		var personInfoResult = service.getPersonInfo(lastName);
+	@GetMapping(value = "/personInfo", produces = MediaType.APPLICATION_JSON_VALUE)
+	public ResponseEntity<byte[]> getPersonInfo(@RequestParam("lastName") String lastName,
+														  @RequestParam(name = "match", defaultValue = "exact") NameMatch match,
+														  WebRequest request) {
+		var snapshot = service.snapshot();
+		var etag = etag(snapshot, "/personInfo", List.of(lastName, match));
+		if (isNotModified(etag, request)) {
+			return notModified(snapshot, etag, request);
+		}
+		var encodedResult = cached(snapshot, "/personInfo", List.of(lastName, match),
+				() -> service.getPersonInfo(snapshot, lastName, match));
+		var personInfoResult = encodedResult.result();
 
 		if (personInfoResult.isNotEmpty()) {
 			log.info("{} with last name {} found", personInfoResult.size(), lastName);
-			return ResponseEntity.ok(personInfoResult);
+			return ok(snapshot, encodedResult, request, etag);
 		} else {
 			log.warn("No people found with last name {} found", lastName);
-			return ResponseEntity.notFound().build();
+			return status(snapshot, HttpStatus.NOT_FOUND);
+		}
+	}
+
+	/**
+	 * Retrieves all persons with any of many last names in one request.
+	 *
+	 * @param lastNames the last names to search for, at most {@value #MAX_BATCH_SIZE}
+	 * @param match how last names are matched: exactly (default), ignoring case, or by prefix
+	 * @param request the request
+	 * @return a ResponseEntity containing:
+	 * <ul>
+	 * <li>200 OK and the persons of each last name matching some, by last name,
+	 * <li>or 400 Bad Request if there are no last names or too many.
+	 * </ul>
+	 */
+	@PostMapping(value = "/personInfo/batch", consumes = MediaType.APPLICATION_JSON_VALUE,
+			produces = MediaType.APPLICATION_JSON_VALUE)
+	public ResponseEntity<byte[]> getPersonInfos(@RequestBody List<String> lastNames,
+												 @RequestParam(name = "match", defaultValue = "exact") NameMatch match,
+												 WebRequest request) {
+		var snapshot = service.snapshot();
+		if (!isBatchSize(lastNames)) {
+			return status(snapshot, HttpStatus.BAD_REQUEST);
+		}
+		var personInfoResults = service.getPersonInfos(snapshot, lastNames, match);
+
+		log.info("People found for {} of {} last names", personInfoResults.size(), lastNames.size());
+		return ok(snapshot, new EncodedResult<>(personInfoResults), request, null);
+	}
+
+	/**
+	 * Suggests known last names starting with a prefix, ignoring case, for autocompletion.
+	 *
+	 * @param prefix the beginning of the last names
+	 * @param limit the maximum number of suggestions, between 1 and {@value #MAX_LAST_NAMES}
+	 * @param request the request, answered 304 Not Modified if its ETag is up to date
+	 * @return a ResponseEntity containing:
+	 * <ul>
+	 * <li>200 OK and a List of last names in alphabetical order,
+	 * <li>or 404 Not Found if no last name starts with the prefix.
+	 * </ul>
+	 */
+	@GetMapping(value = "/lastNames", produces = MediaType.APPLICATION_JSON_VALUE)
+	public ResponseEntity<byte[]> getLastNames(@RequestParam("prefix") String prefix,
+														@RequestParam(name = "limit", defaultValue = "10") int limit,
+														WebRequest request) {
+		var snapshot = service.snapshot();
+		var etag = etag(snapshot, "/lastNames", List.of(prefix, limit));
+		if (isNotModified(etag, request)) {
+			return notModified(snapshot, etag, request);
+		}
+		var lastNamesResult = service.getLastNames(snapshot, prefix, Math.clamp(limit, 1, MAX_LAST_NAMES));
+
+		if (lastNamesResult.isNotEmpty()) {
+			log.info("{} last names starting with {} found", lastNamesResult.size(), prefix);
+			return ok(snapshot, new EncodedResult<>(lastNamesResult), request, etag);
+		} else {
+			log.warn("No last name starting with {} found", prefix);
+			return status(snapshot, HttpStatus.NOT_FOUND);
 		}
 	}
 
 	/**
 	 * Retrieves email addresses from all residents of a city.
 	 *
+	 * <p>The result is kept by city until residents of the city change.
+	 *
 	 * @param city the city for which to retrieve email addresses
+	 * @param request the request, answered 304 Not Modified if its ETag is up to date
 	 * @return a ResponseEntity with:
 	 * <ul>
 	 * <li>200 OK and a Set of unique email addresses from residents of the city,
 	 * <li>or 404 Not Found if the city is unknown.
 	 * </ul>
 	 */
-	@GetMapping("/communityEmail")
-	public ResponseEntity<CommunityEmailResult> getCommunityEmail(@RequestParam("city") String city) {
-		var communityEmailResult = service.getCommunityEmail(city);
+	@GetMapping(value = "/communityEmail", produces = MediaType.APPLICATION_JSON_VALUE)
+	public ResponseEntity<byte[]> getCommunityEmail(@RequestParam("city") String city,
+													WebRequest request) {
+		var snapshot = service.snapshot();
+		var etag = etag(snapshot, "/communityEmail", city);
+		if (isNotModified(etag, request)) {
+			return notModified(snapshot, etag, request);
+		}
+		var encodedResult = service.getEncodedCommunityEmail(snapshot, city);
+		var communityEmailResult = encodedResult.result();
 
 		if (communityEmailResult.isNotEmpty()) {
 			log.info("{} email addresses found", communityEmailResult.size());
-			return ResponseEntity.ok(communityEmailResult);
+			return ok(snapshot, encodedResult, request, etag);
 		} else {
 			log.warn("{} is not a known city", city);
-			return ResponseEntity.notFound().build();
+			return status(snapshot, HttpStatus.NOT_FOUND);
+		}
+	}
+
+	private static boolean isBatchSize(List<String> keys) {
+		if (keys.isEmpty() || keys.size() > MAX_BATCH_SIZE) {
+			log.warn("Batch of {} searches refused, between 1 and {} expected", keys.size(), MAX_BATCH_SIZE);
+			return false;
+		}
+		return true;
+	}
+
+	private byte[] encode(Object result) {
+		try {
+			return objectMapper.writeValueAsBytes(result);
+		} catch (JsonProcessingException e) {
+			log.error("Cannot encode search result: {}", e.getMessage());
+			throw new RuntimeException("Cannot encode search result: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Builds the entity tag of a search response. Responses to the same search on the same
+	 * snapshot are identical, and versions restart at each application start, hence a tag made of
+	 * the start time, the snapshot version and the search.
+	 */
+	private String etag(DataSnapshot snapshot, String endpoint, Object parameters) {
+		return "\"%s-%d-%x\"".formatted(etagPrefix, snapshot.version(), (endpoint + parameters).hashCode());
+	}
+
+	/**
+	 * Builds the entity tag of a compressed search response, so that compressed and identity
+	 * bodies never share a tag.
+	 */
+	private static String gzipTag(String etag) {
+		return etag.substring(0, etag.length() - 1) + "-gzip\"";
+	}
+
+	/**
+	 * Returns the tag matched by the If-None-Match header of a request, weakly compared, among the
+	 * tag of a search and, for clients accepting gzip, the tag of its compressed body. Whether the
+	 * body is compressed only depends on the result, the same for the same tag, so a client holding
+	 * either one holds the body it would get.
+	 *
+	 * @return the matched tag, or null if none is matched
+	 */
+	private String matchedTag(String etag, WebRequest request) {
+		var ifNoneMatch = request.getHeaderValues(HttpHeaders.IF_NONE_MATCH);
+		if (ifNoneMatch == null) {
+			return null;
+		}
+		var compressedTag = gzip && acceptsGzip(request.getHeader(HttpHeaders.ACCEPT_ENCODING)) ? gzipTag(etag) : null;
+		for (var header : ifNoneMatch) {
+			for (var tag : header.split(",")) {
+				tag = tag.strip();
+				if (tag.startsWith("W/")) {
+					tag = tag.substring(2);
+				}
+				if (tag.equals(etag) || tag.equals("*")) {
+					return etag;
+				} else if (tag.equals(compressedTag)) {
+					return compressedTag;
+				}
+			}
+		}
+		return null;
+	}
+
+	private boolean isNotModified(String etag, WebRequest request) {
+		return matchedTag(etag, request) != null;
+	}
+
+	/**
+	 * Tells whether an Accept-Encoding header accepts gzip, listed or matched by {@code *}, with a
+	 * non-zero quality value.
+	 */
+	private static boolean acceptsGzip(String acceptEncoding) {
+		if (acceptEncoding == null) {
+			return false;
+		}
+		Double gzipQuality = null;
+		Double anyQuality = null;
+		for (var coding : acceptEncoding.split(",")) {
+			var parameters = coding.split(";");
+			var name = parameters[0].strip().toLowerCase(Locale.ROOT);
+			double quality = 1;
+			for (int i = 1; i < parameters.length; i++) {
+				var parameter = parameters[i].strip();
+				if (parameter.regionMatches(true, 0, "q=", 0, 2)) {
+					try {
+						quality = Double.parseDouble(parameter.substring(2).strip());
+					} catch (NumberFormatException e) {
+						quality = 0;
+					}
+				}
+			}
+			if (name.equals("gzip") || name.equals("x-gzip")) {
+				gzipQuality = quality;
+			} else if (name.equals("*")) {
+				anyQuality = quality;
+			}
+		}
+		var quality = gzipQuality != null ? gzipQuality : anyQuality;
+		return quality != null && quality > 0;
+	}
+
+	private <T> ResponseEntity<T> notModified(DataSnapshot snapshot, String etag, WebRequest request) {
+		return status(snapshot, HttpStatus.NOT_MODIFIED, matchedTag(etag, request));
+	}
+
+	/**
+	 * Returns the cached result of a search, or performs and caches it. Unless disabled, the result
+	 * is encoded before being cached, so that the cache bounds its size.
+	 */
+	private <T> EncodedResult<T> cached(DataSnapshot snapshot, String endpoint, Object parameters, Supplier<T> search) {
+		return cache.get(snapshot, endpoint, parameters, () -> {
+			var result = new EncodedResult<>(search.get());
+			if (cacheEncoded) {
+				result.json(this::encode);
+			}
+			return result;
+		});
+	}
+
+	/**
+	 * Builds a response with an encoded result, compressed if enabled and accepted by the client,
+	 * tagged with the given tag, suffixed if compressed, or untagged if null. Unless disabled,
+	 * encoded and compressed forms are reused as long as the result is cached.
+	 */
+	private ResponseEntity<byte[]> ok(DataSnapshot snapshot, EncodedResult<?> result, WebRequest request, String etag) {
+		var response = ResponseEntity.ok().header(DATA_VERSION_HEADER, String.valueOf(snapshot.version()));
+		var json = cacheEncoded ? result.json(this::encode) : encode(result.result());
+		if (gzip && json.length >= MIN_GZIP_SIZE) {
+			response.varyBy(HttpHeaders.ACCEPT_ENCODING);
+			if (acceptsGzip(request.getHeader(HttpHeaders.ACCEPT_ENCODING))) {
+				var compressed = cacheEncoded ? result.gzip(this::encode) : EncodedResult.compress(json);
+				if (etag != null) {
+					response.eTag(gzipTag(etag));
+				}
+				return response.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(compressed);
+			}
+		}
+		if (etag != null) {
+			response.eTag(etag);
+		}
+		return response.body(json);
+	}
+
+	/**
+	 * Builds a response writing each element on its own line, as it is taken from the iterator.
+	 * Lines are buffered, but never the whole response.
+	 */
+	private ResponseEntity<StreamingResponseBody> stream(DataSnapshot snapshot, Iterator<?> lines, String etag) {
+		return ResponseEntity.ok()
+				.eTag(etag)
+				.header(DATA_VERSION_HEADER, String.valueOf(snapshot.version()))
+				.contentType(MediaType.APPLICATION_NDJSON)
+				.body(out -> {
+					var buffered = new BufferedOutputStream(out, STREAM_BUFFER_SIZE);
+					while (lines.hasNext()) {
+						buffered.write(lineWriter.writeValueAsBytes(lines.next()));
+						buffered.write('\n');
+					}
+					buffered.flush();
+				});
+	}
+
+	private static <T> ResponseEntity<T> status(DataSnapshot snapshot, HttpStatus status) {
+		return status(snapshot, status, null);
+	}
+
+	// tagged with the given tag, or untagged if null
+	private static <T> ResponseEntity<T> status(DataSnapshot snapshot, HttpStatus status, String etag) {
+		var response = ResponseEntity.status(status).header(DATA_VERSION_HEADER, String.valueOf(snapshot.version()));
+		if (etag != null) {
+			response.eTag(etag);
 		}
+		return response.build();
 	}
 
 }
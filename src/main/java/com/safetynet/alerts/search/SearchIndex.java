@@ -0,0 +1,167 @@
+package com.safetynet.alerts.search;
+
+import com.safetynet.alerts.data.DataStore;
+import com.safetynet.alerts.firestation.FirestationDTO;
+import com.safetynet.alerts.medicalrecord.MedicalRecordDTO;
+import com.safetynet.alerts.person.PersonDTO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
+import java.util.regex.Pattern;
+
+/**
+ * Search-oriented views of the {@link DataStore}, published as immutable {@link DataSnapshot}s.
+ *
+ * <p>The {@link PersonData} view joins every person with their medical record. Persons without a
+ * medical record yet are not part of the view.
+ *
+ * <p>Two inverted indexes, fire station to covered addresses and address to residents, let
+ * coverage searches only visit the addresses and residents they return.
+ *
+ * <p>Households are keyed by {@link #normalize(String) normalized} address, together with their
+ * covering fire station, so a household lookup costs a single hash lookup whatever the size of
+ * the dataset, and tolerates differences in case or spacing.
+ *
+ * <p>Last names are indexed the same way, both by normalized last name and in alphabetical order,
+ * so persons are found by exact, case-insensitive or prefix match without scanning all persons.
+ *
+ * <p>Ages are computed once per person, on the date of the snapshot. At midnight, a new snapshot
+ * updates only the ages of persons whose birthday it is.
+ *
+ * <p>Views are built once, then each data change atomically publishes a new snapshot derived from
+ * the current one. Searches read the snapshot current when they start without any locking, and
+ * never observe a change half-applied to the views. The next snapshot is derived before the change
+ * is applied to the store, so a change the views cannot hold is refused rather than stored.
+ */
+@Component
+@Slf4j
+public class SearchIndex {
+
+	private static final Pattern SPACES = Pattern.compile("\\s+");
+
+	private final DataStore store;
+
+	private final Clock clock;
+
+	private final AtomicReference<DataSnapshot> current;
+
+	/**
+	 * Constructor building all views from current data.
+	 *
+	 * @param store the data store to index
+	 * @param clock the clock giving the date on which ages are computed
+	 */
+	public SearchIndex(DataStore store, Clock clock) {
+		this.store = store;
+		this.clock = clock;
+
+		var today = LocalDate.now(clock);
+		var personData = new HashMap<String, PersonData>();
+		store.persons().values().forEach(person -> {
+			var data = join(person, store.medicalRecords().get(person.getId()), today);
+			if (data != null) {
+				personData.put(person.getId(), data);
+			}
+		});
+		var snapshot = DataSnapshot.of(store.persons().values(), store.medicalRecords().values(), personData,
+				store.firestations().values(), today);
+		current = new AtomicReference<>(snapshot);
+
+		store.persons().addListener(this::onPersonChange);
+		store.medicalRecords().addListener(this::onMedicalRecordChange);
+		store.firestations().addListener(this::onFirestationChange);
+		log.info("{} persons and {} fire station assignments indexed",
+				snapshot.persons().size(), store.firestations().size());
+	}
+
+	/**
+	 * Returns the current snapshot of all views.
+	 *
+	 * @return the current snapshot
+	 */
+	public DataSnapshot snapshot() {
+		return current.get();
+	}
+
+	/**
+	 * Moves the snapshot to the current date at midnight, updating the ages of persons whose
+	 * birthday it is. Ages do not change in between, so searches never compute them.
+	 */
+	@Scheduled(cron = "0 0 0 * * *")
+	public void rollover() {
+		var today = LocalDate.now(clock);
+		var snapshot = current.updateAndGet(previous -> previous.withToday(today));
+		log.info("Ages updated for {}, snapshot version {}", today, snapshot.version());
+	}
+
+	/**
+	 * Normalizes an address or a last name into an index key: surrounding spaces are removed,
+	 * inner spaces collapsed and letters lower-cased.
+	 *
+	 * @param value the address or last name
+	 * @return the index key
+	 * @throws IllegalArgumentException if the value is missing
+	 */
+	public static String normalize(String value) {
+		if (value == null) {
+			throw new IllegalArgumentException("Cannot index a missing address or last name");
+		}
+		return SPACES.matcher(value.strip()).replaceAll(" ").toLowerCase(Locale.ROOT);
+	}
+
+	// Listeners run under the lock of the changed identifier, so the join below sees the medical
+	// record matching the person, and changes of other identifiers are published concurrently.
+
+	private Runnable onPersonChange(PersonDTO previous, PersonDTO current) {
+		var snapshot = this.current.get();
+		var currentData = current != null
+				? join(current, store.medicalRecords().get(current.getId()), snapshot.today()) : null;
+		return derive(snapshot, next -> next.withPerson(previous, current, currentData));
+	}
+
+	private Runnable onMedicalRecordChange(MedicalRecordDTO previous, MedicalRecordDTO current) {
+		var snapshot = this.current.get();
+		PersonData currentData = null;
+		if (current != null) {
+			var person = store.persons().get(current.getId());
+			currentData = person != null ? join(person, current, snapshot.today()) : null;
+		}
+		var data = currentData;
+		return derive(snapshot, next -> next.withMedicalRecord(previous, current, data));
+	}
+
+	private Runnable onFirestationChange(FirestationDTO previous, FirestationDTO current) {
+		return derive(this.current.get(), next -> next.withFirestation(previous, current));
+	}
+
+	// Derives the snapshot following a change before it is applied, so that a change the views
+	// cannot hold fails there. The derived snapshot is published unless another change was
+	// published meanwhile, in which case the change is derived again, from the same checked data.
+	private Runnable derive(DataSnapshot snapshot, UnaryOperator<DataSnapshot> change) {
+		var next = change.apply(snapshot);
+		return () -> current.updateAndGet(published -> published == snapshot ? next : change.apply(published));
+	}
+
+	// the snapshot publishing the join corrects its age, should the date change meanwhile
+	private PersonData join(PersonDTO person, MedicalRecordDTO record, LocalDate today) {
+		if (record == null) {
+			log.debug("{} has no medical record and is not searchable yet", person.getFullName());
+			return null;
+		}
+		return new PersonData(
+				person.getFirstName(), person.getLastName(),
+				person.getAddress(), person.getCity(), person.getZip(),
+				person.getPhone(), person.getEmail(),
+				(int) record.getBirthdate().toEpochDay(), record.getMedications(), record.getAllergies(),
+				record.getAge(today)
+		);
+	}
+
+}
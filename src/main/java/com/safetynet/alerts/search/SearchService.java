@@ -1,18 +1,23 @@
 package com.safetynet.alerts.search;
 
-import com.safetynet.alerts.firestation.FirestationDTO;
-import com.safetynet.alerts.medicalrecord.MedicalRecordDTO;
 import com.safetynet.alerts.person.PersonDTO;
 import com.safetynet.alerts.search.result.*;
-import com.safetynet.alerts.util.JsonUtils;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.stream.Stream;
 
-import static java.util.stream.Collectors.toMap;
 import static java.util.stream.Collectors.toUnmodifiableSet;
 
 @Service
@@ -20,7 +25,29 @@ import static java.util.stream.Collectors.toUnmodifiableSet;
 @Slf4j
 public class SearchService {
 
-	private final JsonUtils jsonUtils;
+	/**
+	 * Number of covered addresses from which flood searches run in parallel. Below it, splitting
+	 * the search costs more than it saves.
+	 */
+	private static final int PARALLEL_FLOOD_THRESHOLD = 512;
+
+	/**
+	 * Maximum number of last names a prefix match returns the persons of, as many as the
+	 * suggestions of {@code /lastNames}, so that a short prefix cannot return most persons.
+	 */
+	public static final int MAX_PREFIX_LAST_NAMES = 100;
+
+	private final SearchIndex index;
+
+	/**
+	 * Returns the current data snapshot. Searches given the same snapshot see the same data,
+	 * whatever the changes applied meanwhile.
+	 *
+	 * @return the current snapshot
+	 */
+	public DataSnapshot snapshot() {
+		return index.snapshot();
+	}
 
 	/**
 	 *
@@ -28,20 +55,39 @@ public class SearchService {
 	 * @return
 	 */
 	public FirestationResult getFirestation(int stationNumber) {
+		return getFirestation(snapshot(), stationNumber);
+	}
+
+	public FirestationResult getFirestation(DataSnapshot snapshot, int stationNumber) {
 		log.info("Searching fire station #{} coverage", stationNumber);
 
-		var firestationCoverage = jsonUtils.get(FirestationDTO.class).stream()
-				.filter(firestation -> firestation.getStation() == stationNumber)
-				.map(FirestationDTO::getAddress).toList();
+		var firestationCoverage = coveredAddresses(snapshot, Set.of(stationNumber));
 		log.debug("Covered addresses: {}", firestationCoverage);
 
-		var coveredPeople = getPersonDataStream()
-				.filter(personData -> firestationCoverage.contains(personData.address())).toList();
+		var coveredPeople = firestationCoverage.stream()
+				.flatMap(address -> snapshot.residentData(address).stream()).toList();
 		log.debug("Covered people: {}", coveredPeople);
 
 		return new FirestationResult(coveredPeople);
 	}
 
+	/**
+	 * Streams the households covered by a fire station, one at a time. Unlike
+	 * {@link #getFirestation(DataSnapshot, int)}, households are built only as the stream is
+	 * consumed: only the covered addresses are collected upfront.
+	 *
+	 * @param snapshot the data snapshot to search
+	 * @param stationNumber the fire station number
+	 * @return a lazy stream of households with at least one resident
+	 */
+	public Stream<FirestationResult.Household> streamFirestation(DataSnapshot snapshot, int stationNumber) {
+		log.info("Streaming fire station #{} coverage", stationNumber);
+
+		return coveredAddresses(snapshot, Set.of(stationNumber)).stream()
+				.map(address -> FirestationResult.Household.of(address, snapshot.residentData(address)))
+				.filter(household -> !household.coveredPersons().isEmpty());
+	}
+
 	/**
 	 *
 	 *
@@ -49,31 +95,50 @@ public class SearchService {
 	 * @return
 	 */
 	public ChildAlertResult getChildAlert(String address) {
+		return getChildAlert(snapshot(), address);
+	}
+
+	public ChildAlertResult getChildAlert(DataSnapshot snapshot, String address) {
 		log.info("Searching for children at {}", address);
 
-		var household = getPersonDataStream()
-				.filter(person -> person.address().equals(address)).toList();
+		var household = snapshot.residentData(address);
 		log.debug("Household: {}", household);
 
 		return new ChildAlertResult(household);
 	}
 
+	/**
+	 * Searches children at many addresses at once. Addresses spelled differently but designating
+	 * the same household are searched once.
+	 *
+	 * @param snapshot the data snapshot to search
+	 * @param addresses the addresses
+	 * @return the results of addresses where children live, by address as requested
+	 */
+	public Map<String, ChildAlertResult> getChildAlerts(DataSnapshot snapshot, Collection<String> addresses) {
+		log.info("Searching for children at {} addresses", addresses.size());
+
+		return batch(addresses, SearchIndex::normalize,
+				address -> new ChildAlertResult(snapshot.residentData(address)), ChildAlertResult::hasChildren);
+	}
+
 	/**
 	 *
 	 * @param firestationNumber
 	 * @return
 	 */
 	public PhoneAlertResult getPhoneAlert(int firestationNumber) {
+		return getPhoneAlert(snapshot(), firestationNumber);
+	}
+
+	public PhoneAlertResult getPhoneAlert(DataSnapshot snapshot, int firestationNumber) {
 		log.info("Searching all phone numbers covered by fire station #{}", firestationNumber);
 
-		var firestationCoverage = jsonUtils.get(FirestationDTO.class).stream()
-				.filter(firestation -> firestation.getStation() == firestationNumber)
-				.map(FirestationDTO::getAddress)
-				.collect(toUnmodifiableSet());
+		var firestationCoverage = snapshot.addresses(firestationNumber);
 		log.debug("Searched addresses: {}", firestationCoverage);
 
-		var phoneNumbers = jsonUtils.get(PersonDTO.class).stream()
-				.filter(person -> firestationCoverage.contains(person.getAddress()))
+		var phoneNumbers = firestationCoverage.stream()
+				.flatMap(address -> snapshot.residents(address).stream())
 				.map(PersonDTO::getPhone)
 				.collect(toUnmodifiableSet());
 
@@ -81,38 +146,75 @@ public class SearchService {
 	}
 
 	public FireResult getFire(String address) {
-		log.info("Searching people and covering fire station at {}", address);
+		return getFire(snapshot(), address);
+	}
 
-		var firestations = jsonUtils.get(FirestationDTO.class).stream()
-				.collect(toMap(FirestationDTO::getAddress, FirestationDTO::getStation));
+	public FireResult getFire(DataSnapshot snapshot, String address) {
+		log.info("Searching people and covering fire station at {}", address);
 
-		var coveringStation = firestations.get(address);
+		var coveringStation = snapshot.station(address);
 
-		var household = getPersonDataStream()
-				.filter(personData -> personData.address().equals(address)).toList();
+		var household = snapshot.residentData(address);
 		log.debug("Household: {}", household);
 
 		return new FireResult(coveringStation, household);
 	}
 
+	/**
+	 * Searches people and their covering fire station at many addresses at once. Addresses
+	 * spelled differently but designating the same household are searched once.
+	 *
+	 * @param snapshot the data snapshot to search
+	 * @param addresses the addresses
+	 * @return the results of inhabited addresses, by address as requested
+	 */
+	public Map<String, FireResult> getFires(DataSnapshot snapshot, Collection<String> addresses) {
+		log.info("Searching people and covering fire stations at {} addresses", addresses.size());
+
+		return batch(addresses, SearchIndex::normalize,
+				address -> new FireResult(snapshot.station(address), snapshot.residentData(address)),
+				FireResult::isNotEmpty);
+	}
+
 	/**
 	 *
 	 * @param stationNumbers
 	 * @return
 	 */
 	public FloodStationsResult getFloodStations(Set<Integer> stationNumbers) {
+		return getFloodStations(snapshot(), stationNumbers);
+	}
+
+	public FloodStationsResult getFloodStations(DataSnapshot snapshot, Set<Integer> stationNumbers) {
 		log.info("Searching all households covered by fire station(s) {}", stationNumbers);
 
-		var coveredAddresses = jsonUtils.get(FirestationDTO.class).stream()
-				.filter(firestation -> stationNumbers.contains(firestation.getStation()))
-				.map(FirestationDTO::getAddress).sorted().toList();
+		var coveredAddresses = coveredAddresses(snapshot, stationNumbers);
 		log.debug("Covered addresses: {}", coveredAddresses);
 
-		var coveredPeople = getPersonDataStream()
-				.filter(person -> coveredAddresses.contains(person.address())).toList();
-		log.debug("Covered people: {}", coveredPeople);
+		// large coverages are split by address range across the common fork-join pool
+		var addresses = coveredAddresses.size() < PARALLEL_FLOOD_THRESHOLD
+				? coveredAddresses.stream()
+				: coveredAddresses.parallelStream();
+		var coveredPeople = addresses.flatMap(address -> snapshot.residentData(address).stream());
+
+		return new FloodStationsResult(coveredPeople);
+	}
+
+	/**
+	 * Streams the households covered by fire stations, one at a time. Unlike
+	 * {@link #getFloodStations(DataSnapshot, Set)}, households are built only as the stream is
+	 * consumed: only the covered addresses are collected upfront.
+	 *
+	 * @param snapshot the data snapshot to search
+	 * @param stationNumbers the fire station numbers
+	 * @return a lazy stream of households with at least one resident, by station
+	 */
+	public Stream<FloodStationsResult.Household> streamFloodStations(DataSnapshot snapshot, Set<Integer> stationNumbers) {
+		log.info("Streaming all households covered by fire station(s) {}", stationNumbers);
 
-		return new FloodStationsResult(coveredAddresses, coveredPeople);
+		return coveredAddresses(snapshot, stationNumbers).stream()
+				.map(address -> FloodStationsResult.Household.of(address, snapshot.residentData(address)))
+				.filter(household -> !household.residents().isEmpty());
 	}
 
 	/**
@@ -121,54 +223,150 @@ public class SearchService {
 	 * @return
 	 */
 	public PersonInfoResult getPersonInfo(String lastName) {
-		log.info("Searching people with last name {}", lastName);
+		return getPersonInfo(snapshot(), lastName);
+	}
+
+	public PersonInfoResult getPersonInfo(DataSnapshot snapshot, String lastName) {
+		return getPersonInfo(snapshot, lastName, NameMatch.EXACT);
+	}
+
+	/**
+	 * Searches persons by last name. A prefix match returns the persons of the first
+	 * {@value #MAX_PREFIX_LAST_NAMES} matching last names in alphabetical order.
+	 *
+	 * @param snapshot the data snapshot to search
+	 * @param lastName the searched last name, or its beginning for a prefix match
+	 * @param match how last names are matched
+	 * @return the matching persons
+	 */
+	public PersonInfoResult getPersonInfo(DataSnapshot snapshot, String lastName, NameMatch match) {
+		log.info("Searching people with last name {} ({} match)", lastName, match);
+
+		return getPersonInfo(snapshot, lastName, match, snapshot::personDataByLastName);
+	}
+
+	/**
+	 * Searches persons by many last names at once. Persons sharing a last name, whatever its case
+	 * or spacing, are looked up once, then filtered for each matching last name.
+	 *
+	 * @param snapshot the data snapshot to search
+	 * @param lastNames the searched last names, or their beginnings for a prefix match
+	 * @param match how last names are matched
+	 * @return the results of last names matching persons, by last name as requested
+	 */
+	public Map<String, PersonInfoResult> getPersonInfos(DataSnapshot snapshot, Collection<String> lastNames,
+														NameMatch match) {
+		log.info("Searching people with {} last names ({} match)", lastNames.size(), match);
+
+		var personDataByLastName = new HashMap<String, List<PersonData>>();
+		return batch(lastNames, Function.identity(),
+				lastName -> getPersonInfo(snapshot, lastName, match,
+						key -> personDataByLastName.computeIfAbsent(key, snapshot::personDataByLastName)),
+				PersonInfoResult::isNotEmpty);
+	}
 
-		var matchingLastName = getPersonDataStream()
-				.filter(personData -> personData.lastName().equals(lastName)).toList();
+	private PersonInfoResult getPersonInfo(DataSnapshot snapshot, String lastName, NameMatch match,
+										   Function<String, List<PersonData>> personDataByLastName) {
+		var key = SearchIndex.normalize(lastName);
+		var matchingLastName = switch (match) {
+			case EXACT -> personDataByLastName.apply(key).stream()
+					.filter(personData -> personData.lastName().equals(lastName)).toList();
+			case IGNORE_CASE -> personDataByLastName.apply(key);
+			case PREFIX -> key.isEmpty() ? List.<PersonData>of() : snapshot.lastNames(key, MAX_PREFIX_LAST_NAMES).stream()
+					.flatMap(name -> personDataByLastName.apply(name).stream()).toList();
+		};
 
 		log.debug("Matching last names: {}", matchingLastName);
 
 		return new PersonInfoResult(matchingLastName);
 	}
 
+	/**
+	 * Suggests last names starting with a prefix, ignoring case and extra spaces.
+	 *
+	 * @param snapshot the data snapshot to search
+	 * @param prefix the beginning of the last names, empty for all last names
+	 * @param limit the maximum number of suggested last names
+	 * @return the first matching last names in alphabetical order
+	 */
+	public LastNamesResult getLastNames(DataSnapshot snapshot, String prefix, int limit) {
+		log.info("Searching {} last names starting with {}", limit, prefix);
+
+		var lastNames = snapshot.lastNames(SearchIndex.normalize(prefix), limit).stream()
+				.map(snapshot::lastNameSpelling)
+				.filter(Objects::nonNull)
+				.toList();
+		log.debug("Last names found: {}", lastNames);
+
+		return new LastNamesResult(lastNames);
+	}
+
 	/**
 	 *
 	 * @param city
 	 * @return
 	 */
 	public CommunityEmailResult getCommunityEmail(String city) {
+		return getCommunityEmail(snapshot(), city);
+	}
+
+	public CommunityEmailResult getCommunityEmail(DataSnapshot snapshot, String city) {
 		log.info("Searching all email addresses in {}", city);
 
-		var emails = jsonUtils.get(PersonDTO.class).stream()
-				.filter(person -> person.getCity().equals(city))
-				.map(PersonDTO::getEmail)
-				.collect(toUnmodifiableSet());
+		var emails = snapshot.contacts(city).emails();
 		log.debug("Email addresses found: {}", emails);
 
 		return new CommunityEmailResult(emails);
 	}
 
 	/**
-	 * Return a stream of PersonData.
+	 * Returns the email addresses of all residents of a city, kept with their encoded forms until
+	 * residents of the city change.
 	 *
-	 * <p>PersonData aggregates Person and MedicalRecord for easier search into known personal
-	 * data.
+	 * @param snapshot the data snapshot to search
+	 * @param city the city
+	 * @return the email addresses result, empty if the city is unknown
+	 */
+	public EncodedResult<CommunityEmailResult> getEncodedCommunityEmail(DataSnapshot snapshot, String city) {
+		log.info("Searching all email addresses in {}", city);
+
+		return snapshot.contacts(city).emailsResult();
+	}
+
+	/**
+	 * Runs a search for each requested key, once per distinct search key, and keeps the results
+	 * found in the order keys were requested.
+	 */
+	/**
+	 * Returns the addresses covered by fire stations, one spelling per household since residents
+	 * are found whatever the spelling. Stations are taken in ascending order and their addresses
+	 * in alphabetical order, the first spelling met being kept.
 	 *
-	 * @return a Stream of PersonData objects
+	 * @param snapshot the data snapshot to search
+	 * @param stationNumbers the fire station numbers
+	 * @return the covered addresses, by station
 	 */
-	private Stream<PersonData> getPersonDataStream() {
-		var persons = jsonUtils.get(PersonDTO.class);
-		var records = jsonUtils.get(MedicalRecordDTO.class).stream()
-				.collect(toMap(MedicalRecordDTO::getFullName, x -> x));
+	private static List<String> coveredAddresses(DataSnapshot snapshot, Collection<Integer> stationNumbers) {
+		var addressesByKey = new LinkedHashMap<String, String>();
+		for (var station : new TreeSet<>(stationNumbers)) {
+			for (var address : new TreeSet<>(snapshot.addresses(station))) {
+				addressesByKey.putIfAbsent(SearchIndex.normalize(address), address);
+			}
+		}
+		return List.copyOf(addressesByKey.values());
+	}
 
-		return persons.stream().map(person -> new PersonData(
-				person.getFirstName(), person.getLastName(),
-				person.getAddress(), person.getCity(), person.getZip(),
-				person.getPhone(), person.getEmail(),
-				records.get(person.getFullName()).getBirthdate(),
-				records.get(person.getFullName()).getMedications(),
-				records.get(person.getFullName()).getAllergies()
-		));
+	private static <R> Map<String, R> batch(Collection<String> keys, Function<String, String> searchKey,
+											Function<String, R> search, Predicate<R> found) {
+		var resultsBySearchKey = new HashMap<String, R>();
+		var results = new LinkedHashMap<String, R>();
+		for (var key : keys) {
+			var result = resultsBySearchKey.computeIfAbsent(searchKey.apply(key), k -> search.apply(key));
+			if (found.test(result)) {
+				results.put(key, result);
+			}
+		}
+		return results;
 	}
 
-}
\ No newline at end of file
+}
@@ -16,8 +16,7 @@ public class FirestationResult {
 	private final Set<DataExtract> coveredPersons;
 
 	public FirestationResult(List<PersonData> coveredPeopleData) {
-		coveredPersons = coveredPeopleData.stream().map(person ->
-				new DataExtract(person.firstName(), person.lastName(), person.address(), person.phone()))
+		coveredPersons = coveredPeopleData.stream().map(DataExtract::of)
 				.collect(Collectors.toUnmodifiableSet());
 
 		childCount = coveredPeopleData.stream().filter(PersonData::isMinor).count();
@@ -34,6 +33,31 @@ public class FirestationResult {
 		return coveredPersons.size();
 	}
 
-	record DataExtract(String firstName, String lastName, String address, String phoneNumber) { }
+	/**
+	 * A household covered by the fire station, streamed on its own instead of being collected with
+	 * all other households. Counts are those of the household.
+	 *
+	 * @param address the address of the household
+	 * @param adultCount the number of adults in the household
+	 * @param childCount the number of children in the household
+	 * @param coveredPersons the residents of the household
+	 */
+	public record Household(String address, long adultCount, long childCount, Set<DataExtract> coveredPersons) {
+
+		public static Household of(String address, List<PersonData> household) {
+			long childCount = household.stream().filter(PersonData::isMinor).count();
+			return new Household(address, household.size() - childCount, childCount,
+					household.stream().map(DataExtract::of).collect(Collectors.toUnmodifiableSet()));
+		}
+
+	}
+
+	record DataExtract(String firstName, String lastName, String address, String phoneNumber) {
+
+		static DataExtract of(PersonData person) {
+			return new DataExtract(person.firstName(), person.lastName(), person.address(), person.phone());
+		}
+
+	}
 
 }
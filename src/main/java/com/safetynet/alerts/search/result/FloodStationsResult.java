@@ -4,11 +4,12 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.safetynet.alerts.search.PersonData;
 import lombok.Data;
 
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Retourne une liste de tous les foyers desservis par la caserne. Cette
@@ -21,24 +22,23 @@ public class FloodStationsResult {
 
 	private final Map<String, List<DataExtract>> households;
 
-	public FloodStationsResult(List<String> coveredAddresses, List<PersonData> coveredPersonData) {
-		households = coveredPersonData.stream()
-				.filter(person -> coveredAddresses.contains(person.address()))
-				.collect(Collectors.groupingBy(
-						PersonData::address,
-						HashMap::new,
-						Collectors.mapping(
-								person -> new DataExtract(
-										person.firstName(),
-										person.lastName(),
-										person.phone(),
-										person.getAge(),
-										person.medications(),
-										person.allergies()
-								),
-								Collectors.toList()
-						)
-				));
+	public FloodStationsResult(List<PersonData> coveredPersonData) {
+		this(coveredPersonData.stream());
+	}
+
+	/**
+	 * Constructor grouping covered persons by address, in address order, as they are streamed. A
+	 * parallel stream is grouped by each of its fork-join tasks, then merged.
+	 *
+	 * @param coveredPersonData the persons living at the addresses covered by the fire stations,
+	 *                          whatever the spelling of their address
+	 */
+	public FloodStationsResult(Stream<PersonData> coveredPersonData) {
+		households = coveredPersonData.collect(Collectors.groupingBy(
+				PersonData::address,
+				TreeMap::new,
+				Collectors.mapping(DataExtract::of, Collectors.toList())
+		));
 	}
 
 	@JsonIgnore
@@ -58,6 +58,28 @@ public class FloodStationsResult {
 		return households.size();
 	}
 
-	record DataExtract(String firstName, String lastName, String phoneNumber, int age, Set<String> medications, Set<String> allergies) { }
+	/**
+	 * A household covered by the fire stations, streamed on its own instead of being collected with
+	 * all other households.
+	 *
+	 * @param address the address of the household
+	 * @param residents the residents of the household
+	 */
+	public record Household(String address, List<DataExtract> residents) {
+
+		public static Household of(String address, List<PersonData> household) {
+			return new Household(address, household.stream().map(DataExtract::of).toList());
+		}
+
+	}
+
+	record DataExtract(String firstName, String lastName, String phoneNumber, int age, Set<String> medications, Set<String> allergies) {
+
+		static DataExtract of(PersonData person) {
+			return new DataExtract(person.firstName(), person.lastName(), person.phone(), person.getAge(),
+					person.medications(), person.allergies());
+		}
+
+	}
 
 }
@@ -0,0 +1,23 @@
+package com.safetynet.alerts.search.result;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.io.Serial;
+import java.util.ArrayList;
+import java.util.List;
+
+public class LastNamesResult extends ArrayList<String> {
+
+	@Serial
+	private static final long serialVersionUID = 1L;
+
+	public LastNamesResult(List<String> lastNames) {
+		super(lastNames);
+	}
+
+	@JsonIgnore
+	public boolean isNotEmpty() {
+		return !super.isEmpty();
+	}
+
+}
@@ -0,0 +1,30 @@
+package com.safetynet.alerts.util;
+
+import java.time.LocalDate;
+
+/**
+ * Age computations, without the intermediate {@link java.time.Period}.
+ */
+public final class AgeUtils {
+
+	private AgeUtils() {
+	}
+
+	/**
+	 * Computes an age in full years, as {@code Period.between(birthdate, today).getYears()}. A
+	 * person born on February 29 gets one year older on March 1 in non-leap years.
+	 *
+	 * @param birthdate the birthdate
+	 * @param today the date at which the age is computed
+	 * @return the age
+	 */
+	public static int age(LocalDate birthdate, LocalDate today) {
+		int age = today.getYear() - birthdate.getYear();
+		if (today.getMonthValue() < birthdate.getMonthValue()
+				|| today.getMonthValue() == birthdate.getMonthValue() && today.getDayOfMonth() < birthdate.getDayOfMonth()) {
+			age--;
+		}
+		return age;
+	}
+
+}
@@ -1,30 +1,57 @@
 package com.safetynet.alerts.util;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ObjectNode;
-import com.fasterxml.jackson.databind.type.TypeFactory;
-import com.safetynet.alerts.firestation.FirestationDTO;
+import com.fasterxml.jackson.databind.ObjectReader;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedOutputStream;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
 
 /**
  * A utility class for JSON data access.
  *
  * <p>data.json is split in array nodes, each one containing a certain type a data. Given the
- * appropriate data class, JsonUtils deserialize the required JSON array into a list of objects
- * usable inside SafetyNet Alerts.
+ * appropriate data class for each array, JsonUtils streams data.json and decodes array elements
+ * one by one into objects usable inside SafetyNet Alerts. No JSON tree is built nor retained, so
+ * memory use while loading does not depend on the size of data.json. This decoding is done once
+ * at startup by {@link com.safetynet.alerts.data.DataStore}, which then serves the typed data.
+ *
+ * <p>In case of modifying CRUD operations, JsonUtils can also serialize these changes by
+ * streaming them into data.json.
  *
- * <p>In case of modifying CRUD operations, JsonUtils can also serialize these changes by updating
- * data.json.
+ * <p>In {@link Layout#SPLIT split} layout, each array node is stored in its own file next to
+ * data.json ({@code data.persons.json}, {@code data.firestations.json}...), so that a change
+ * only rewrites the file of the changed data. A single data.json found in split layout is
+ * migrated once into separate files, then kept as {@code data.json.migrated}.
  */
 @Component
 @Slf4j
@@ -32,72 +59,325 @@ public class JsonUtils {
 
 	private final Path dataPath;
 
+	private final String splitPrefix;
+
 	private final ObjectMapper objectMapper;
 
-	private final ObjectNode root;
+	private final Layout layout;
+
+	// not a monitor, so that virtual threads waiting for a slow disk do not pin their carrier
+	private final ReentrantLock updateLock = new ReentrantLock();
+
+	// fingerprint of each data file as last written or read, so that updates need not read back
+	// the files they wrote, nor the files they left unchanged
+	private final Map<Path, Fingerprint> fileFingerprints = new ConcurrentHashMap<>();
+
+	public enum Layout {
+		SINGLE, SPLIT,
+	}
+
+	/**
+	 * A node array of data.json, with the type of its elements and the consumer of decoded
+	 * elements.
+	 *
+	 * @param name Name of node array
+	 * @param type Type of array elements
+	 * @param consumer Consumer of each decoded element, returning false if it was discarded
+	 */
+	public record Section<T>(String name, Class<T> type, Predicate<T> consumer) { }
+
+	/**
+	 * Statistics of a data.json read.
+	 *
+	 * @param records number of decoded elements
+	 * @param discarded number of elements discarded by their consumer
+	 * @param bytes size of the read file
+	 * @param elapsed read duration
+	 * @param peakHeap peak heap usage during the read
+	 */
+	public record ReadStatistics(long records, long discarded, long bytes, Duration elapsed, long peakHeap) {
+
+		@Override
+		public String toString() {
+			double seconds = Math.max(elapsed.toNanos(), 1) / 1e9;
+			return "%d records (%.1f MB) read in %d ms: %.0f records/s, %.1f MB/s, peak heap %d MB".formatted(
+					records, bytes / 1e6, elapsed.toMillis(), records / seconds, bytes / 1e6 / seconds, peakHeap >> 20);
+		}
+
+	}
+
+	/**
+	 * Content fingerprint of a data file, or of all of them.
+	 *
+	 * @param size size of the data file, or total size of the data files
+	 * @param checksum CRC32C checksum of the content of the data file, or of the fingerprints of
+	 *                 each data file in file name order
+	 */
+	public record Fingerprint(long size, long checksum) { }
 
 	/**
 	 * Constructor initializing JSON mapping.
 	 *
 	 * @param path JSON file path
 	 * @param objectMapper Jackson ObjectMapper
+	 * @param layout single file, or one file per array node
 	 */
-	public JsonUtils(@Value("${data.path}") String path, ObjectMapper objectMapper) {
+	public JsonUtils(@Value("${data.path}") String path, ObjectMapper objectMapper,
+					 @Value("${data.layout:single}") Layout layout) {
 		this.dataPath = Paths.get(path);
+		var fileName = dataPath.getFileName().toString();
+		this.splitPrefix = (fileName.endsWith(".json") ? fileName.substring(0, fileName.length() - 5) : fileName) + ".";
 		this.objectMapper = objectMapper;
-		try (var inputStream = Files.newInputStream(dataPath)) {
-			root = objectMapper.readValue(inputStream, ObjectNode.class);
+		this.layout = layout;
+	}
+
+	public Layout getLayout() {
+		return layout;
+	}
+
+	/**
+	 * Returns the file holding the given node array.
+	 *
+	 * @param name Name of node array
+	 * @return data.json in single layout, the file of the node array in split layout
+	 */
+	public Path path(String name) {
+		return layout == Layout.SPLIT ? dataPath.resolveSibling(splitPrefix + name + ".json") : dataPath;
+	}
+
+	/**
+	 * Computes the fingerprint of the data files from their content, so that it changes with any
+	 * edit, whatever their modification times.
+	 *
+	 * @return the fingerprint, or null if there is no data file or it cannot be read
+	 */
+	public Fingerprint fingerprint() {
+		try {
+			return fingerprint(false);
 		} catch (IOException e) {
-			throw new RuntimeException(e);
+			log.warn("Cannot fingerprint JSON files: {}", e.getMessage());
+			return null;
 		}
 	}
 
+	// combines the fingerprints of each data file, read again unless known
+	private Fingerprint fingerprint(boolean known) throws IOException {
+		try (Stream<Path> files = dataFiles()) {
+			var sortedFiles = files.sorted().toList();
+			if (sortedFiles.isEmpty()) {
+				return null;
+			}
+			var checksum = new CRC32C();
+			var entry = ByteBuffer.allocate(2 * Long.BYTES);
+			long size = 0;
+			for (var file : sortedFiles) {
+				var key = file.toAbsolutePath().normalize();
+				var fileFingerprint = known ? fileFingerprints.get(key) : null;
+				if (fileFingerprint == null) {
+					fileFingerprint = readFingerprint(file);
+					fileFingerprints.put(key, fileFingerprint);
+				}
+				checksum.update(entry.clear().putLong(fileFingerprint.size()).putLong(fileFingerprint.checksum()).flip());
+				size += fileFingerprint.size();
+			}
+			return new Fingerprint(size, checksum.getValue());
+		}
+	}
+
+	private static Fingerprint readFingerprint(Path file) throws IOException {
+		var checksum = new CRC32C();
+		var buffer = ByteBuffer.allocateDirect(1 << 16);
+		long size = 0;
+		try (var channel = FileChannel.open(file, READ)) {
+			int read;
+			while ((read = channel.read(buffer.clear())) >= 0) {
+				checksum.update(buffer.flip());
+				size += read;
+			}
+		}
+		return new Fingerprint(size, checksum.getValue());
+	}
+
 	/**
-	 * Deserializes a node array into a list of objects of given type.
+	 * Streams data.json, decoding elements of the given node arrays. Other node arrays are
+	 * skipped.
 	 *
-	 * @param valueType Given type
-	 * @return List of objects
+	 * @param sections Node arrays to decode
+	 * @return read statistics
 	 */
-	public <T> List<T> get(Class<T> valueType) {
-		var name = valueType.getSimpleName().replace("DTO", "s").toLowerCase();
-		var toListGeneric = TypeFactory.defaultInstance().constructCollectionType(List.class, valueType);
+	public ReadStatistics read(List<Section<?>> sections) {
+		if (layout == Layout.SPLIT && Files.exists(dataPath)) {
+			migrate();
+		}
+
+		var sectionsByName = sections.stream().collect(Collectors.toMap(Section::name, Function.identity()));
+		var files = sections.stream().map(section -> path(section.name())).distinct()
+				.filter(Files::exists).toList();
+		var heapPools = ManagementFactory.getMemoryPoolMXBeans().stream()
+				.filter(pool -> pool.getType() == MemoryType.HEAP).toList();
+		heapPools.forEach(MemoryPoolMXBean::resetPeakUsage);
+		long start = System.nanoTime();
+		long records = 0;
+		long discarded = 0;
+		long bytes = 0;
 
 		try {
-			List<T> list = objectMapper.treeToValue(root.get(name), toListGeneric);
-			log.info("\"{}\" accessed", name);
-			return list;
-		} catch (JsonProcessingException e) {
+			for (var file : files) {
+				try (var parser = objectMapper.createParser(file.toFile())) {
+					expect(parser.nextToken(), JsonToken.START_OBJECT);
+					while (parser.nextToken() == JsonToken.FIELD_NAME) {
+						var section = sectionsByName.get(parser.currentName());
+						parser.nextToken();
+						if (section == null) {
+							parser.skipChildren();
+							continue;
+						}
+						expect(parser.currentToken(), JsonToken.START_ARRAY);
+						var reader = objectMapper.readerFor(section.type());
+						while (parser.nextToken() != JsonToken.END_ARRAY) {
+							if (!decode(parser, reader, section)) {
+								discarded++;
+							}
+							records++;
+						}
+					}
+				}
+				bytes += file.toFile().length();
+			}
+		} catch (IOException e) {
 			log.error("Cannot process JSON: {}", e.getMessage());
 			throw new RuntimeException("Cannot process JSON: " + e.getMessage());
 		}
+
+		long peakHeap = heapPools.stream().mapToLong(pool -> pool.getPeakUsage().getUsed()).sum();
+		return new ReadStatistics(records, discarded, bytes, Duration.ofNanos(System.nanoTime() - start), peakHeap);
 	}
 
 	/**
-	 * Serializes a list of objects into a node array of given name.
+	 * Streams collections of objects into the node arrays of given names. Files are written to a
+	 * temporary file first, forced to disk, then moved over the previous one, and the move itself
+	 * is forced to disk, so that a crash never leaves a truncated file nor loses a rewrite already
+	 * reported as done.
+	 *
+	 * <p>In single layout, data.json is rewritten and must receive all node arrays. In split
+	 * layout, only the files of the given node arrays are rewritten.
 	 *
-	 * @param name Name of node array to update
-	 * @param updatedList Updated list of objects
+	 * @param sections Collections of objects, by name of node array, in file order
+	 * @return the fingerprint of the data files once updated, computed from the written content
+	 *         rather than read back, or null if it cannot be computed
 	 */
-	public <T> void update(String name, List<T> updatedList) {
-		root.replace(name, objectMapper.valueToTree(updatedList));
+	public Fingerprint update(Map<String, ? extends Collection<?>> sections) {
+		updateLock.lock();
+		try {
+			try {
+				if (layout == Layout.SPLIT) {
+					for (var section : sections.entrySet()) {
+						write(path(section.getKey()), Map.of(section.getKey(), section.getValue()));
+					}
+				} else {
+					write(dataPath, sections);
+				}
+				log.info("{} updated", sections.keySet());
+			} catch (IOException e) {
+				log.error("Cannot write JSON file: {}", e.getMessage());
+				throw new RuntimeException("Cannot write JSON file: " + e.getMessage());
+			}
+			try {
+				return fingerprint(true);
+			} catch (IOException e) {
+				log.warn("Cannot fingerprint JSON files: {}", e.getMessage());
+				return null;
+			}
+		} finally {
+			updateLock.unlock();
+		}
+	}
 
-		try (var outputStream = Files.newOutputStream(dataPath)) {
-			objectMapper.writeValue(outputStream, root);
-			log.info("\"{}\" updated", name);
-		} catch (IOException e) {
-			log.error("Cannot write JSON file: {}", e.getMessage());
-			throw new RuntimeException("Cannot write JSON file: " + e.getMessage());
+	private void write(Path file, Map<String, ? extends Collection<?>> sections) throws IOException {
+		var tempPath = file.resolveSibling(file.getFileName() + ".tmp");
+		var checksum = new CRC32C();
+		try (var outputStream = new CheckedOutputStream(Files.newOutputStream(tempPath), checksum)) {
+			objectMapper.writeValue(outputStream, sections);
 		}
+		var fingerprint = new Fingerprint(Files.size(tempPath), checksum.getValue());
+		replace(tempPath, file);
+		fileFingerprints.put(file.toAbsolutePath().normalize(), fingerprint);
 	}
 
 	/**
-	 * Serializes values of map into a node array of given name.
+	 * Moves a written temporary file over the target once on disk, then forces the move to disk,
+	 * so that a crash leaves either the previous file or the complete new one.
 	 *
-	 * @param name Name of node array to update
-	 * @param updatedMap Updated list of objects
+	 * @param tempPath the written temporary file
+	 * @param file the target file
+	 * @throws IOException if the file cannot be forced to disk or moved
 	 */
-	public <T> void update(String name, Map<String, T> updatedMap) {
-		update(name, updatedMap.values().stream().toList());
+	public static void replace(Path tempPath, Path file) throws IOException {
+		try (var channel = FileChannel.open(tempPath, WRITE)) {
+			channel.force(true);
+		}
+		Files.move(tempPath, file, REPLACE_EXISTING, ATOMIC_MOVE);
+		forceDirectory(file.toAbsolutePath().getParent());
+	}
+
+	private static void forceDirectory(Path directory) {
+		try (var channel = FileChannel.open(directory, READ)) {
+			channel.force(true);
+		} catch (IOException e) {
+			// directories cannot be opened on some platforms, where moves are durable anyway
+			log.debug("Cannot force directory {} to disk: {}", directory, e.getMessage());
+		}
+	}
+
+	/**
+	 * Copies each node array of data.json into its own file, without decoding it, then renames
+	 * data.json so that it is not migrated again.
+	 */
+	private void migrate() {
+		try (var parser = objectMapper.createParser(dataPath.toFile())) {
+			expect(parser.nextToken(), JsonToken.START_OBJECT);
+			while (parser.nextToken() == JsonToken.FIELD_NAME) {
+				var name = parser.currentName();
+				parser.nextToken();
+				var file = path(name);
+				var tempPath = file.resolveSibling(file.getFileName() + ".tmp");
+				try (var generator = objectMapper.createGenerator(tempPath.toFile(), JsonEncoding.UTF8)) {
+					generator.setPrettyPrinter(objectMapper.getSerializationConfig().constructDefaultPrettyPrinter());
+					generator.writeStartObject();
+					generator.writeFieldName(name);
+					generator.copyCurrentStructure(parser);
+					generator.writeEndObject();
+				}
+				replace(tempPath, file);
+			}
+			Files.move(dataPath, dataPath.resolveSibling(dataPath.getFileName() + ".migrated"), REPLACE_EXISTING);
+			fileFingerprints.clear();
+			forceDirectory(dataPath.toAbsolutePath().getParent());
+			log.info("{} migrated to split layout", dataPath);
+		} catch (IOException e) {
+			log.error("Cannot migrate JSON file: {}", e.getMessage());
+			throw new RuntimeException("Cannot migrate JSON file: " + e.getMessage());
+		}
+	}
+
+	private Stream<Path> dataFiles() throws IOException {
+		if (layout == Layout.SINGLE) {
+			return Stream.of(dataPath).filter(Files::exists);
+		}
+		return Files.list(dataPath.toAbsolutePath().getParent()).filter(file -> {
+			var fileName = file.getFileName().toString();
+			return fileName.startsWith(splitPrefix) && fileName.endsWith(".json") && !file.endsWith(dataPath.getFileName());
+		});
+	}
+
+	private <T> boolean decode(JsonParser parser, ObjectReader reader, Section<T> section) throws IOException {
+		return section.consumer().test(reader.readValue(parser));
+	}
+
+	private static void expect(JsonToken actual, JsonToken expected) throws IOException {
+		if (actual != expected) {
+			throw new IOException("expected " + expected + " but found " + actual);
+		}
 	}
 
 }
@@ -0,0 +1,238 @@
+package com.safetynet.alerts.util;
+
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Immutable hash map split into shards, for cheap copy-on-write updates.
+ *
+ * <p>Keys are spread over 65,536 small shards, arranged in two levels of 256. Updating a key
+ * copies only the shard holding it and the two arrays leading to it, while all other shards are
+ * shared with the previous map. An update therefore costs a tiny fraction of the map size, and
+ * previous versions of the map remain valid and unchanged for their readers.
+ *
+ * @param <K> type of keys
+ * @param <V> type of values
+ */
+public final class ShardedMap<K, V> {
+
+	private static final int FANOUT = 256;
+
+	private static final Map<?, ?>[] EMPTY_SHARDS = emptyShards();
+
+	private static final ShardedMap<?, ?> EMPTY = new ShardedMap<>(emptyLevel(), 0);
+
+	private final Map<K, V>[][] shards;
+
+	private final int size;
+
+	private ShardedMap(Map<K, V>[][] shards, int size) {
+		this.shards = shards;
+		this.size = size;
+	}
+
+	@SuppressWarnings("unchecked")
+	public static <K, V> ShardedMap<K, V> empty() {
+		return (ShardedMap<K, V>) EMPTY;
+	}
+
+	/**
+	 * Creates a map holding a copy of the given entries.
+	 *
+	 * @param entries the entries
+	 * @return the map
+	 */
+	public static <K, V> ShardedMap<K, V> copyOf(Map<? extends K, ? extends V> entries) {
+		Map<K, V>[][] shards = emptyLevel();
+		for (var entry : entries.entrySet()) {
+			int hash = spread(entry.getKey());
+			int outer = outer(hash);
+			if (shards[outer] == EMPTY_SHARDS) {
+				shards[outer] = emptyShards();
+			}
+			int inner = inner(hash);
+			if (shards[outer][inner].isEmpty()) {
+				shards[outer][inner] = new HashMap<>();
+			}
+			shards[outer][inner].put(entry.getKey(), entry.getValue());
+		}
+		return new ShardedMap<>(shards, entries.size());
+	}
+
+	public V get(Object key) {
+		return shard(key).get(key);
+	}
+
+	public V getOrDefault(Object key, V defaultValue) {
+		return shard(key).getOrDefault(key, defaultValue);
+	}
+
+	public boolean containsKey(Object key) {
+		return shard(key).containsKey(key);
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Returns a map associating a key with a value.
+	 *
+	 * @param key the key
+	 * @param value the value
+	 * @return the updated map
+	 */
+	public ShardedMap<K, V> with(K key, V value) {
+		return compute(key, (k, previous) -> value);
+	}
+
+	/**
+	 * Returns a map without a key.
+	 *
+	 * @param key the key
+	 * @return the updated map, or this map if it does not contain the key
+	 */
+	public ShardedMap<K, V> without(K key) {
+		return compute(key, (k, previous) -> null);
+	}
+
+	/**
+	 * Returns a map where the value of a key is recomputed from its current value.
+	 *
+	 * @param key the key
+	 * @param remapping function computing the new value from the current one, either possibly
+	 *                  null; a null new value removes the key
+	 * @return the updated map, or this map if the value is unchanged
+	 */
+	public ShardedMap<K, V> compute(K key, BiFunction<? super K, ? super V, ? extends V> remapping) {
+		int hash = spread(key);
+		int outer = outer(hash);
+		int inner = inner(hash);
+		var shard = shards[outer][inner];
+		var previous = shard.get(key);
+		var value = remapping.apply(key, previous);
+		if (value == previous && (value != null || !shard.containsKey(key))) {
+			return this;
+		}
+
+		var newShard = new HashMap<>(shard);
+		int newSize = size;
+		if (value == null) {
+			newShard.remove(key);
+			newSize--;
+		} else if (newShard.put(key, value) == null) {
+			newSize++;
+		}
+		var newShards = Arrays.copyOf(shards, FANOUT);
+		newShards[outer] = Arrays.copyOf(shards[outer], FANOUT);
+		newShards[outer][inner] = newShard.isEmpty() ? Collections.emptyMap() : newShard;
+		return new ShardedMap<>(newShards, newSize);
+	}
+
+	/**
+	 * Returns all keys of the map.
+	 *
+	 * @return an unmodifiable collection of keys
+	 */
+	public Collection<K> keys() {
+		return view(Map::keySet);
+	}
+
+	/**
+	 * Returns all values of the map.
+	 *
+	 * @return an unmodifiable collection of values
+	 */
+	public Collection<V> values() {
+		return view(Map::values);
+	}
+
+	// concatenation of a collection of every non-empty shard
+	private <T> Collection<T> view(Function<Map<K, V>, Collection<T>> collection) {
+		return new AbstractCollection<>() {
+
+			@Override
+			public Iterator<T> iterator() {
+				return new Iterator<>() {
+
+					private int shard = 0;
+
+					private Iterator<T> elements = Collections.emptyIterator();
+
+					@Override
+					public boolean hasNext() {
+						while (!elements.hasNext() && shard < FANOUT * FANOUT) {
+							var outer = shards[shard / FANOUT];
+							if (outer == EMPTY_SHARDS) {
+								shard += FANOUT;
+							} else {
+								elements = collection.apply(outer[shard++ % FANOUT]).iterator();
+							}
+						}
+						return elements.hasNext();
+					}
+
+					@Override
+					public T next() {
+						if (!hasNext()) {
+							throw new NoSuchElementException();
+						}
+						return elements.next();
+					}
+
+				};
+			}
+
+			@Override
+			public int size() {
+				return size;
+			}
+
+		};
+	}
+
+	private Map<K, V> shard(Object key) {
+		int hash = spread(key);
+		return shards[outer(hash)][inner(hash)];
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <K, V> Map<K, V>[][] emptyLevel() {
+		var shards = (Map<K, V>[][]) new Map<?, ?>[FANOUT][];
+		Arrays.fill(shards, EMPTY_SHARDS);
+		return shards;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <K, V> Map<K, V>[] emptyShards() {
+		var shards = (Map<K, V>[]) new Map<?, ?>[FANOUT];
+		Arrays.fill(shards, Collections.emptyMap());
+		return shards;
+	}
+
+	private static int spread(Object key) {
+		int hash = key.hashCode();
+		return hash ^ (hash >>> 16);
+	}
+
+	private static int outer(int hash) {
+		return (hash >>> 8) & (FANOUT - 1);
+	}
+
+	private static int inner(int hash) {
+		return hash & (FANOUT - 1);
+	}
+
+}
@@ -0,0 +1,176 @@
+package com.safetynet.alerts.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Immutable sorted set of strings, for cheap copy-on-write updates and prefix lookups.
+ *
+ * <p>Keys are kept sorted in chunks of at most {@value #MAX_CHUNK} keys. Adding or removing a key
+ * copies only its chunk and the array of chunks, while other chunks are shared with the previous
+ * set. Looking up keys by prefix costs a binary search, then only visits matching keys.
+ */
+public final class SortedKeySet {
+
+	private static final int MAX_CHUNK = 512;
+
+	private static final SortedKeySet EMPTY = new SortedKeySet(new String[0][], 0);
+
+	private final String[][] chunks;
+
+	private final int size;
+
+	private SortedKeySet(String[][] chunks, int size) {
+		this.chunks = chunks;
+		this.size = size;
+	}
+
+	public static SortedKeySet empty() {
+		return EMPTY;
+	}
+
+	/**
+	 * Creates a set holding the given keys.
+	 *
+	 * @param keys the keys, possibly duplicated
+	 * @return the set
+	 */
+	public static SortedKeySet copyOf(Collection<String> keys) {
+		var sorted = keys.stream().distinct().sorted().toArray(String[]::new);
+		int chunkSize = MAX_CHUNK / 2;
+		var chunks = new String[(sorted.length + chunkSize - 1) / chunkSize][];
+		for (int i = 0; i < chunks.length; i++) {
+			chunks[i] = Arrays.copyOfRange(sorted, i * chunkSize, Math.min(sorted.length, (i + 1) * chunkSize));
+		}
+		return new SortedKeySet(chunks, sorted.length);
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean contains(String key) {
+		if (chunks.length == 0) {
+			return false;
+		}
+		return Arrays.binarySearch(chunks[chunkOf(key)], key) >= 0;
+	}
+
+	/**
+	 * Returns a set including a key.
+	 *
+	 * @param key the key
+	 * @return the updated set, or this set if it already contains the key
+	 */
+	public SortedKeySet with(String key) {
+		if (chunks.length == 0) {
+			return new SortedKeySet(new String[][] {{key}}, 1);
+		}
+
+		int index = chunkOf(key);
+		var chunk = chunks[index];
+		int position = Arrays.binarySearch(chunk, key);
+		if (position >= 0) {
+			return this;
+		}
+
+		position = -position - 1;
+		var newChunk = new String[chunk.length + 1];
+		System.arraycopy(chunk, 0, newChunk, 0, position);
+		newChunk[position] = key;
+		System.arraycopy(chunk, position, newChunk, position + 1, chunk.length - position);
+
+		String[][] newChunks;
+		if (newChunk.length <= MAX_CHUNK) {
+			newChunks = chunks.clone();
+			newChunks[index] = newChunk;
+		} else {
+			int half = newChunk.length / 2;
+			newChunks = new String[chunks.length + 1][];
+			System.arraycopy(chunks, 0, newChunks, 0, index);
+			newChunks[index] = Arrays.copyOfRange(newChunk, 0, half);
+			newChunks[index + 1] = Arrays.copyOfRange(newChunk, half, newChunk.length);
+			System.arraycopy(chunks, index + 1, newChunks, index + 2, chunks.length - index - 1);
+		}
+		return new SortedKeySet(newChunks, size + 1);
+	}
+
+	/**
+	 * Returns a set excluding a key.
+	 *
+	 * @param key the key
+	 * @return the updated set, or this set if it does not contain the key
+	 */
+	public SortedKeySet without(String key) {
+		if (chunks.length == 0) {
+			return this;
+		}
+
+		int index = chunkOf(key);
+		var chunk = chunks[index];
+		int position = Arrays.binarySearch(chunk, key);
+		if (position < 0) {
+			return this;
+		}
+
+		String[][] newChunks;
+		if (chunk.length > 1) {
+			var newChunk = new String[chunk.length - 1];
+			System.arraycopy(chunk, 0, newChunk, 0, position);
+			System.arraycopy(chunk, position + 1, newChunk, position, chunk.length - position - 1);
+			newChunks = chunks.clone();
+			newChunks[index] = newChunk;
+		} else {
+			newChunks = new String[chunks.length - 1][];
+			System.arraycopy(chunks, 0, newChunks, 0, index);
+			System.arraycopy(chunks, index + 1, newChunks, index, chunks.length - index - 1);
+		}
+		return new SortedKeySet(newChunks, size - 1);
+	}
+
+	/**
+	 * Returns the first keys starting with a prefix, in ascending order.
+	 *
+	 * @param prefix the prefix, empty to match all keys
+	 * @param limit the maximum number of returned keys
+	 * @return the matching keys
+	 */
+	public List<String> startingWith(String prefix, int limit) {
+		var keys = new ArrayList<String>(Math.min(limit, 64));
+		if (chunks.length == 0) {
+			return keys;
+		}
+
+		int index = chunkOf(prefix);
+		int position = Arrays.binarySearch(chunks[index], prefix);
+		position = position >= 0 ? position : -position - 1;
+		for (; index < chunks.length && keys.size() < limit; index++, position = 0) {
+			var chunk = chunks[index];
+			for (; position < chunk.length && keys.size() < limit; position++) {
+				if (!chunk[position].startsWith(prefix)) {
+					return keys;
+				}
+				keys.add(chunk[position]);
+			}
+		}
+		return keys;
+	}
+
+	// index of the last chunk whose first key is not greater than the key, or the first chunk
+	private int chunkOf(String key) {
+		int low = 0;
+		int high = chunks.length - 1;
+		while (low < high) {
+			int middle = (low + high + 1) >>> 1;
+			if (chunks[middle][0].compareTo(key) <= 0) {
+				low = middle;
+			} else {
+				high = middle - 1;
+			}
+		}
+		return low;
+	}
+
+}
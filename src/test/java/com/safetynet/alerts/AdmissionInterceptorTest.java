@@ -0,0 +1,97 @@
+package com.safetynet.alerts;
+
+import com.safetynet.alerts.config.AdmissionInterceptor;
+import com.safetynet.alerts.config.AdmissionInterceptor.Priority;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AdmissionInterceptorTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private AdmissionInterceptor interceptor;
+
+    @BeforeEach
+    public void setup() {
+        meterRegistry = new SimpleMeterRegistry();
+        interceptor = new AdmissionInterceptor(meterRegistry, 1, 1, Duration.ofMillis(10));
+    }
+
+    @Test
+    public void testPriorityOfPaths() {
+        assertEquals(Priority.LIFE_SAFETY, Priority.of("/fire"));
+        assertEquals(Priority.LIFE_SAFETY, Priority.of("/fire/batch"));
+        assertEquals(Priority.LIFE_SAFETY, Priority.of("/childAlert"));
+        assertEquals(Priority.BULK, Priority.of("/flood/stations"));
+        assertEquals(Priority.BULK, Priority.of("/communityEmail"));
+        assertEquals(Priority.BULK, Priority.of("/export"));
+        assertEquals(Priority.BULK, Priority.of("/person/bulk"));
+        assertEquals(Priority.STANDARD, Priority.of("/person"));
+        assertEquals(Priority.STANDARD, Priority.of("/firestation"));
+        assertEquals(Priority.STANDARD, Priority.of("/personInfo/batch"));
+    }
+
+    @Test
+    public void testRequestIsRefusedWhenNoSlotIsFree() throws Exception {
+        var first = request("/flood/stations");
+        assertTrue(interceptor.preHandle(first, new MockHttpServletResponse(), null));
+
+        var response = new MockHttpServletResponse();
+        assertFalse(interceptor.preHandle(request("/communityEmail"), response, null));
+        assertEquals(503, response.getStatus());
+        assertEquals("1", response.getHeader(HttpHeaders.RETRY_AFTER));
+        assertEquals(1, meterRegistry.get("admission.queue").tags("priority", "bulk", "outcome", "rejected").timer().count());
+
+        // other classes keep their own slots
+        assertTrue(interceptor.preHandle(request("/person"), new MockHttpServletResponse(), null));
+    }
+
+    @Test
+    public void testLifeSafetySearchesAreNeverLimited() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            assertTrue(interceptor.preHandle(request("/fire"), new MockHttpServletResponse(), null));
+            assertTrue(interceptor.preHandle(request("/childAlert"), new MockHttpServletResponse(), null));
+        }
+    }
+
+    @Test
+    public void testSlotIsFreedOnCompletion() throws Exception {
+        var first = request("/flood/stations");
+        assertTrue(interceptor.preHandle(first, new MockHttpServletResponse(), null));
+        assertEquals(1.0, meterRegistry.get("admission.active").tag("priority", "bulk").gauge().value());
+
+        interceptor.afterCompletion(first, new MockHttpServletResponse(), null, null);
+        assertEquals(0.0, meterRegistry.get("admission.active").tag("priority", "bulk").gauge().value());
+        assertTrue(interceptor.preHandle(request("/flood/stations"), new MockHttpServletResponse(), null));
+        assertEquals(2, meterRegistry.get("admission.queue").tags("priority", "bulk", "outcome", "admitted").timer().count());
+    }
+
+    @Test
+    public void testAsyncDispatchKeepsItsSlot() throws Exception {
+        var export = request("/export");
+        assertTrue(interceptor.preHandle(export, new MockHttpServletResponse(), null));
+
+        // streamed response dispatched again once written, holding the same slot
+        assertTrue(interceptor.preHandle(export, new MockHttpServletResponse(), null));
+        interceptor.afterCompletion(export, new MockHttpServletResponse(), null, null);
+        interceptor.afterCompletion(export, new MockHttpServletResponse(), null, null);
+
+        assertEquals(0.0, meterRegistry.get("admission.active").tag("priority", "bulk").gauge().value());
+        assertTrue(interceptor.preHandle(request("/export"), new MockHttpServletResponse(), null));
+        assertFalse(interceptor.preHandle(request("/export"), new MockHttpServletResponse(), null));
+    }
+
+    private static MockHttpServletRequest request(String path) {
+        return new MockHttpServletRequest("GET", path);
+    }
+
+}
@@ -0,0 +1,154 @@
+package com.safetynet.alerts;
+
+import com.safetynet.alerts.config.JsonConfig;
+import com.safetynet.alerts.config.TestClock;
+import com.safetynet.alerts.data.BinarySnapshot;
+import com.safetynet.alerts.data.DataStore;
+import com.safetynet.alerts.data.Journal;
+import com.safetynet.alerts.medicalrecord.MedicalRecordDTO;
+import com.safetynet.alerts.person.PersonDTO;
+import com.safetynet.alerts.search.PersonData;
+import com.safetynet.alerts.search.SearchIndex;
+import com.safetynet.alerts.util.JsonUtils;
+import com.safetynet.alerts.util.JsonUtils.Layout;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.Period;
+import java.util.Set;
+
+import static com.safetynet.alerts.config.JsonTestConfig.SAMPLE_ORIG_PATH;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AgeRolloverTest {
+
+    @TempDir
+    Path tempDir;
+
+    private TestClock clock;
+    private DataStore store;
+    private SearchIndex index;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        var dataPath = Files.copy(Paths.get(SAMPLE_ORIG_PATH), tempDir.resolve("data.json"));
+        var objectMapper = new JsonConfig().objectMapper();
+        store = new DataStore(new JsonUtils(dataPath.toString(), objectMapper, Layout.SINGLE),
+                new Journal(dataPath.toString(), objectMapper, false), new BinarySnapshot(dataPath.toString(), false));
+        clock = new TestClock(LocalDate.of(2026, 10, 17));
+        index = new SearchIndex(store, clock);
+    }
+
+    @Test
+    public void testAgeChangesAtMidnightRollover() {
+        add("Eve", LocalDate.of(2008, 10, 18));
+        assertEquals(17, personData("Eve").getAge());
+        assertTrue(personData("Eve").isMinor());
+
+        clock.setDate(LocalDate.of(2026, 10, 18));
+        // cached until the rollover
+        assertEquals(17, personData("Eve").getAge());
+
+        index.rollover();
+        assertEquals(18, personData("Eve").getAge());
+        assertTrue(personData("Eve").isMajor());
+        assertAgesAsComputed();
+    }
+
+    @Test
+    public void testFebruary29BirthdayFallsOnMarch1InNonLeapYears() {
+        clock.setDate(LocalDate.of(2026, 2, 27));
+        index.rollover();
+        add("Leap", LocalDate.of(2008, 2, 29));
+
+        clock.setDate(LocalDate.of(2026, 2, 28));
+        index.rollover();
+        assertEquals(17, personData("Leap").getAge());
+
+        clock.setDate(LocalDate.of(2026, 3, 1));
+        index.rollover();
+        assertEquals(18, personData("Leap").getAge());
+
+        clock.setDate(LocalDate.of(2028, 2, 28));
+        index.rollover();
+        assertEquals(19, personData("Leap").getAge());
+
+        clock.setDate(LocalDate.of(2028, 2, 29));
+        index.rollover();
+        assertEquals(20, personData("Leap").getAge());
+        assertAgesAsComputed();
+    }
+
+    @Test
+    public void testMissedOrBackwardRolloversRecomputeAges() {
+        clock.setDate(LocalDate.of(2027, 3, 5));
+        index.rollover();
+        assertAgesAsComputed();
+
+        clock.setDate(LocalDate.of(2031, 7, 1));
+        index.rollover();
+        assertAgesAsComputed();
+
+        clock.setDate(LocalDate.of(2020, 1, 1));
+        index.rollover();
+        assertAgesAsComputed();
+    }
+
+    @Test
+    public void testChangesAfterRolloverUseNewDate() {
+        clock.setDate(LocalDate.of(2026, 10, 18));
+        index.rollover();
+        add("Eve", LocalDate.of(2008, 10, 18));
+        assertEquals(18, personData("Eve").getAge());
+
+        var record = store.medicalRecords().get("EveRollover");
+        var younger = record(record.getFirstName(), LocalDate.of(2010, 10, 18));
+        assertTrue(store.medicalRecords().replace("EveRollover", younger));
+        assertEquals(16, personData("Eve").getAge());
+        assertAgesAsComputed();
+    }
+
+    private void assertAgesAsComputed() {
+        var today = index.snapshot().today();
+        assertEquals(LocalDate.now(clock), today);
+        for (var data : index.snapshot().personData()) {
+            assertEquals(Period.between(data.birthdate(), today).getYears(), data.getAge(), data.firstName());
+        }
+    }
+
+    private PersonData personData(String firstName) {
+        return index.snapshot().personData().stream()
+                .filter(data -> data.firstName().equals(firstName) && data.lastName().equals("Rollover"))
+                .findFirst().orElseThrow();
+    }
+
+    private void add(String firstName, LocalDate birthdate) {
+        var person = new PersonDTO();
+        person.setFirstName(firstName);
+        person.setLastName("Rollover");
+        person.setAddress("1 Clock St");
+        person.setCity("Culver");
+        person.setZip("97451");
+        person.setPhone("841-874-0000");
+        person.setEmail(firstName.toLowerCase() + "@email.com");
+        assertTrue(store.persons().insert(person));
+        assertTrue(store.medicalRecords().insert(record(firstName, birthdate)));
+    }
+
+    private static MedicalRecordDTO record(String firstName, LocalDate birthdate) {
+        var record = new MedicalRecordDTO();
+        record.setFirstName(firstName);
+        record.setLastName("Rollover");
+        record.setBirthdate(birthdate);
+        record.setMedications(Set.of());
+        record.setAllergies(Set.of());
+        return record;
+    }
+
+}
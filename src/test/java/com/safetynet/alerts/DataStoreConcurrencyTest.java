@@ -0,0 +1,277 @@
+package com.safetynet.alerts;
+
+import com.safetynet.alerts.config.JsonConfig;
+import com.safetynet.alerts.data.BinarySnapshot;
+import com.safetynet.alerts.data.DataStore;
+import com.safetynet.alerts.data.DataWriter;
+import com.safetynet.alerts.data.DataWriter.Mode;
+import com.safetynet.alerts.data.Journal;
+import com.safetynet.alerts.medicalrecord.MedicalRecordDTO;
+import com.safetynet.alerts.person.PersonDTO;
+import com.safetynet.alerts.search.SearchIndex;
+import com.safetynet.alerts.util.JsonUtils;
+import com.safetynet.alerts.util.JsonUtils.Layout;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.safetynet.alerts.config.JsonTestConfig.SAMPLE_ORIG_PATH;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DataStoreConcurrencyTest {
+
+    private static final int THREADS = 8;
+    private static final int PERSONS_PER_THREAD = 200;
+
+    @TempDir
+    Path tempDir;
+
+    private Path dataPath;
+    private JsonUtils jsonUtils;
+    private Journal journal;
+    private BinarySnapshot binarySnapshot;
+    private DataStore store;
+    private SearchIndex index;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        dataPath = Files.copy(Paths.get(SAMPLE_ORIG_PATH), tempDir.resolve("data.json"));
+        var objectMapper = new JsonConfig().objectMapper();
+        jsonUtils = new JsonUtils(dataPath.toString(), objectMapper, Layout.SINGLE);
+        journal = new Journal(dataPath.toString(), objectMapper, false);
+        binarySnapshot = new BinarySnapshot(dataPath.toString(), false);
+        store = new DataStore(jsonUtils, journal, binarySnapshot);
+        // a slow first listener widens the window between applying a change and publishing it
+        store.persons().addListener((previous, current) -> Thread::yield);
+        store.medicalRecords().addListener((previous, current) -> Thread::yield);
+        index = new SearchIndex(store, Clock.systemDefaultZone());
+    }
+
+    @Test
+    public void testConcurrentWritesAreNotLost() throws Exception {
+        var writer = new DataWriter(store, jsonUtils, journal, binarySnapshot, new SimpleMeterRegistry(),
+                Mode.JOURNAL, Duration.ofMillis(5), 50, false);
+        writer.start();
+        int initialPersons = store.persons().size();
+
+        runConcurrently(thread -> {
+            for (int i = 0; i < PERSONS_PER_THREAD; i++) {
+                var firstName = "Thread" + thread;
+                var lastName = "Person" + i;
+                assertTrue(store.persons().insert(person(firstName, lastName, "1 Initial St")));
+                assertTrue(store.medicalRecords().insert(record(firstName, lastName)));
+                assertTrue(store.persons().replace(firstName + lastName, person(firstName, lastName, thread + " Final St")));
+                if (i % 4 == 0) {
+                    assertTrue(store.persons().replace(firstName + lastName, person(firstName, lastName + "Renamed", thread + " Final St")));
+                    assertTrue(store.medicalRecords().replace(firstName + lastName, record(firstName, lastName + "Renamed")));
+                }
+            }
+        });
+        writer.shutdown();
+
+        assertEquals(initialPersons + THREADS * PERSONS_PER_THREAD, store.persons().size());
+        for (int thread = 0; thread < THREADS; thread++) {
+            assertEquals(PERSONS_PER_THREAD, index.snapshot().residents(thread + " Final St").size());
+            assertEquals(PERSONS_PER_THREAD, index.snapshot().residentData(thread + " Final St").size());
+        }
+        assertTrue(index.snapshot().residents("1 Initial St").isEmpty());
+        assertIndexedAsInMemory();
+        assertStoredAsInMemory();
+    }
+
+    @Test
+    public void testConcurrentChangesOfSameEntityStayConsistent() throws Exception {
+        var writer = new DataWriter(store, jsonUtils, journal, binarySnapshot, new SimpleMeterRegistry(),
+                Mode.JOURNAL, Duration.ofMillis(5), 50, false);
+        writer.start();
+        for (int i = 0; i < PERSONS_PER_THREAD; i++) {
+            store.persons().insert(person("Shared" + i, "Person", "2 Shared St"));
+        }
+        var renamed = new AtomicInteger();
+
+        runConcurrently(thread -> {
+            for (int i = 0; i < PERSONS_PER_THREAD; i++) {
+                // every thread tries to rename the same person, only one of them may succeed
+                if (store.persons().replace("Shared" + i + "Person", person("Shared" + i, "Person" + thread, "2 Shared St"))) {
+                    renamed.incrementAndGet();
+                }
+                store.persons().replace("JohnBoyd", person("John", "Boyd", thread + " Contended St"));
+                store.medicalRecords().remove("TenleyBoyd");
+                store.medicalRecords().insert(record("Tenley", "Boyd"));
+            }
+        });
+        writer.shutdown();
+
+        assertEquals(PERSONS_PER_THREAD, renamed.get());
+        assertEquals(PERSONS_PER_THREAD, store.persons().values().stream()
+                .filter(person -> person.getFirstName().startsWith("Shared")).count());
+        assertEquals(PERSONS_PER_THREAD, index.snapshot().residents("2 Shared St").size());
+        var john = store.persons().get("JohnBoyd");
+        assertEquals(Set.of("JohnBoyd"), Set.copyOf(index.snapshot().residents(john.getAddress()).stream().map(PersonDTO::getId).toList()));
+        assertEquals(john.getAddress(), index.snapshot().personData().stream()
+                .filter(person -> person.firstName().equals("John") && person.lastName().equals("Boyd"))
+                .findFirst().orElseThrow().address());
+        assertNotNull(store.medicalRecords().get("TenleyBoyd"));
+        assertEquals(1, index.snapshot().residentData("1509 Culver St").stream().filter(person -> person.firstName().equals("Tenley")).count());
+        assertIndexedAsInMemory();
+        assertStoredAsInMemory();
+    }
+
+    @Test
+    public void testSearchesSeeConsistentSnapshots() throws Exception {
+        var writer = new DataWriter(store, jsonUtils, journal, binarySnapshot, new SimpleMeterRegistry(),
+                Mode.WRITE_BEHIND, Duration.ofHours(1), Integer.MAX_VALUE, false);
+        writer.start();
+        var inconsistencies = new AtomicInteger();
+        var running = new AtomicBoolean(true);
+
+        var moves = Executors.newSingleThreadExecutor();
+        var moving = moves.submit(() -> {
+            for (int i = 0; i < 2_000; i++) {
+                var address = i % 2 == 0 ? "1 Even St" : "1 Odd St";
+                store.persons().replace("JohnBoyd", person("John", "Boyd", address));
+            }
+            running.set(false);
+        });
+        runConcurrently(thread -> {
+            while (running.get()) {
+                var snapshot = index.snapshot();
+                int found = snapshot.residents("1 Even St").size() + snapshot.residents("1 Odd St").size()
+                        + snapshot.residents("1509 Culver St").stream().filter(person -> person.getFirstName().equals("John")).toList().size();
+                var john = snapshot.personData().stream()
+                        .filter(person -> person.firstName().equals("John") && person.lastName().equals("Boyd"))
+                        .findFirst().orElseThrow();
+                if (found != 1 || snapshot.residentData(john.address()).stream().noneMatch(john::equals)) {
+                    inconsistencies.incrementAndGet();
+                }
+                Thread.yield();
+            }
+        });
+        moving.get(1, TimeUnit.MINUTES);
+        moves.shutdown();
+        writer.shutdown();
+
+        assertEquals(0, inconsistencies.get());
+    }
+
+    @Test
+    public void testRefusedChangesAreNotApplied() throws Exception {
+        var writer = new DataWriter(store, jsonUtils, journal, binarySnapshot, new SimpleMeterRegistry(),
+                Mode.WRITE_THROUGH, Duration.ofHours(1), Integer.MAX_VALUE, false);
+        writer.start();
+        var john = store.persons().get("JohnBoyd");
+        var snapshot = index.snapshot();
+        var data = Files.readString(dataPath);
+
+        // refused by the index, which cannot key a person without an address
+        assertThrows(IllegalArgumentException.class,
+                () -> store.persons().replace("JohnBoyd", person("John", "Boyd", null)));
+        // refused by the condition, checked holding the lock of the identifier
+        assertFalse(store.medicalRecords().insert(record("Nobody", "Here"), store.persons()::contains));
+
+        assertSame(john, store.persons().get("JohnBoyd"));
+        assertNull(store.medicalRecords().get("NobodyHere"));
+        assertSame(snapshot, index.snapshot());
+        assertEquals(0, writer.getPendingChanges());
+        assertEquals(data, Files.readString(dataPath));
+    }
+
+    private void assertIndexedAsInMemory() {
+        var rebuilt = new SearchIndex(store, Clock.systemDefaultZone());
+
+        assertEquals(Set.copyOf(rebuilt.snapshot().personData()), Set.copyOf(index.snapshot().personData()));
+        for (int thread = 0; thread < THREADS; thread++) {
+            assertEquals(Set.copyOf(rebuilt.snapshot().residents(thread + " Contended St")), Set.copyOf(index.snapshot().residents(thread + " Contended St")));
+        }
+        assertEquals(rebuilt.snapshot().lastNames("", Integer.MAX_VALUE), index.snapshot().lastNames("", Integer.MAX_VALUE));
+        for (var city : Set.copyOf(store.persons().values().stream().map(PersonDTO::getCity).toList())) {
+            assertEquals(rebuilt.snapshot().contacts(city).emails(), index.snapshot().contacts(city).emails());
+            assertEquals(rebuilt.snapshot().contacts(city).phones(), index.snapshot().contacts(city).phones());
+        }
+    }
+
+    private void assertStoredAsInMemory() {
+        var objectMapper = new JsonConfig().objectMapper();
+        var restarted = new DataStore(new JsonUtils(dataPath.toString(), objectMapper, Layout.SINGLE),
+                new Journal(dataPath.toString(), objectMapper, false), binarySnapshot);
+        restarted.replayJournal();
+
+        for (var table : store.tables()) {
+            var restartedTable = restarted.table(table.name());
+            assertEquals(table.size(), restartedTable.size());
+            assertEquals(Set.copyOf(table.values()), Set.copyOf(restartedTable.values()));
+        }
+    }
+
+    private static void runConcurrently(ThreadTask task) throws Exception {
+        var barrier = new CyclicBarrier(THREADS);
+        var executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            var futures = new ArrayList<Future<Void>>();
+            for (int thread = 0; thread < THREADS; thread++) {
+                int threadNumber = thread;
+                futures.add(executor.submit((Callable<Void>) () -> {
+                    barrier.await();
+                    task.run(threadNumber);
+                    return null;
+                }));
+            }
+            for (var future : futures) {
+                future.get(1, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static PersonDTO person(String firstName, String lastName, String address) {
+        var person = new PersonDTO();
+        person.setFirstName(firstName);
+        person.setLastName(lastName);
+        person.setAddress(address);
+        person.setCity("Culver");
+        person.setZip("97451");
+        person.setPhone("841-874-0000");
+        person.setEmail(firstName.toLowerCase() + "@email.com");
+        return person;
+    }
+
+    private static MedicalRecordDTO record(String firstName, String lastName) {
+        var record = new MedicalRecordDTO();
+        record.setFirstName(firstName);
+        record.setLastName(lastName);
+        record.setBirthdate(LocalDate.of(2000, 1, 1));
+        record.setMedications(Set.of());
+        record.setAllergies(Set.of());
+        return record;
+    }
+
+    @FunctionalInterface
+    private interface ThreadTask {
+        void run(int thread) throws Exception;
+    }
+
+}
@@ -0,0 +1,397 @@
+package com.safetynet.alerts;
+
+import com.safetynet.alerts.config.JsonConfig;
+import com.safetynet.alerts.data.BinarySnapshot;
+import com.safetynet.alerts.data.DataStore;
+import com.safetynet.alerts.data.DataWriter;
+import com.safetynet.alerts.data.DataWriter.Mode;
+import com.safetynet.alerts.data.EntityTable;
+import com.safetynet.alerts.data.Journal;
+import com.safetynet.alerts.search.SearchIndex;
+import com.safetynet.alerts.util.JsonUtils;
+import com.safetynet.alerts.util.JsonUtils.Layout;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static com.safetynet.alerts.config.JsonTestConfig.SAMPLE_ORIG_PATH;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DataWriterTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path dataPath;
+    private DataStore store;
+    private JsonUtils jsonUtils;
+    private Journal journal;
+    private BinarySnapshot binarySnapshot;
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        dataPath = Files.copy(Paths.get(SAMPLE_ORIG_PATH), tempDir.resolve("data.json"));
+        var objectMapper = new JsonConfig().objectMapper();
+        jsonUtils = new JsonUtils(dataPath.toString(), objectMapper, Layout.SINGLE);
+        journal = new Journal(dataPath.toString(), objectMapper, true);
+        binarySnapshot = new BinarySnapshot(dataPath.toString(), false);
+        store = new DataStore(jsonUtils, journal, binarySnapshot);
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    public void testWriteBehindCoalescesChanges() throws Exception {
+        var writer = new DataWriter(store, jsonUtils, journal, binarySnapshot, meterRegistry, Mode.WRITE_BEHIND, Duration.ofHours(1), 10_000, false);
+        writer.start();
+        var original = Files.readAllBytes(dataPath);
+
+        var person = store.persons().get("JohnBoyd");
+        for (int i = 0; i < 1000; i++) {
+            person.setPhone("841-874-%04d".formatted(i));
+            store.persons().replace("JohnBoyd", person);
+        }
+
+        assertArrayEquals(original, Files.readAllBytes(dataPath));
+        assertEquals(1000, writer.getPendingChanges());
+
+        writer.shutdown();
+
+        assertEquals(1, meterRegistry.timer("data.flush").count());
+        assertEquals(0, writer.getPendingChanges());
+        assertTrue(Files.readString(dataPath).contains("841-874-0999"));
+    }
+
+    @Test
+    public void testWriteBehindFlushesOnThreshold() throws Exception {
+        var writer = new DataWriter(store, jsonUtils, journal, binarySnapshot, meterRegistry, Mode.WRITE_BEHIND, Duration.ofHours(1), 10, false);
+        writer.start();
+
+        for (int i = 0; i < 10; i++) {
+            store.firestations().remove(store.firestations().values().iterator().next().getAddress());
+        }
+
+        var deadline = System.currentTimeMillis() + 5_000;
+        while (meterRegistry.timer("data.flush").count() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, meterRegistry.timer("data.flush").count());
+        writer.shutdown();
+    }
+
+    @Test
+    public void testWriteBehindFlushesPastThreshold() throws Exception {
+        var writer = new DataWriter(store, jsonUtils, journal, binarySnapshot, meterRegistry, Mode.WRITE_BEHIND, Duration.ofHours(1), 10, false);
+        writer.start();
+        var batchApplied = new CountDownLatch(1);
+        var batchReleased = new CountDownLatch(1);
+
+        // a batch running on another thread takes pending changes past the threshold
+        var batch = Executors.newSingleThreadExecutor().submit(() -> writer.batch(() -> {
+            for (var record : List.copyOf(store.medicalRecords().values()).subList(0, 20)) {
+                store.medicalRecords().remove(record.getId());
+            }
+            batchApplied.countDown();
+            try {
+                batchReleased.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return null;
+        }));
+        batchApplied.await();
+        store.persons().remove("JohnBoyd");
+
+        var deadline = System.currentTimeMillis() + 5_000;
+        while (meterRegistry.timer("data.flush").count() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, meterRegistry.timer("data.flush").count());
+        batchReleased.countDown();
+        batch.get(1, TimeUnit.MINUTES);
+        writer.shutdown();
+    }
+
+    @Test
+    public void testWriteBehindFlushesOnVirtualThread() throws Exception {
+        var writer = new DataWriter(store, jsonUtils, journal, binarySnapshot, meterRegistry, Mode.WRITE_BEHIND, Duration.ofMillis(20), 10_000, true);
+        writer.start();
+
+        store.medicalRecords().remove("JohnBoyd");
+
+        var deadline = System.currentTimeMillis() + 5_000;
+        while (meterRegistry.timer("data.flush").count() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, meterRegistry.timer("data.flush").count());
+        assertFalse(Files.readString(dataPath).contains("\"John\", \"lastName\":\"Boyd\", \"birthdate\""));
+        writer.shutdown();
+    }
+
+    @Test
+    public void testWriteThroughWritesEachChange() {
+        new DataWriter(store, jsonUtils, journal, binarySnapshot, meterRegistry, Mode.WRITE_THROUGH, Duration.ofHours(1), 10, false).start();
+
+        store.medicalRecords().remove("JohnBoyd");
+        store.medicalRecords().remove("JacobBoyd");
+
+        assertEquals(2, meterRegistry.timer("data.flush").count());
+    }
+
+    @Test
+    public void testBatchIsWrittenByOneFlush() throws Exception {
+        var writer = new DataWriter(store, jsonUtils, journal, binarySnapshot, meterRegistry, Mode.JOURNAL, Duration.ofHours(1), 10, false);
+        writer.start();
+
+        int removed = writer.batch(() -> {
+            int count = 0;
+            for (var record : List.copyOf(store.medicalRecords().values())) {
+                store.medicalRecords().remove(record.getId());
+                count++;
+            }
+            return count;
+        });
+
+        assertTrue(removed > 10);
+        assertEquals(1, meterRegistry.timer("data.flush").count());
+        assertEquals(0, writer.getPendingChanges());
+        try (var files = Files.list(tempDir)) {
+            assertTrue(files.noneMatch(file -> file.getFileName().toString().contains(".journal.")));
+        }
+        assertFalse(Files.readString(dataPath).contains("\"birthdate\""));
+        writer.shutdown();
+    }
+
+    @Test
+    public void testJournalIsReplayedThenCompacted() throws Exception {
+        var writer = new DataWriter(store, jsonUtils, journal, binarySnapshot, meterRegistry, Mode.JOURNAL, Duration.ofHours(1), 10_000, false);
+        writer.start();
+        var original = Files.readAllBytes(dataPath);
+
+        var person = store.persons().get("JohnBoyd");
+        person.setCity("Journaled");
+        store.persons().replace("JohnBoyd", person);
+        store.persons().remove("JacobBoyd");
+
+        assertArrayEquals(original, Files.readAllBytes(dataPath));
+        assertTrue(Files.exists(tempDir.resolve("data.json.journal.1")));
+
+        // simulates a restart without shutdown
+        var objectMapper = new JsonConfig().objectMapper();
+        var restartedJsonUtils = new JsonUtils(dataPath.toString(), objectMapper, Layout.SINGLE);
+        var restartedJournal = new Journal(dataPath.toString(), objectMapper, true);
+        var restartedStore = new DataStore(restartedJsonUtils, restartedJournal, binarySnapshot);
+        restartedStore.replayJournal();
+
+        assertEquals(2, restartedStore.getReplayedChanges());
+        assertEquals("Journaled", restartedStore.persons().get("JohnBoyd").getCity());
+        assertFalse(restartedStore.persons().contains("JacobBoyd"));
+
+        var restartedWriter = new DataWriter(restartedStore, restartedJsonUtils, restartedJournal, binarySnapshot, meterRegistry, Mode.JOURNAL, Duration.ofHours(1), 10_000, false);
+        restartedWriter.start();
+        restartedWriter.shutdown();
+
+        assertTrue(Files.readString(dataPath).contains("Journaled"));
+        assertFalse(Files.exists(tempDir.resolve("data.json.journal.1")));
+        writer.shutdown();
+    }
+
+    @Test
+    public void testFailedJournalAppendIsNotApplied() throws Exception {
+        var writer = new DataWriter(store, jsonUtils, journal, binarySnapshot, meterRegistry, Mode.JOURNAL, Duration.ofHours(1), 10_000, false);
+        writer.start();
+        var index = new SearchIndex(store, Clock.systemDefaultZone());
+        var john = store.persons().get("JohnBoyd");
+        var snapshot = index.snapshot();
+
+        // the active segment cannot be opened
+        Files.createDirectory(tempDir.resolve("data.json.journal.1"));
+        assertThrows(RuntimeException.class, () -> store.persons().remove("JohnBoyd"));
+
+        assertSame(john, store.persons().get("JohnBoyd"));
+        assertSame(snapshot, index.snapshot());
+        assertEquals(0, writer.getPendingChanges());
+        writer.shutdown();
+    }
+
+    @Test
+    public void testCorruptJournalSegmentIsReported() throws Exception {
+        Files.writeString(tempDir.resolve("data.json.journal.1"), """
+                {"table":"vehicles","id":"JohnBoyd","value":null}
+                """);
+
+        var exception = assertThrows(RuntimeException.class, store::replayJournal);
+        assertTrue(exception.getMessage().contains("data.json.journal.1 is corrupt"));
+    }
+
+    @Test
+    public void testUnreadableJournalEntryAmidSegmentIsReported() throws Exception {
+        Files.writeString(tempDir.resolve("data.json.journal.1"), """
+                {"table":"persons","id":"JohnBoyd","value":null}
+                {"table":"persons","id":"JacobBoyd","val
+                {"table":"persons","id":"TenleyBoyd","value":null}
+                """);
+
+        var exception = assertThrows(RuntimeException.class, store::replayJournal);
+        assertTrue(exception.getMessage().contains("data.json.journal.1 is corrupt"));
+    }
+
+    @Test
+    public void testUndecodableJournalEntryIsReported() throws Exception {
+        Files.writeString(tempDir.resolve("data.json.journal.1"), """
+                {"table":"persons","id":"JohnBoyd","value":{"firstName":["John"]}}
+                """);
+
+        var exception = assertThrows(RuntimeException.class, store::replayJournal);
+        assertTrue(exception.getMessage().contains("data.json.journal.1 is corrupt"));
+    }
+
+    @Test
+    public void testTornLastJournalLineIsIgnoredAndCut() throws Exception {
+        var removal = "{\"table\":\"persons\",\"id\":\"JohnBoyd\",\"value\":null}\n";
+        Files.writeString(tempDir.resolve("data.json.journal.1"), removal + removal);
+        Files.writeString(tempDir.resolve("data.json.journal.2"), removal + "{\"table\":\"persons\",\"id\":\"Jac");
+
+        store.replayJournal();
+        assertNull(store.persons().get("JohnBoyd"));
+        assertEquals(removal, Files.readString(tempDir.resolve("data.json.journal.2")));
+    }
+
+    @Test
+    public void testBinarySnapshotIsWrittenThenPreferred() throws Exception {
+        var enabledSnapshot = new BinarySnapshot(dataPath.toString(), true);
+        var writer = new DataWriter(store, jsonUtils, journal, enabledSnapshot, meterRegistry, Mode.WRITE_THROUGH, Duration.ofHours(1), 10, false);
+        writer.start();
+        assertTrue(enabledSnapshot.isFresh(jsonUtils));
+
+        var person = store.persons().get("JohnBoyd");
+        person.setCity("Binary");
+        store.persons().replace("JohnBoyd", person);
+        assertTrue(enabledSnapshot.isFresh(jsonUtils));
+
+        // touching data.json without changing it keeps the snapshot
+        Files.setLastModifiedTime(dataPath, FileTime.fromMillis(System.currentTimeMillis() + 60_000));
+        assertTrue(enabledSnapshot.isFresh(jsonUtils));
+        var restartedStore = new DataStore(jsonUtils, journal, enabledSnapshot);
+
+        assertEquals("Binary", restartedStore.persons().get("JohnBoyd").getCity());
+        for (var table : store.tables()) {
+            assertEquals(table.size(), restartedStore.table(table.name()).size());
+        }
+        assertEquals(store.medicalRecords().get("JohnBoyd"), restartedStore.medicalRecords().get("JohnBoyd"));
+
+        // an edit of the same size, dated before the snapshot, still makes data.json read again
+        Files.writeString(dataPath, Files.readString(dataPath).replace("Binary", "Edited"));
+        Files.setLastModifiedTime(dataPath, FileTime.fromMillis(0));
+        assertFalse(enabledSnapshot.isFresh(jsonUtils));
+        assertEquals("Edited", new DataStore(jsonUtils, journal, enabledSnapshot).persons().get("JohnBoyd").getCity());
+        writer.shutdown();
+    }
+
+    @Test
+    public void testUnreadableBinarySnapshotIsDeletedAndJsonLoaded() throws Exception {
+        var enabledSnapshot = new BinarySnapshot(dataPath.toString(), true);
+        enabledSnapshot.fromJson(jsonUtils);
+        // header intact, elements cut short
+        try (var channel = FileChannel.open(enabledSnapshot.getPath(), StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 10);
+        }
+        assertTrue(enabledSnapshot.isFresh(jsonUtils));
+
+        var restartedStore = new DataStore(jsonUtils, journal, enabledSnapshot);
+
+        assertFalse(Files.exists(enabledSnapshot.getPath()));
+        for (var table : store.tables()) {
+            assertEquals(table.size(), restartedStore.table(table.name()).size());
+        }
+    }
+
+    @Test
+    public void testBinarySnapshotMatchesSplitFilesAfterFlush() {
+        var splitJsonUtils = new JsonUtils(dataPath.toString(), new JsonConfig().objectMapper(), Layout.SPLIT);
+        var splitStore = new DataStore(splitJsonUtils, journal, binarySnapshot);
+        var enabledSnapshot = new BinarySnapshot(dataPath.toString(), true);
+        var writer = new DataWriter(splitStore, splitJsonUtils, journal, enabledSnapshot, meterRegistry, Mode.WRITE_THROUGH, Duration.ofHours(1), 10, false);
+        writer.start();
+
+        var firestation = splitStore.firestations().get("1509 Culver St");
+        firestation.setStation(9);
+        splitStore.firestations().replace("1509 Culver St", firestation);
+
+        assertTrue(enabledSnapshot.isFresh(splitJsonUtils));
+        assertEquals(9, new DataStore(splitJsonUtils, journal, enabledSnapshot)
+                .firestations().get("1509 Culver St").getStation());
+    }
+
+    @Test
+    public void testBinarySnapshotConvertsBackToJson() {
+        var enabledSnapshot = new BinarySnapshot(dataPath.toString(), true);
+        enabledSnapshot.fromJson(jsonUtils);
+        enabledSnapshot.toJson(jsonUtils);
+
+        var convertedStore = new DataStore(jsonUtils, journal, binarySnapshot);
+
+        for (var table : store.tables()) {
+            var convertedTable = convertedStore.table(table.name());
+            assertEquals(table.size(), convertedTable.size());
+            for (var entity : table.values()) {
+                assertEquals(entity, convertedTable.get(idOf(table, entity)));
+            }
+        }
+    }
+
+    @Test
+    public void testSplitLayoutRewritesOnlyChangedTables() throws Exception {
+        var splitJsonUtils = new JsonUtils(dataPath.toString(), new JsonConfig().objectMapper(), Layout.SPLIT);
+        var splitStore = new DataStore(splitJsonUtils, journal, binarySnapshot);
+
+        assertFalse(Files.exists(dataPath));
+        assertTrue(Files.exists(tempDir.resolve("data.json.migrated")));
+        for (var table : store.tables()) {
+            assertTrue(Files.exists(splitJsonUtils.path(table.name())));
+            assertEquals(table.size(), splitStore.table(table.name()).size());
+        }
+
+        var personsFile = splitJsonUtils.path("persons");
+        var personsModified = FileTime.fromMillis(0);
+        Files.setLastModifiedTime(personsFile, personsModified);
+        var writer = new DataWriter(splitStore, splitJsonUtils, journal, binarySnapshot, meterRegistry, Mode.WRITE_THROUGH, Duration.ofHours(1), 10, false);
+        writer.start();
+
+        var firestation = splitStore.firestations().get("1509 Culver St");
+        firestation.setStation(9);
+        splitStore.firestations().replace("1509 Culver St", firestation);
+
+        assertEquals(personsModified, Files.getLastModifiedTime(personsFile));
+        var reloadedStore = new DataStore(splitJsonUtils, journal, binarySnapshot);
+        assertEquals(9, reloadedStore.firestations().get("1509 Culver St").getStation());
+        assertEquals(store.persons().size(), reloadedStore.persons().size());
+        writer.shutdown();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> String idOf(EntityTable<T> table, Object entity) {
+        return table.idOf((T) entity);
+    }
+
+}
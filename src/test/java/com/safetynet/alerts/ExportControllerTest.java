@@ -0,0 +1,106 @@
+package com.safetynet.alerts;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.safetynet.alerts.data.DataStore;
+import com.safetynet.alerts.data.EntityTable;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.safetynet.alerts.config.JsonTestConfig.SAMPLE_ORIG_PATH;
+import static com.safetynet.alerts.config.JsonTestConfig.SAMPLE_PATH;
+import static com.safetynet.alerts.search.SearchController.DATA_VERSION_HEADER;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.http.MediaType.APPLICATION_JSON;
+import static org.springframework.http.MediaType.APPLICATION_NDJSON;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+public class ExportControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private DataStore store;
+
+    @BeforeAll
+    public static void setup() throws IOException {
+        Files.copy(Paths.get(SAMPLE_ORIG_PATH), Paths.get(SAMPLE_PATH), REPLACE_EXISTING);
+    }
+
+    private String export(MediaType mediaType) throws Exception {
+        var started = mockMvc.perform(get("/export").accept(mediaType))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        return mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(mediaType))
+                .andExpect(header().exists(DATA_VERSION_HEADER))
+                .andReturn().getResponse().getContentAsString();
+    }
+
+    private Set<JsonNode> stored(EntityTable<?> table) {
+        var nodes = new HashSet<JsonNode>();
+        table.values().forEach(entity -> nodes.add(objectMapper.valueToTree(entity)));
+        return nodes;
+    }
+
+    private <T> String idOf(EntityTable<T> table, JsonNode value) throws IOException {
+        return table.idOf(objectMapper.treeToValue(value, table.type()));
+    }
+
+    @Test
+    public void testExportJson() throws Exception {
+        var json = objectMapper.readTree(export(APPLICATION_JSON));
+
+        assertEquals(List.of("persons", "firestations", "medicalrecords"),
+                json.properties().stream().map(Map.Entry::getKey).toList());
+        for (var table : store.tables()) {
+            var exported = new HashSet<JsonNode>();
+            json.get(table.name()).forEach(exported::add);
+            assertEquals(table.size(), json.get(table.name()).size());
+            assertEquals(stored(table), exported);
+        }
+    }
+
+    @Test
+    public void testExportNdjson() throws Exception {
+        var body = export(APPLICATION_NDJSON);
+
+        assertTrue(body.endsWith("\n"));
+        var exported = new HashMap<String, Set<JsonNode>>();
+        for (var line : body.lines().toList()) {
+            var entry = objectMapper.readTree(line);
+            var table = store.table(entry.get("table").asText());
+            assertEquals(entry.get("id").asText(), idOf(table, entry.get("value")));
+            exported.computeIfAbsent(table.name(), name -> new HashSet<>()).add(entry.get("value"));
+        }
+        for (var table : store.tables()) {
+            assertEquals(stored(table), exported.get(table.name()));
+        }
+    }
+
+}
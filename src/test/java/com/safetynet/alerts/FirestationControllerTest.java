@@ -18,7 +18,9 @@ import static com.safetynet.alerts.config.JsonTestConfig.SAMPLE_PATH;
 import static com.safetynet.alerts.config.JsonTestConfig.SAMPLE_ORIG_PATH;
 import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
 import static org.springframework.http.MediaType.APPLICATION_JSON;
+import static org.springframework.http.MediaType.APPLICATION_NDJSON;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @SpringBootTest
@@ -92,4 +94,43 @@ public class FirestationControllerTest {
                 .andExpect(status().isNotFound());
     }
 
+    @Test
+    @Order(7)
+    public void testImportFirestations() throws Exception {
+        mockMvc.perform(post("/firestation/bulk")
+                        .contentType(APPLICATION_NDJSON)
+                        .content("""
+                                { "address":"1 Import St", "station":5 }
+                                { "address":"1509 Culver St", "station":5 }
+                                { "address":"2 Import St", "station":0 }
+                                """))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.rows").value(3))
+                .andExpect(jsonPath("$.created").value(1))
+                .andExpect(jsonPath("$.rejected[0].reason").value("1509 Culver St is already assigned"))
+                .andExpect(jsonPath("$.rejected[1].reason").value("station must be greater than or equal to 1"));
+
+        // remove imported assignment
+        mockMvc.perform(delete("/firestation/1 Import St"))
+                .andExpect(status().isNoContent());
+    }
+
+    @Test
+    @Order(8)
+    public void testAssignmentsOfOtherSpellingsAreKept() throws Exception {
+        mockMvc.perform(post("/firestation")
+                        .contentType(APPLICATION_JSON)
+                        .content("""
+                                { "address":"1509 culver st", "station":"9" }
+                                """))
+                .andExpect(status().isCreated());
+        mockMvc.perform(get("/fire").param("address", "1509 Culver St"))
+                .andExpect(jsonPath("$.firestation").value(3));
+
+        mockMvc.perform(delete("/firestation/1509 culver st"))
+                .andExpect(status().isNoContent());
+        mockMvc.perform(get("/fire").param("address", "1509 CULVER ST"))
+                .andExpect(jsonPath("$.firestation").value(3));
+    }
+
 }
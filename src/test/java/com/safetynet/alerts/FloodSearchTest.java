@@ -0,0 +1,167 @@
+package com.safetynet.alerts;
+
+import com.safetynet.alerts.benchmark.SyntheticData;
+import com.safetynet.alerts.config.JsonConfig;
+import com.safetynet.alerts.data.BinarySnapshot;
+import com.safetynet.alerts.data.DataStore;
+import com.safetynet.alerts.data.Journal;
+import com.safetynet.alerts.firestation.FirestationDTO;
+import com.safetynet.alerts.medicalrecord.MedicalRecordDTO;
+import com.safetynet.alerts.person.PersonDTO;
+import com.safetynet.alerts.search.SearchIndex;
+import com.safetynet.alerts.search.SearchService;
+import com.safetynet.alerts.search.result.FloodStationsResult;
+import com.safetynet.alerts.util.JsonUtils;
+import com.safetynet.alerts.util.JsonUtils.Layout;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static com.safetynet.alerts.config.JsonTestConfig.SAMPLE_ORIG_PATH;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+public class FloodSearchTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testParallelFloodSearchMatchesSequentialSearch() throws Exception {
+        var objectMapper = new JsonConfig().objectMapper();
+        var dataFile = SyntheticData.write(tempDir.resolve("data.json"), 20_000, objectMapper);
+        var store = new DataStore(new JsonUtils(dataFile.toString(), objectMapper, Layout.SINGLE),
+                new Journal(dataFile.toString(), objectMapper, false), new BinarySnapshot(dataFile.toString(), false));
+        var service = new SearchService(new SearchIndex(store, Clock.systemDefaultZone()));
+        var snapshot = service.snapshot();
+        Set<Integer> stations = IntStream.rangeClosed(1, SyntheticData.STATIONS).boxed().collect(Collectors.toSet());
+
+        var result = service.getFloodStations(snapshot, stations);
+
+        var addresses = stations.stream().flatMap(station -> snapshot.addresses(station).stream()).sorted().toList();
+        var expected = new FloodStationsResult(
+                addresses.stream().flatMap(address -> snapshot.residentData(address).stream()).toList());
+        assertEquals(20_000, result.getNumberOfCoveredPersons());
+        assertEquals(expected.getHouseholds(), result.getHouseholds());
+    }
+
+    @Test
+    public void testResidentsOfOtherAddressSpellingsAreCovered() throws Exception {
+        var dataPath = Files.copy(Paths.get(SAMPLE_ORIG_PATH), tempDir.resolve("data.json"));
+        var objectMapper = new JsonConfig().objectMapper();
+        var store = new DataStore(new JsonUtils(dataPath.toString(), objectMapper, Layout.SINGLE),
+                new Journal(dataPath.toString(), objectMapper, false), new BinarySnapshot(dataPath.toString(), false));
+        var service = new SearchService(new SearchIndex(store, Clock.systemDefaultZone()));
+        var covered = service.getFloodStations(Set.of(3)).getNumberOfCoveredPersons();
+
+        var person = new PersonDTO();
+        person.setFirstName("Spelled");
+        person.setLastName("Differently");
+        person.setAddress("1509  CULVER st");
+        person.setCity("Culver");
+        person.setZip("97451");
+        person.setPhone("841-874-0000");
+        person.setEmail("spelled@email.com");
+        store.persons().insert(person);
+        var record = new MedicalRecordDTO();
+        record.setFirstName("Spelled");
+        record.setLastName("Differently");
+        record.setBirthdate(LocalDate.of(2000, 1, 1));
+        record.setMedications(Set.of());
+        record.setAllergies(Set.of());
+        store.medicalRecords().insert(record);
+
+        var result = service.getFloodStations(Set.of(3));
+        assertEquals(covered + 1, result.getNumberOfCoveredPersons());
+        assertEquals(1, result.getHouseholds().get("1509  CULVER st").size());
+    }
+
+    @Test
+    public void testFirestationCountsHouseholdOfTwoSpellingsOnce() throws Exception {
+        var store = sampleStore();
+        var service = new SearchService(new SearchIndex(store, Clock.systemDefaultZone()));
+        var expected = service.getFirestation(3);
+
+        assign(store, "1509  CULVER st", 3);
+
+        var result = service.getFirestation(3);
+        assertEquals(expected, result);
+        assertEquals(result.size(), result.getAdultCount() + result.getChildCount());
+    }
+
+    @Test
+    public void testStreamedFirestationEmitsHouseholdOfTwoSpellingsOnce() throws Exception {
+        var store = sampleStore();
+        var service = new SearchService(new SearchIndex(store, Clock.systemDefaultZone()));
+        var expected = service.getFirestation(3).size();
+
+        assign(store, "1509  CULVER st", 3);
+
+        assertEquals(expected, service.streamFirestation(service.snapshot(), 3)
+                .mapToInt(household -> household.coveredPersons().size()).sum());
+    }
+
+    @Test
+    public void testFloodStationsCountHouseholdOfTwoSpellingsOnce() throws Exception {
+        var store = sampleStore();
+        var service = new SearchService(new SearchIndex(store, Clock.systemDefaultZone()));
+        var expected = service.getFloodStations(Set.of(3)).getNumberOfCoveredPersons();
+
+        assign(store, "1509  CULVER st", 3);
+
+        assertEquals(expected, service.getFloodStations(Set.of(3)).getNumberOfCoveredPersons());
+    }
+
+    @Test
+    public void testStreamedFloodStationsEmitHouseholdOfTwoSpellingsOnce() throws Exception {
+        var store = sampleStore();
+        var service = new SearchService(new SearchIndex(store, Clock.systemDefaultZone()));
+        var expected = service.getFloodStations(Set.of(3)).getNumberOfCoveredPersons();
+
+        assign(store, "1509  CULVER st", 3);
+
+        assertEquals(expected, service.streamFloodStations(service.snapshot(), Set.of(3))
+                .mapToInt(household -> household.residents().size()).sum());
+    }
+
+    @Test
+    public void testFireStationIsTheSameWhateverTheSpelling() throws Exception {
+        var store = sampleStore();
+        var service = new SearchService(new SearchIndex(store, Clock.systemDefaultZone()));
+        assign(store, "1509  CULVER st", 2);
+        var snapshot = service.snapshot();
+
+        var fire = service.getFire(snapshot, "1509 Culver St");
+        var fires = service.getFires(snapshot, List.of("1509  CULVER st", "1509 Culver St"));
+
+        assertEquals(2, fire.getFirestation());
+        assertEquals(fire, service.getFire(snapshot, "1509  CULVER st"));
+        assertNotNull(fires.get("1509 Culver St"));
+        assertEquals(fire, fires.get("1509 Culver St"));
+        assertEquals(fire, fires.get("1509  CULVER st"));
+    }
+
+    private DataStore sampleStore() throws Exception {
+        var dataPath = Files.copy(Paths.get(SAMPLE_ORIG_PATH), tempDir.resolve("data.json"));
+        var objectMapper = new JsonConfig().objectMapper();
+        return new DataStore(new JsonUtils(dataPath.toString(), objectMapper, Layout.SINGLE),
+                new Journal(dataPath.toString(), objectMapper, false), new BinarySnapshot(dataPath.toString(), false));
+    }
+
+    private static void assign(DataStore store, String address, int station) {
+        var firestation = new FirestationDTO();
+        firestation.setAddress(address);
+        firestation.setStation(station);
+        store.firestations().insert(firestation);
+    }
+
+}
@@ -17,8 +17,10 @@ import java.nio.file.Paths;
 import static com.safetynet.alerts.config.JsonTestConfig.SAMPLE_PATH;
 import static com.safetynet.alerts.config.JsonTestConfig.SAMPLE_ORIG_PATH;
 import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static org.hamcrest.Matchers.startsWith;
 import static org.springframework.http.MediaType.APPLICATION_JSON;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @SpringBootTest
@@ -125,4 +127,40 @@ public class MedicalRecordControllerTest {
                 .andExpect(status().isNotFound());
     }
 
+    @Test
+    @Order(8)
+    public void testImportMedicalRecords() throws Exception {
+        mockMvc.perform(post("/person")
+                        .contentType(APPLICATION_JSON)
+                        .content("""
+                                { "firstName":"Eve", "lastName":"Bulk",
+                                "address":"1 Import St", "city":"Culver", "zip":"97451",
+                                "phone":"841-874-1006", "email":"eve@bulk.com" }
+                                """));
+
+        mockMvc.perform(post("/medicalRecord/bulk")
+                        .contentType(APPLICATION_JSON)
+                        .content("""
+                                [
+                                  { "firstName":"Eve", "lastName":"Bulk", "birthdate":"02/03/2001", "medications":[], "allergies":[] },
+                                  { "firstName":"John", "lastName":"Boyd", "birthdate":"03/06/1984", "medications":[], "allergies":[] },
+                                  { "firstName":"Nobody", "lastName":"Bulk", "birthdate":"02/03/2001", "medications":[], "allergies":[] },
+                                  { "firstName":"Eve", "lastName":"Bulk", "birthdate":"someday", "medications":[], "allergies":[] },
+                                  { "firstName":"Eve", "lastName":"Bulk", "medications":[], "allergies":[] }
+                                ]
+                                """))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.rows").value(5))
+                .andExpect(jsonPath("$.created").value(1))
+                .andExpect(jsonPath("$.rejected[0].reason").value("John Boyd already has a medical record"))
+                .andExpect(jsonPath("$.rejected[1].reason").value("Nobody Bulk does not exist"))
+                .andExpect(jsonPath("$.rejected[2].reason").value(startsWith("Invalid row")))
+                .andExpect(jsonPath("$.rejected[3].reason").value("birthdate must not be null"));
+
+        // remove imported medical record and its person
+        mockMvc.perform(delete("/medicalRecord/EveBulk"))
+                .andExpect(status().isNoContent());
+        mockMvc.perform(delete("/person/EveBulk"));
+    }
+
 }
@@ -17,8 +17,11 @@ import java.nio.file.Paths;
 import static com.safetynet.alerts.config.JsonTestConfig.SAMPLE_PATH;
 import static com.safetynet.alerts.config.JsonTestConfig.SAMPLE_ORIG_PATH;
 import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.springframework.http.MediaType.APPLICATION_JSON;
+import static org.springframework.http.MediaType.APPLICATION_NDJSON;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @SpringBootTest
@@ -100,4 +103,62 @@ public class PersonControllerTest {
                 .andExpect(status().isNotFound());
     }
 
+    @Test
+    @Order(7)
+    public void testImportPersons() throws Exception {
+        mockMvc.perform(post("/person/bulk")
+                        .contentType(APPLICATION_NDJSON)
+                        .content("""
+                                { "firstName":"Anna", "lastName":"Bulk", "address":"1 Import St", "city":"Culver", "zip":"97451", "phone":"841-874-1001", "email":"anna@bulk.com" }
+                                { "firstName":"John", "lastName":"Boyd", "address":"1 Import St", "city":"Culver", "zip":"97451", "phone":"841-874-1002", "email":"john@bulk.com" }
+                                { "firstName":"Bill", "lastName":"Bulk", "address":"1 Import St", "city":"Culver", "zip":"974", "phone":"841-874-1003", "email":"bill@bulk.com" }
+                                { "firstName":"Bob", "lastName":"Bulk", "address":"1 Import St", "city":"Culver", "zip":"97451", "phone":"841-874-1004", "email":"bob@bulk.com" }
+                                """))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.rows").value(4))
+                .andExpect(jsonPath("$.created").value(2))
+                .andExpect(jsonPath("$.rejected[0].row").value(2))
+                .andExpect(jsonPath("$.rejected[0].reason").value("John Boyd already exists"))
+                .andExpect(jsonPath("$.rejected[1].row").value(3))
+                .andExpect(jsonPath("$.rejected[1].reason").value("zip ZIP code must be 5 digits"));
+        assertTrue(Files.readString(Paths.get(SAMPLE_PATH)).contains("anna@bulk.com"));
+
+        // remove imported persons
+        mockMvc.perform(delete("/person/AnnaBulk"));
+        mockMvc.perform(delete("/person/BobBulk"));
+    }
+
+    @Test
+    @Order(8)
+    public void testImportMalformedPersons() throws Exception {
+        mockMvc.perform(post("/person/bulk")
+                        .contentType(APPLICATION_JSON)
+                        .content("""
+                                [ { "firstName":"Carl", "lastName":"Bulk", "address":"1 Import St", "city":"Culver", "zip":"97451", "phone":"841-874-1005", "email":"carl@bulk.com" },
+                                  { "firstName":"Dana", "lastName": ]
+                                """))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.rows").value(1))
+                .andExpect(jsonPath("$.created").value(1))
+                .andExpect(jsonPath("$.complete").value(false))
+                .andExpect(jsonPath("$.error").exists());
+
+        // remove the person imported before the malformed row
+        mockMvc.perform(delete("/person/CarlBulk"))
+                .andExpect(status().isNoContent());
+    }
+
+    @Test
+    @Order(9)
+    public void testUpdateInvalidPerson() throws Exception {
+        mockMvc.perform(put("/person/JohnBoyd")
+                        .contentType(APPLICATION_JSON)
+                        .content("""
+                                { "firstName":"John", "city":"Culver",
+                                "zip":"97451", "phone":"841-874-6512", "email":"jaboyd@email.com" }
+                                """))
+                .andExpect(status().isBadRequest());
+        assertTrue(Files.readString(Paths.get(SAMPLE_PATH)).contains("1509 Culver St"));
+    }
+
 }
@@ -0,0 +1,181 @@
+package com.safetynet.alerts;
+
+import com.safetynet.alerts.config.JsonConfig;
+import com.safetynet.alerts.data.BinarySnapshot;
+import com.safetynet.alerts.data.DataStore;
+import com.safetynet.alerts.data.Journal;
+import com.safetynet.alerts.search.EncodedResult;
+import com.safetynet.alerts.search.SearchCache;
+import com.safetynet.alerts.search.SearchIndex;
+import com.safetynet.alerts.search.SearchService;
+import com.safetynet.alerts.search.result.FireResult;
+import com.safetynet.alerts.util.JsonUtils;
+import com.safetynet.alerts.util.JsonUtils.Layout;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.safetynet.alerts.config.JsonTestConfig.SAMPLE_ORIG_PATH;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class SearchCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    private DataStore store;
+    private SearchService service;
+    private SimpleMeterRegistry meterRegistry;
+    private SearchCache cache;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        var dataPath = Files.copy(Paths.get(SAMPLE_ORIG_PATH), tempDir.resolve("data.json"));
+        var objectMapper = new JsonConfig().objectMapper();
+        store = new DataStore(new JsonUtils(dataPath.toString(), objectMapper, Layout.SINGLE),
+                new Journal(dataPath.toString(), objectMapper, false), new BinarySnapshot(dataPath.toString(), false));
+        service = new SearchService(new SearchIndex(store, Clock.systemDefaultZone()));
+        meterRegistry = new SimpleMeterRegistry();
+        cache = new SearchCache(meterRegistry, 2, DataSize.ofMegabytes(64));
+    }
+
+    @Test
+    public void testResultIsCachedUntilDataChanges() {
+        var first = fire("1509 Culver St");
+        assertSame(first, fire("1509 Culver St"));
+        assertEquals(1, count("search.cache.requests", "hit"));
+        assertEquals(1, count("search.cache.requests", "miss"));
+
+        assertNotNull(store.firestations().remove("1509 Culver St"));
+        var afterChange = fire("1509 Culver St");
+        assertNotSame(first, afterChange);
+        assertNull(afterChange.getFirestation());
+        assertEquals(2, count("search.cache.requests", "miss"));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedResultIsEvicted() {
+        var culver = fire("1509 Culver St");
+        fire("29 15th St");
+        fire("1509 Culver St");
+        fire("834 Binoc Ave");
+        assertEquals(1, meterRegistry.counter("search.cache.evictions").count());
+        assertEquals(2, cache.size());
+
+        assertSame(culver, fire("1509 Culver St"));
+        fire("29 15th St");
+        assertEquals(2, count("search.cache.requests", "hit"));
+        assertEquals(4, count("search.cache.requests", "miss"));
+    }
+
+    @Test
+    public void testResultsAreBoundedBySize() {
+        var boundedRegistry = new SimpleMeterRegistry();
+        var bounded = new SearchCache(boundedRegistry, 10, DataSize.ofBytes(100));
+        var snapshot = service.snapshot();
+        var first = bounded.get(snapshot, "/test", 1, () -> encoded(40));
+        bounded.get(snapshot, "/test", 2, () -> encoded(40));
+        bounded.get(snapshot, "/test", 3, () -> encoded(40));
+        assertEquals(1, boundedRegistry.counter("search.cache.evictions").count());
+        assertEquals(2, bounded.size());
+        assertNotSame(first, bounded.get(snapshot, "/test", 1, () -> encoded(40)));
+
+        // larger than the whole cache, so not cached rather than evicting all others
+        var large = bounded.get(snapshot, "/test", 4, () -> encoded(101));
+        assertNotSame(large, bounded.get(snapshot, "/test", 4, () -> encoded(101)));
+        assertEquals(2, bounded.size());
+        assertEquals(80, boundedRegistry.get("search.cache.bytes").gauge().value());
+    }
+
+    @Test
+    public void testDisabledCacheAlwaysSearches() {
+        var disabled = new SearchCache(meterRegistry, 0, DataSize.ofMegabytes(64));
+        var snapshot = service.snapshot();
+        assertNotSame(disabled.get(snapshot, "/fire", "1509 Culver St", () -> service.getFire(snapshot, "1509 Culver St")),
+                disabled.get(snapshot, "/fire", "1509 Culver St", () -> service.getFire(snapshot, "1509 Culver St")));
+        assertEquals(0, disabled.size());
+    }
+
+    @Test
+    public void testConcurrentIdenticalSearchesAreCoalesced() throws Exception {
+        int threads = 8;
+        var snapshot = service.snapshot();
+        var searches = new AtomicInteger();
+        var release = new CountDownLatch(1);
+        var executor = Executors.newFixedThreadPool(threads);
+        try {
+            var futures = new ArrayList<Future<FireResult>>();
+            for (int thread = 0; thread < threads; thread++) {
+                futures.add(executor.submit(() -> cache.get(snapshot, "/fire", "1509 Culver St", () -> {
+                    searches.incrementAndGet();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        throw new IllegalStateException(e);
+                    }
+                    return service.getFire(snapshot, "1509 Culver St");
+                })));
+            }
+            // let the first search finish only once every other thread waits for it
+            for (int i = 0; i < 500 && meterRegistry.counter("search.cache.coalesced").count() < threads - 1; i++) {
+                Thread.sleep(10);
+            }
+            release.countDown();
+
+            var result = futures.get(0).get(1, TimeUnit.MINUTES);
+            for (var future : futures) {
+                assertSame(result, future.get(1, TimeUnit.MINUTES));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, searches.get());
+        assertEquals(threads - 1, meterRegistry.counter("search.cache.coalesced").count());
+        assertEquals(1, count("search.cache.requests", "miss"));
+    }
+
+    @Test
+    public void testFailedSearchIsNotCached() {
+        var snapshot = service.snapshot();
+        assertThrows(IllegalStateException.class, () -> cache.get(snapshot, "/fire", "1509 Culver St", () -> {
+            throw new IllegalStateException("failed");
+        }));
+        assertNotNull(fire("1509 Culver St"));
+        assertEquals(2, count("search.cache.requests", "miss"));
+    }
+
+    private FireResult fire(String address) {
+        var snapshot = service.snapshot();
+        return cache.get(snapshot, "/fire", address, () -> service.getFire(snapshot, address));
+    }
+
+    private static EncodedResult<String> encoded(int size) {
+        var result = new EncodedResult<>("x".repeat(size));
+        result.json(value -> ((String) value).getBytes(StandardCharsets.UTF_8));
+        return result;
+    }
+
+    private double count(String name, String result) {
+        return meterRegistry.counter(name, "result", result).count();
+    }
+
+}
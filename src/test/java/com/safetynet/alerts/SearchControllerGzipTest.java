@@ -0,0 +1,99 @@
+package com.safetynet.alerts;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.zip.GZIPInputStream;
+
+import static com.safetynet.alerts.config.JsonTestConfig.SAMPLE_ORIG_PATH;
+import static com.safetynet.alerts.config.JsonTestConfig.SAMPLE_PATH;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.springframework.http.HttpHeaders.ACCEPT_ENCODING;
+import static org.springframework.http.HttpHeaders.CONTENT_ENCODING;
+import static org.springframework.http.HttpHeaders.ETAG;
+import static org.springframework.http.HttpHeaders.IF_NONE_MATCH;
+import static org.springframework.http.HttpHeaders.VARY;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest(properties = "search.response.gzip=true")
+@AutoConfigureMockMvc
+public class SearchControllerGzipTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @BeforeAll
+    public static void setup() throws IOException {
+        Files.copy(Paths.get(SAMPLE_ORIG_PATH), Paths.get(SAMPLE_PATH), REPLACE_EXISTING);
+    }
+
+    @Test
+    public void testLargeResultIsCompressedForClientsAcceptingGzip() throws Exception {
+        var identity = mockMvc.perform(get("/flood/stations").param("stations", "1,2,3,4"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(CONTENT_ENCODING))
+                .andExpect(header().string(VARY, ACCEPT_ENCODING))
+                .andReturn().getResponse();
+
+        var compressed = mockMvc.perform(get("/flood/stations").param("stations", "1,2,3,4")
+                        .header(ACCEPT_ENCODING, "gzip, deflate"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(CONTENT_ENCODING, "gzip"))
+                .andReturn().getResponse();
+
+        try (var input = new GZIPInputStream(new ByteArrayInputStream(compressed.getContentAsByteArray()))) {
+            assertArrayEquals(identity.getContentAsByteArray(), input.readAllBytes());
+        }
+        // each body has its own tag, only matching requests for the same encoding
+        assertNotEquals(identity.getHeader(ETAG), compressed.getHeader(ETAG));
+        mockMvc.perform(get("/flood/stations").param("stations", "1,2,3,4")
+                        .header(ACCEPT_ENCODING, "gzip").header(IF_NONE_MATCH, compressed.getHeader(ETAG)))
+                .andExpect(status().isNotModified());
+        mockMvc.perform(get("/flood/stations").param("stations", "1,2,3,4")
+                        .header(IF_NONE_MATCH, compressed.getHeader(ETAG)))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    public void testGzipRefusedByQualityIsNotUsed() throws Exception {
+        for (var acceptEncoding : new String[] {"gzip;q=0", "deflate, gzip; q=0.0", "*;q=0", "br, *;q=1, gzip;q=0"}) {
+            mockMvc.perform(get("/flood/stations").param("stations", "1,2,3,4").header(ACCEPT_ENCODING, acceptEncoding))
+                    .andExpect(status().isOk())
+                    .andExpect(header().doesNotExist(CONTENT_ENCODING));
+        }
+        mockMvc.perform(get("/flood/stations").param("stations", "1,2,3,4").header(ACCEPT_ENCODING, "br, *;q=0.5"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(CONTENT_ENCODING, "gzip"));
+    }
+
+    @Test
+    public void testSmallResultIsNotCompressed() throws Exception {
+        var identity = mockMvc.perform(get("/phoneAlert").param("firestation", "1"))
+                .andReturn().getResponse();
+        var small = mockMvc.perform(get("/phoneAlert").param("firestation", "1").header(ACCEPT_ENCODING, "gzip"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(CONTENT_ENCODING))
+                .andExpect(jsonPath("$[0]").exists())
+                .andReturn().getResponse();
+
+        // tagged as the identity body it is, whatever the client accepts
+        assertEquals(identity.getHeader(ETAG), small.getHeader(ETAG));
+        mockMvc.perform(get("/phoneAlert").param("firestation", "1")
+                        .header(ACCEPT_ENCODING, "gzip").header(IF_NONE_MATCH, small.getHeader(ETAG)))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(ETAG, small.getHeader(ETAG)));
+    }
+
+}
@@ -1,21 +1,40 @@
 package com.safetynet.alerts;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.List;
 
 import static com.safetynet.alerts.config.JsonTestConfig.SAMPLE_ORIG_PATH;
 import static com.safetynet.alerts.config.JsonTestConfig.SAMPLE_PATH;
+import static com.safetynet.alerts.search.SearchController.DATA_VERSION_HEADER;
 import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.not;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.http.HttpHeaders.ETAG;
+import static org.springframework.http.HttpHeaders.IF_NONE_MATCH;
+import static org.springframework.http.MediaType.APPLICATION_JSON;
+import static org.springframework.http.MediaType.APPLICATION_NDJSON;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -26,11 +45,30 @@ public class SearchControllerTest {
     @Autowired
     private MockMvc mockMvc;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
     @BeforeAll
     public static void setup() throws IOException {
         Files.copy(Paths.get(SAMPLE_ORIG_PATH), Paths.get(SAMPLE_PATH), REPLACE_EXISTING);
     }
 
+    private List<String> streamedLines(MockHttpServletRequestBuilder request) throws Exception {
+        var started = mockMvc.perform(request.accept(APPLICATION_NDJSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        var body = mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(APPLICATION_NDJSON))
+                .andExpect(header().exists(DATA_VERSION_HEADER))
+                .andReturn().getResponse().getContentAsString();
+        assertTrue(body.endsWith("\n"));
+        return body.lines().toList();
+    }
+
     @Test
     public void testFirestationEndpoint() throws Exception {
         mockMvc.perform(get("/firestation").param("stationNumber", "1"))
@@ -66,6 +104,49 @@ public class SearchControllerTest {
                 .andExpect(jsonPath("$.household", hasSize(5)));
     }
 
+    @Test
+    public void testFireEndpointNormalizesAddress() throws Exception {
+        mockMvc.perform(get("/fire").param("address", " 1509  CULVER st"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.firestation").value(3))
+                .andExpect(jsonPath("$.household", hasSize(5)));
+    }
+
+    @Test
+    public void testFireBatchEndpoint() throws Exception {
+        mockMvc.perform(post("/fire/batch")
+                        .contentType(APPLICATION_JSON)
+                        .content("""
+                                ["1509 Culver St", " 1509  CULVER st", "1 Unknown Rd"]
+                                """))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(DATA_VERSION_HEADER))
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$['1509 Culver St'].firestation").value(3))
+                .andExpect(jsonPath("$['1509 Culver St'].household", hasSize(5)))
+                .andExpect(jsonPath("$[' 1509  CULVER st'].household", hasSize(5)));
+    }
+
+    @Test
+    public void testChildAlertBatchEndpoint() throws Exception {
+        mockMvc.perform(post("/childAlert/batch")
+                        .contentType(APPLICATION_JSON)
+                        .content("""
+                                ["1509 Culver St", "1 Unknown Rd"]
+                                """))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$['1509 Culver St'].children", hasSize(2)));
+    }
+
+    @Test
+    public void testBatchEndpointRefusesEmptyBatch() throws Exception {
+        mockMvc.perform(post("/fire/batch")
+                        .contentType(APPLICATION_JSON)
+                        .content("[]"))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     public void testFloodStationsEndpoint() throws Exception {
         mockMvc.perform(get("/flood/stations").param("stations", "1,2"))
@@ -74,6 +155,51 @@ public class SearchControllerTest {
                 .andExpect(jsonPath("$.households[*]", hasSize(6)));
     }
 
+    @Test
+    public void testFloodStationsEndpointStreamsHouseholds() throws Exception {
+        var lines = streamedLines(get("/flood/stations").param("stations", "1,2"));
+
+        assertEquals(6, lines.size());
+        var residents = 0;
+        for (var line : lines) {
+            residents += objectMapper.readTree(line).get("residents").size();
+        }
+        var json = objectMapper.readTree(mockMvc.perform(get("/flood/stations").param("stations", "1,2"))
+                .andExpect(content().contentType(APPLICATION_JSON))
+                .andReturn().getResponse().getContentAsByteArray());
+        var expectedResidents = 0;
+        for (var household : json.get("households")) {
+            expectedResidents += household.size();
+        }
+        assertEquals(expectedResidents, residents);
+    }
+
+    @Test
+    public void testFirestationEndpointStreamsHouseholds() throws Exception {
+        var lines = streamedLines(get("/firestation").param("stationNumber", "1"));
+
+        var adults = 0;
+        var children = 0;
+        var persons = 0;
+        for (var line : lines) {
+            var household = objectMapper.readTree(line);
+            adults += household.get("adultCount").asInt();
+            children += household.get("childCount").asInt();
+            persons += household.get("coveredPersons").size();
+        }
+        assertEquals(5, adults);
+        assertEquals(1, children);
+        assertEquals(6, persons);
+    }
+
+    @Test
+    public void testStreamOfUnknownStationIsNotFound() throws Exception {
+        mockMvc.perform(get("/flood/stations").param("stations", "99").accept(APPLICATION_NDJSON))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(get("/firestation").param("stationNumber", "99").accept(APPLICATION_NDJSON))
+                .andExpect(status().isNotFound());
+    }
+
     @Test
     public void testPersonInfoEndpoint() throws Exception {
         mockMvc.perform(get("/personInfo").param("lastName", "Boyd"))
@@ -82,6 +208,54 @@ public class SearchControllerTest {
                 .andExpect(jsonPath("$.foundPersons", hasSize(6)));
     }
 
+    @Test
+    public void testPersonInfoEndpointMatchesIgnoringCase() throws Exception {
+        mockMvc.perform(get("/personInfo").param("lastName", "boyd"))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(get("/personInfo").param("lastName", " BOYD").param("match", "ignore-case"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.foundPersons", hasSize(6)));
+    }
+
+    @Test
+    public void testPersonInfoEndpointMatchesPrefix() throws Exception {
+        mockMvc.perform(get("/personInfo").param("lastName", "ca").param("match", "prefix"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.foundPersons", hasSize(2)));
+    }
+
+    @Test
+    public void testPersonInfoBatchEndpoint() throws Exception {
+        var lastNames = """
+                ["Boyd", "boyd", "Unknown"]
+                """;
+        mockMvc.perform(post("/personInfo/batch")
+                        .contentType(APPLICATION_JSON)
+                        .content(lastNames))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$.Boyd.foundPersons", hasSize(6)));
+        mockMvc.perform(post("/personInfo/batch")
+                        .param("match", "ignore-case")
+                        .contentType(APPLICATION_JSON)
+                        .content(lastNames))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$.boyd.foundPersons", hasSize(6)));
+    }
+
+    @Test
+    public void testLastNamesEndpoint() throws Exception {
+        mockMvc.perform(get("/lastNames").param("prefix", "C"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", contains("Cadigan", "Carman", "Cooper")));
+        mockMvc.perform(get("/lastNames").param("prefix", "c").param("limit", "2"))
+                .andExpect(jsonPath("$", contains("Cadigan", "Carman")));
+        mockMvc.perform(get("/lastNames").param("prefix", "Unknown"))
+                .andExpect(status().isNotFound());
+    }
+
     @Test
     public void testCommunityEmailEndpoint() throws Exception {
         mockMvc.perform(get("/communityEmail").param("city", "Culver"))
@@ -90,4 +264,164 @@ public class SearchControllerTest {
                 .andExpect(jsonPath("$", hasSize(15)));
     }
 
+    @Test
+    public void testCommunityEmailFollowsDataChanges() throws Exception {
+        mockMvc.perform(post("/person")
+                .contentType(APPLICATION_JSON)
+                .content("""
+                        { "firstName":"Ann", "lastName":"Mailer",
+                        "address":"1 Mail Rd", "city":"Mailtown", "zip":"12345",
+                        "phone":"123-456-7890", "email":"mailer@mail.com" }
+                        """));
+        mockMvc.perform(get("/communityEmail").param("city", "Mailtown"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(APPLICATION_JSON))
+                .andExpect(jsonPath("$", contains("mailer@mail.com")));
+
+        // a shared address is listed once, and remains until its last resident leaves
+        mockMvc.perform(post("/person")
+                .contentType(APPLICATION_JSON)
+                .content("""
+                        { "firstName":"Bob", "lastName":"Mailer",
+                        "address":"1 Mail Rd", "city":"Mailtown", "zip":"12345",
+                        "phone":"123-456-7890", "email":"mailer@mail.com" }
+                        """));
+        mockMvc.perform(delete("/person/AnnMailer"));
+        mockMvc.perform(get("/communityEmail").param("city", "Mailtown"))
+                .andExpect(jsonPath("$", contains("mailer@mail.com")));
+
+        mockMvc.perform(put("/person/BobMailer")
+                .contentType(APPLICATION_JSON)
+                .content("""
+                        { "firstName":"Bob", "lastName":"Mailer",
+                        "address":"1 Mail Rd", "city":"Mailtown", "zip":"12345",
+                        "phone":"123-456-7890", "email":"bob@mail.com" }
+                        """));
+        mockMvc.perform(get("/communityEmail").param("city", "Mailtown"))
+                .andExpect(jsonPath("$", contains("bob@mail.com")));
+
+        mockMvc.perform(delete("/person/BobMailer"));
+        mockMvc.perform(get("/communityEmail").param("city", "Mailtown"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void testPersonInfoFollowsDataChanges() throws Exception {
+        mockMvc.perform(post("/person")
+                .contentType(APPLICATION_JSON)
+                .content("""
+                        { "firstName":"Ada", "lastName":"Indexed",
+                        "address":"1 Index Rd", "city":"Nowhere", "zip":"12345",
+                        "phone":"123-456-7890", "email":"ada@mail.com" }
+                        """));
+
+        // not searchable without a medical record
+        mockMvc.perform(get("/personInfo").param("lastName", "Indexed"))
+                .andExpect(status().isNotFound());
+
+        mockMvc.perform(post("/medicalRecord")
+                .contentType(APPLICATION_JSON)
+                .content("""
+                        { "firstName":"Ada", "lastName":"Indexed", "birthdate":"12/10/1815",
+                        "medications":[], "allergies":[] }
+                        """));
+        mockMvc.perform(get("/personInfo").param("lastName", "Indexed"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.foundPersons[0].address").value("1 Index Rd"));
+
+        mockMvc.perform(put("/person/AdaIndexed")
+                .contentType(APPLICATION_JSON)
+                .content("""
+                        { "firstName":"Ada", "lastName":"Indexed",
+                        "address":"2 Index Rd", "city":"Nowhere", "zip":"12345",
+                        "phone":"123-456-7890", "email":"ada@mail.com" }
+                        """));
+        mockMvc.perform(get("/personInfo").param("lastName", "Indexed"))
+                .andExpect(jsonPath("$.foundPersons[0].address").value("2 Index Rd"));
+
+        mockMvc.perform(delete("/medicalRecord/AdaIndexed"));
+        mockMvc.perform(delete("/person/AdaIndexed"));
+        mockMvc.perform(get("/personInfo").param("lastName", "Indexed"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void testCoverageFollowsFirestationChanges() throws Exception {
+        mockMvc.perform(put("/firestation/29 15th St")
+                .contentType(APPLICATION_JSON)
+                .content("""
+                        { "address":"29 15th St", "station":"9" }
+                        """));
+        mockMvc.perform(get("/phoneAlert").param("firestation", "9"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0]").value("841-874-6513"));
+
+        mockMvc.perform(put("/firestation/29 15th St")
+                .contentType(APPLICATION_JSON)
+                .content("""
+                        { "address":"29 15th St", "station":"2" }
+                        """));
+        mockMvc.perform(get("/phoneAlert").param("firestation", "9"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void testUnchangedResultIsNotModified() throws Exception {
+        var etag = mockMvc.perform(get("/flood/stations").param("stations", "1,2"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(ETAG))
+                .andReturn().getResponse().getHeader(ETAG);
+        var otherEtag = mockMvc.perform(get("/flood/stations").param("stations", "3"))
+                .andReturn().getResponse().getHeader(ETAG);
+        assertNotEquals(etag, otherEtag);
+
+        double searches = meterRegistry.find("search.cache.requests").counters().stream()
+                .mapToDouble(Counter::count).sum();
+        mockMvc.perform(get("/flood/stations").param("stations", "1,2").header(IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(ETAG, etag))
+                .andExpect(content().bytes(new byte[0]));
+        // answered without searching, even in the cache
+        assertEquals(searches, meterRegistry.find("search.cache.requests").counters().stream()
+                .mapToDouble(Counter::count).sum());
+
+        mockMvc.perform(put("/firestation/29 15th St")
+                .contentType(APPLICATION_JSON)
+                .content("""
+                        { "address":"29 15th St", "station":"2" }
+                        """));
+        mockMvc.perform(get("/flood/stations").param("stations", "1,2").header(IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andExpect(header().string(ETAG, not(etag)));
+    }
+
+    @Test
+    public void testNotFoundResultHasNoEtag() throws Exception {
+        mockMvc.perform(get("/flood/stations").param("stations", "9"))
+                .andExpect(status().isNotFound())
+                .andExpect(header().doesNotExist(ETAG));
+        mockMvc.perform(get("/flood/stations").param("stations", "9").accept(APPLICATION_NDJSON))
+                .andExpect(status().isNotFound())
+                .andExpect(header().doesNotExist(ETAG));
+    }
+
+    @Test
+    public void testResponsesCarryDataVersion() throws Exception {
+        var before = mockMvc.perform(get("/phoneAlert").param("firestation", "2"))
+                .andExpect(header().exists(DATA_VERSION_HEADER))
+                .andReturn().getResponse().getHeader(DATA_VERSION_HEADER);
+
+        mockMvc.perform(put("/firestation/29 15th St")
+                .contentType(APPLICATION_JSON)
+                .content("""
+                        { "address":"29 15th St", "station":"2" }
+                        """));
+
+        mockMvc.perform(get("/phoneAlert").param("firestation", "2"))
+                .andExpect(header().string(DATA_VERSION_HEADER, String.valueOf(Long.parseLong(before) + 1)));
+        mockMvc.perform(get("/fire").param("address", "0000 Untold Rd"))
+                .andExpect(status().isNotFound())
+                .andExpect(header().exists(DATA_VERSION_HEADER));
+    }
+
 }
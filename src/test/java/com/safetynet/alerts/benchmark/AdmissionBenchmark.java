@@ -0,0 +1,152 @@
+package com.safetynet.alerts.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.safetynet.alerts.config.AdmissionInterceptor;
+import com.safetynet.alerts.config.JsonConfig;
+import com.safetynet.alerts.data.BinarySnapshot;
+import com.safetynet.alerts.data.DataStore;
+import com.safetynet.alerts.data.Journal;
+import com.safetynet.alerts.search.SearchIndex;
+import com.safetynet.alerts.search.SearchService;
+import com.safetynet.alerts.util.JsonUtils;
+import com.safetynet.alerts.util.JsonUtils.Layout;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Measures fire searches under an overload of flood searches, on a pool of 200 request threads as
+ * Tomcat has by default, without and with admission control, bulk requests waiting at most 100 ms
+ * for one of 4 slots, or one slot per core as by default. For 5 seconds, 200 fire searches and 40
+ * flood searches of 5 stations arrive per second on 100,000 persons, flood searches alone asking
+ * for more CPU time than there is.
+ *
+ * <p>Latencies are measured from the arrival of each request, including the time spent waiting for
+ * a thread or a slot.
+ *
+ * <p>Run with {@code mvn test -Dbenchmark=true -Dtest=AdmissionBenchmark}.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class AdmissionBenchmark {
+
+    private static final int REQUESTS_PER_SECOND = 240;
+
+    private static final int REQUESTS = 1_200;
+
+    private static final int FLOOD_EVERY = 6;
+
+    private static final Set<Integer> FLOOD_STATIONS = IntStream.rangeClosed(1, 5).boxed().collect(Collectors.toSet());
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void fireSearchesUnderFloodOverload() throws Exception {
+        var objectMapper = new JsonConfig().objectMapper();
+        var dataFile = SyntheticData.write(tempDir.resolve("data.json"), 100_000, objectMapper);
+        var store = new DataStore(new JsonUtils(dataFile.toString(), objectMapper, Layout.SINGLE),
+                new Journal(dataFile.toString(), objectMapper, false), new BinarySnapshot(dataFile.toString(), false));
+        var service = new SearchService(new SearchIndex(store, Clock.systemDefaultZone()));
+        System.out.printf("%d available core(s)%n", Runtime.getRuntime().availableProcessors());
+
+        // warms up both searches
+        for (int i = 0; i < 20; i++) {
+            encode(objectMapper, service.getFloodStations(service.snapshot(), FLOOD_STATIONS));
+            encode(objectMapper, service.getFire(service.snapshot(), SyntheticData.address(i)));
+        }
+
+        run("without admission control", objectMapper, service, null);
+        admitted("4 bulk slots", objectMapper, service, 4);
+        admitted("1 bulk slot per core", objectMapper, service, 0);
+    }
+
+    private void admitted(String label, ObjectMapper objectMapper, SearchService service, int bulkSlots)
+            throws Exception {
+        var meterRegistry = new SimpleMeterRegistry();
+        run(label, objectMapper, service, new AdmissionInterceptor(meterRegistry, 32, bulkSlots, Duration.ofMillis(100)));
+        var waited = meterRegistry.get("admission.queue").tags("priority", "bulk", "outcome", "admitted").timer();
+        System.out.printf("%-27s bulk admitted after waiting %.1f ms on average, %.1f ms at most%n", label,
+                waited.mean(TimeUnit.MILLISECONDS), waited.max(TimeUnit.MILLISECONDS));
+    }
+
+    private void run(String label, ObjectMapper objectMapper, SearchService service,
+                     AdmissionInterceptor interceptor) throws Exception {
+        var executor = Executors.newFixedThreadPool(200);
+        var fireNanos = new long[REQUESTS];
+        var floodNanos = new long[REQUESTS];
+        var rejected = new AtomicInteger();
+        long start = System.nanoTime();
+        for (int i = 0; i < REQUESTS; i++) {
+            long arrival = start + i * 1_000_000_000L / REQUESTS_PER_SECOND;
+            LockSupport.parkNanos(arrival - System.nanoTime());
+            var request = i;
+            executor.execute(() -> {
+                boolean flood = request % FLOOD_EVERY == 0;
+                var servletRequest = new MockHttpServletRequest("GET", flood ? "/flood/stations" : "/fire");
+                var servletResponse = new MockHttpServletResponse();
+                try {
+                    if (interceptor != null && !interceptor.preHandle(servletRequest, servletResponse, null)) {
+                        rejected.incrementAndGet();
+                        return;
+                    }
+                    if (flood) {
+                        encode(objectMapper, service.getFloodStations(service.snapshot(), FLOOD_STATIONS));
+                        floodNanos[request] = System.nanoTime() - arrival;
+                    } else {
+                        encode(objectMapper, service.getFire(service.snapshot(), SyntheticData.address(request)));
+                        fireNanos[request] = System.nanoTime() - arrival;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    if (interceptor != null) {
+                        interceptor.afterCompletion(servletRequest, servletResponse, null, null);
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+        executor.awaitTermination(5, TimeUnit.MINUTES);
+
+        var fires = completed(fireNanos);
+        var floods = completed(floodNanos);
+        System.out.printf("%-27s fire  %5d  p50 %8.1f ms  p99 %8.1f ms  max %8.1f ms%n", label, fires.length,
+                percentile(fires, 50), percentile(fires, 99), percentile(fires, 100));
+        System.out.printf("%-27s flood %5d  p50 %8.1f ms  p99 %8.1f ms  max %8.1f ms  %d refused%n", label,
+                floods.length, percentile(floods, 50), percentile(floods, 99), percentile(floods, 100), rejected.get());
+    }
+
+    private static long[] completed(long[] nanos) {
+        return Arrays.stream(nanos).filter(n -> n > 0).sorted().toArray();
+    }
+
+    private static double percentile(long[] sorted, int percentile) {
+        return sorted.length == 0 ? 0 : sorted[Math.min(sorted.length - 1, sorted.length * percentile / 100)] / 1e6;
+    }
+
+    private static void encode(ObjectMapper objectMapper, Object result) {
+        try {
+            objectMapper.writeValueAsBytes(result);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+}
@@ -0,0 +1,89 @@
+package com.safetynet.alerts.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.safetynet.alerts.config.JsonConfig;
+import com.safetynet.alerts.data.BinarySnapshot;
+import com.safetynet.alerts.data.DataStore;
+import com.safetynet.alerts.data.Journal;
+import com.safetynet.alerts.search.NameMatch;
+import com.safetynet.alerts.search.SearchIndex;
+import com.safetynet.alerts.search.SearchService;
+import com.safetynet.alerts.util.JsonUtils;
+import com.safetynet.alerts.util.JsonUtils.Layout;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Locale;
+
+/**
+ * Compares searching the households of 200 buildings, and the persons of 200 last names, one
+ * search and one encoded response at a time, as with one request per key, with a single batch
+ * search encoded into one response. Half of the keys repeat the other half with another spelling,
+ * as when several dispatchers report the same building.
+ *
+ * <p>Run with {@code mvn test -Dbenchmark=true -Dtest=BatchSearchBenchmark}.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class BatchSearchBenchmark {
+
+    private static final int KEYS = 200;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void batchSearchCost() throws Exception {
+        var objectMapper = new JsonConfig().objectMapper();
+        var dataFile = SyntheticData.write(tempDir.resolve("data.json"), 100_000, objectMapper);
+        var store = new DataStore(new JsonUtils(dataFile.toString(), objectMapper, Layout.SINGLE),
+                new Journal(dataFile.toString(), objectMapper, false), new BinarySnapshot(dataFile.toString(), false));
+        var service = new SearchService(new SearchIndex(store, Clock.systemDefaultZone()));
+        var snapshot = service.snapshot();
+
+        var addresses = new ArrayList<String>();
+        var lastNames = new ArrayList<String>();
+        for (int i = 0; i < KEYS / 2; i++) {
+            var person = store.persons().values().stream().skip(i * 97L).findFirst().orElseThrow();
+            addresses.add(person.getAddress());
+            addresses.add(" " + person.getAddress().toUpperCase(Locale.ROOT));
+            lastNames.add(person.getLastName());
+            lastNames.add(person.getLastName().toLowerCase(Locale.ROOT));
+        }
+
+        Measurement.run("fire, one request per address", 50, () -> {
+            for (var address : addresses) {
+                encode(objectMapper, service.getFire(snapshot, address));
+            }
+        });
+        Measurement.run("fire, one batch", 50, () -> encode(objectMapper, service.getFires(snapshot, addresses)));
+        Measurement.run("childAlert, one request per address", 50, () -> {
+            for (var address : addresses) {
+                encode(objectMapper, service.getChildAlert(snapshot, address));
+            }
+        });
+        Measurement.run("childAlert, one batch", 50,
+                () -> encode(objectMapper, service.getChildAlerts(snapshot, addresses)));
+        Measurement.run("personInfo, one request per last name", 50, () -> {
+            for (var lastName : lastNames) {
+                encode(objectMapper, service.getPersonInfo(snapshot, lastName, NameMatch.IGNORE_CASE));
+            }
+        });
+        Measurement.run("personInfo, one batch", 50,
+                () -> encode(objectMapper, service.getPersonInfos(snapshot, lastNames, NameMatch.IGNORE_CASE)));
+    }
+
+    private static void encode(ObjectMapper objectMapper, Object result) {
+        try {
+            objectMapper.writeValueAsBytes(result);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+}
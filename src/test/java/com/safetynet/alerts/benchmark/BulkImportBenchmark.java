@@ -0,0 +1,126 @@
+package com.safetynet.alerts.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.safetynet.alerts.config.JsonConfig;
+import com.safetynet.alerts.data.BinarySnapshot;
+import com.safetynet.alerts.data.BulkImporter;
+import com.safetynet.alerts.data.DataStore;
+import com.safetynet.alerts.data.DataWriter;
+import com.safetynet.alerts.data.DataWriter.Mode;
+import com.safetynet.alerts.data.Journal;
+import com.safetynet.alerts.medicalrecord.MedicalRecordDTO;
+import com.safetynet.alerts.person.PersonDTO;
+import com.safetynet.alerts.search.SearchIndex;
+import com.safetynet.alerts.util.JsonUtils;
+import com.safetynet.alerts.util.JsonUtils.Layout;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Clock;
+import java.time.Duration;
+
+import static com.safetynet.alerts.config.JsonTestConfig.SAMPLE_ORIG_PATH;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Measures importing 100,000 persons and their medical records in one bulk import each, in
+ * write-through mode with the search index attached, against creating persons one at a time,
+ * each rewriting data.json. Bulk imports are measured after a warmup import.
+ *
+ * <p>Run with {@code mvn test -Dbenchmark=true -Dtest=BulkImportBenchmark}.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class BulkImportBenchmark {
+
+    private static final int ROWS = 100_000;
+
+    private static final int SINGLE_ROWS = 500;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void bulkImportCost() throws Exception {
+        var objectMapper = new JsonConfig().objectMapper();
+        var rowWriter = objectMapper.writer().without(SerializationFeature.INDENT_OUTPUT);
+        var synthetic = objectMapper.readTree(SyntheticData.write(tempDir.resolve("synthetic.json"), ROWS, objectMapper).toFile());
+        var persons = rowWriter.writeValueAsBytes(synthetic.get("persons"));
+        var records = new ByteArrayOutputStream();
+        for (var record : synthetic.get("medicalrecords")) {
+            records.write(rowWriter.writeValueAsBytes(record));
+            records.write('\n');
+        }
+
+        var single = new Fixture(objectMapper, tempDir.resolve("single"));
+        long start = System.nanoTime();
+        for (var person : synthetic.get("persons")) {
+            if (single.store.persons().size() >= SINGLE_ROWS) {
+                break;
+            }
+            single.store.persons().insert(objectMapper.treeToValue(person, PersonDTO.class));
+        }
+        double singleMillis = (System.nanoTime() - start) / 1e6;
+        System.out.printf("%-45s %10.1f ms for %d rows, %.0f s extrapolated to %d rows%n", "one at a time",
+                singleMillis, SINGLE_ROWS, singleMillis * ROWS / SINGLE_ROWS / 1e3, ROWS);
+
+        // warms up decoding, validation and indexing
+        var warmup = new Fixture(objectMapper, tempDir.resolve("warmup"));
+        warmup.importer.importRows(new ByteArrayInputStream(persons), PersonDTO.class,
+                person -> warmup.store.persons().insert(person) ? null : "duplicate");
+
+        var bulk = new Fixture(objectMapper, tempDir.resolve("bulk"));
+        start = System.nanoTime();
+        var personsResult = bulk.importer.importRows(new ByteArrayInputStream(persons), PersonDTO.class,
+                person -> bulk.store.persons().insert(person) ? null : "duplicate");
+        System.out.printf("%-45s %10.1f ms for %d rows, %d flush(es)%n", "bulk JSON array of persons",
+                (System.nanoTime() - start) / 1e6, personsResult.getRows(), bulk.flushes());
+
+        long personFlushes = bulk.flushes();
+        start = System.nanoTime();
+        var recordsResult = bulk.importer.importRows(new ByteArrayInputStream(records.toByteArray()),
+                MedicalRecordDTO.class,
+                record -> bulk.store.medicalRecords().insert(record) ? null : "duplicate");
+        System.out.printf("%-45s %10.1f ms for %d rows, %d flush(es)%n", "bulk NDJSON of medical records",
+                (System.nanoTime() - start) / 1e6, recordsResult.getRows(), bulk.flushes() - personFlushes);
+
+        assertEquals(ROWS, personsResult.getCreated());
+        assertEquals(ROWS, recordsResult.getCreated());
+    }
+
+    private static class Fixture {
+
+        private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+        private final DataStore store;
+
+        private final BulkImporter importer;
+
+        Fixture(ObjectMapper objectMapper, Path directory) throws Exception {
+            var dataFile = Files.copy(Paths.get(SAMPLE_ORIG_PATH), Files.createDirectories(directory).resolve("data.json"));
+            var jsonUtils = new JsonUtils(dataFile.toString(), objectMapper, Layout.SINGLE);
+            var journal = new Journal(dataFile.toString(), objectMapper, false);
+            var binarySnapshot = new BinarySnapshot(dataFile.toString(), false);
+            store = new DataStore(jsonUtils, journal, binarySnapshot);
+            new SearchIndex(store, Clock.systemDefaultZone());
+            var writer = new DataWriter(store, jsonUtils, journal, binarySnapshot, meterRegistry,
+                    Mode.WRITE_THROUGH, Duration.ofSeconds(1), 1000, false);
+            writer.start();
+            importer = new BulkImporter(objectMapper, Validation.buildDefaultValidatorFactory().getValidator(), writer);
+        }
+
+        long flushes() {
+            return meterRegistry.timer("data.flush").count();
+        }
+
+    }
+
+}
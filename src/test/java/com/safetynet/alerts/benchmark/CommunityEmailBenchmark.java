@@ -0,0 +1,74 @@
+package com.safetynet.alerts.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.safetynet.alerts.config.JsonConfig;
+import com.safetynet.alerts.data.BinarySnapshot;
+import com.safetynet.alerts.data.DataStore;
+import com.safetynet.alerts.data.Journal;
+import com.safetynet.alerts.person.PersonDTO;
+import com.safetynet.alerts.search.SearchIndex;
+import com.safetynet.alerts.search.SearchService;
+import com.safetynet.alerts.search.result.CommunityEmailResult;
+import com.safetynet.alerts.util.JsonUtils;
+import com.safetynet.alerts.util.JsonUtils.Layout;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Clock;
+
+import static java.util.stream.Collectors.toUnmodifiableSet;
+
+/**
+ * Measures the cost of repeated /communityEmail requests, from search to response bytes, with
+ * per-city contacts against a scan of all persons encoded on each request.
+ *
+ * <p>Run with {@code mvn test -Dbenchmark=true -Dtest=CommunityEmailBenchmark}.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class CommunityEmailBenchmark {
+
+    @TempDir
+    Path tempDir;
+
+    @ParameterizedTest
+    @ValueSource(ints = {10_000, 100_000, 400_000})
+    public void communityEmailCost(int persons) throws Exception {
+        var objectMapper = new JsonConfig().objectMapper();
+        var dataFile = SyntheticData.write(tempDir.resolve("data.json"), persons, objectMapper);
+        var store = new DataStore(new JsonUtils(dataFile.toString(), objectMapper, Layout.SINGLE),
+                new Journal(dataFile.toString(), objectMapper, false), new BinarySnapshot(dataFile.toString(), false));
+        var searchService = new SearchService(new SearchIndex(store, Clock.systemDefaultZone()));
+        var snapshot = searchService.snapshot();
+        var response = new ByteArrayOutputStream();
+
+        System.out.printf("/communityEmail with %d persons%n", persons);
+        Measurement.run("scan and encode", 20, () -> {
+            var emails = snapshot.persons().stream()
+                    .filter(person -> person.getCity().equals("City1"))
+                    .map(PersonDTO::getEmail)
+                    .collect(toUnmodifiableSet());
+            response.reset();
+            response.writeBytes(encode(objectMapper, new CommunityEmailResult(emails)));
+        });
+        Measurement.run("city contacts, encoded once", 2_000, () -> {
+            response.reset();
+            response.writeBytes(searchService.getEncodedCommunityEmail(snapshot, "City1")
+                    .json(result -> encode(objectMapper, result)));
+        });
+    }
+
+    private static byte[] encode(ObjectMapper objectMapper, Object result) {
+        try {
+            return objectMapper.writeValueAsBytes(result);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+}
@@ -0,0 +1,80 @@
+package com.safetynet.alerts.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.type.TypeFactory;
+import com.safetynet.alerts.config.JsonConfig;
+import com.safetynet.alerts.data.BinarySnapshot;
+import com.safetynet.alerts.data.DataStore;
+import com.safetynet.alerts.data.Journal;
+import com.safetynet.alerts.firestation.FirestationDTO;
+import com.safetynet.alerts.medicalrecord.MedicalRecordDTO;
+import com.safetynet.alerts.person.PersonDTO;
+import com.safetynet.alerts.search.SearchIndex;
+import com.safetynet.alerts.search.SearchService;
+import com.safetynet.alerts.util.JsonUtils;
+import com.safetynet.alerts.util.JsonUtils.Layout;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Clock;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compares the per-request data access cost of re-deserializing the JSON tree, as every search
+ * request used to do through JsonUtils.get, with reading the typed {@link DataStore}.
+ *
+ * <p>Run with {@code mvn test -Dbenchmark=true -Dtest=EntityStoreBenchmark}.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class EntityStoreBenchmark {
+
+    private static final int PERSONS = 10_000;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void compareTreeConversionWithTypedStore() throws Exception {
+        var objectMapper = new JsonConfig().objectMapper();
+        var dataFile = SyntheticData.write(tempDir.resolve("data.json"), PERSONS, objectMapper);
+        var store = new DataStore(new JsonUtils(dataFile.toString(), objectMapper, Layout.SINGLE),
+                new Journal(dataFile.toString(), objectMapper, false), new BinarySnapshot(dataFile.toString(), false));
+        var root = objectMapper.readValue(dataFile.toFile(), ObjectNode.class);
+        var searchService = new SearchService(new SearchIndex(store, Clock.systemDefaultZone()));
+        var address = SyntheticData.address(PERSONS / 6);
+
+        System.out.printf("Per-request data access with %d persons%n", PERSONS);
+        var before = Measurement.run("before: tree conversion for each data type", 200, () -> {
+            treeToList(objectMapper, root, "persons", PersonDTO.class);
+            treeToList(objectMapper, root, "medicalrecords", MedicalRecordDTO.class);
+            treeToList(objectMapper, root, "firestations", FirestationDTO.class);
+        });
+        var after = Measurement.run("after: DataStore table reads", 200, () -> {
+            store.persons().values().forEach(person -> { });
+            store.medicalRecords().values().forEach(record -> { });
+            store.firestations().values().forEach(firestation -> { });
+        });
+        Measurement.run("after: complete /fire search", 200, () -> searchService.getFire(address));
+
+        assertTrue(after.bytesPerOp() < before.bytesPerOp());
+    }
+
+    /**
+     * Converts a node array the way JsonUtils.get did on each call before the typed store.
+     */
+    private static <T> List<T> treeToList(ObjectMapper objectMapper, ObjectNode root, String name, Class<T> type) {
+        try {
+            return objectMapper.treeToValue(root.get(name),
+                    TypeFactory.defaultInstance().constructCollectionType(List.class, type));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
@@ -0,0 +1,121 @@
+package com.safetynet.alerts.benchmark;
+
+import com.safetynet.alerts.config.JsonConfig;
+import com.safetynet.alerts.data.BinarySnapshot;
+import com.safetynet.alerts.data.DataStore;
+import com.safetynet.alerts.data.Journal;
+import com.safetynet.alerts.export.ExportService;
+import com.safetynet.alerts.person.PersonDTO;
+import com.safetynet.alerts.search.DataSnapshot;
+import com.safetynet.alerts.search.SearchIndex;
+import com.safetynet.alerts.util.JsonUtils;
+import com.safetynet.alerts.util.JsonUtils.Layout;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Measures the throughput of exporting a dataset of 1,000,000 persons, with their medical records
+ * and fire station assignments, as JSON and as newline-delimited JSON, and the latency of person
+ * changes applied while exports are running.
+ *
+ * <p>The dataset needs a larger heap than the default: run with
+ * {@code JAVA_TOOL_OPTIONS=-Xmx4500m mvn test -Dbenchmark=true -Dtest=ExportBenchmark}.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class ExportBenchmark {
+
+    private static final int PERSONS = 1_000_000;
+
+    private static final int CHANGES = 2_000;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void exportThroughput() throws Exception {
+        var objectMapper = new JsonConfig().objectMapper();
+        var dataFile = SyntheticData.write(tempDir.resolve("data.json"), PERSONS, objectMapper);
+        var store = new DataStore(new JsonUtils(dataFile.toString(), objectMapper, Layout.SINGLE),
+                new Journal(dataFile.toString(), objectMapper, false), new BinarySnapshot(dataFile.toString(), false));
+        var service = new ExportService(new SearchIndex(store, Clock.systemDefaultZone()), store, objectMapper);
+        var snapshot = service.snapshot();
+        int entities = store.persons().size() + store.medicalRecords().size() + store.firestations().size();
+
+        throughput("JSON", snapshot, entities, out -> service.writeJson(snapshot, out));
+        throughput("NDJSON", snapshot, entities, out -> service.writeNdjson(snapshot, out));
+
+        var next = new AtomicInteger();
+        Measurement.latencies("person change, idle", CHANGES, i -> change(store, next.getAndIncrement()));
+        var exporting = new AtomicBoolean(true);
+        var exporter = Thread.ofPlatform().start(() -> {
+            while (exporting.get()) {
+                export(out -> service.writeJson(service.snapshot(), out));
+            }
+        });
+        Measurement.latencies("person change, while exporting", CHANGES, i -> change(store, next.getAndIncrement()));
+        exporting.set(false);
+        exporter.join();
+    }
+
+    private static void throughput(String label, DataSnapshot snapshot, int entities, Export export) {
+        long bytes = export(export);
+        var result = Measurement.run(label + " export", 3, () -> export(export));
+        double seconds = result.nanosPerOp() / 1e9;
+        System.out.printf("%-45s %10.1f MB, %6.1f MB/s, %9.0f entities/s, version %d%n", label + " throughput",
+                bytes / 1e6, bytes / 1e6 / seconds, entities / seconds, snapshot.version());
+    }
+
+    private static long export(Export export) {
+        var out = new CountingOutputStream();
+        try {
+            export.writeTo(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.count;
+    }
+
+    private static void change(DataStore store, int n) {
+        var person = new PersonDTO();
+        person.setFirstName("Changed" + n);
+        person.setLastName("Exporter");
+        person.setAddress(SyntheticData.address(n));
+        person.setCity("City0");
+        person.setZip("97451");
+        person.setPhone("841-874-0000");
+        person.setEmail("changed%d@email.com".formatted(n));
+        store.persons().insert(person);
+    }
+
+    private interface Export {
+
+        void writeTo(OutputStream out) throws IOException;
+
+    }
+
+    private static class CountingOutputStream extends OutputStream {
+
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+
+    }
+
+}
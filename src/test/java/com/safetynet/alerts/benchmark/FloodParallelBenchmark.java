@@ -0,0 +1,80 @@
+package com.safetynet.alerts.benchmark;
+
+import com.safetynet.alerts.config.JsonConfig;
+import com.safetynet.alerts.data.BinarySnapshot;
+import com.safetynet.alerts.data.DataStore;
+import com.safetynet.alerts.data.Journal;
+import com.safetynet.alerts.search.PersonData;
+import com.safetynet.alerts.search.SearchIndex;
+import com.safetynet.alerts.search.SearchService;
+import com.safetynet.alerts.util.JsonUtils;
+import com.safetynet.alerts.util.JsonUtils.Layout;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Clock;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Measures flood searches over growing numbers of fire stations: the former grouping, filtering
+ * persons with {@code List.contains} over covered addresses, against the current search, run in
+ * fork-join pools of 1, 2 and 4 threads. The speed-up of the pools is bounded by the number of
+ * available cores, printed first.
+ *
+ * <p>Run with {@code mvn test -Dbenchmark=true -Dtest=FloodParallelBenchmark}.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class FloodParallelBenchmark {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void floodSearchCost() throws Exception {
+        var objectMapper = new JsonConfig().objectMapper();
+        var dataFile = SyntheticData.write(tempDir.resolve("data.json"), 100_000, objectMapper);
+        var store = new DataStore(new JsonUtils(dataFile.toString(), objectMapper, Layout.SINGLE),
+                new Journal(dataFile.toString(), objectMapper, false), new BinarySnapshot(dataFile.toString(), false));
+        var service = new SearchService(new SearchIndex(store, Clock.systemDefaultZone()));
+        var snapshot = service.snapshot();
+        System.out.printf("%d available core(s)%n", Runtime.getRuntime().availableProcessors());
+
+        for (int stations : new int[] {1, 10, 50}) {
+            var stationNumbers = IntStream.rangeClosed(1, stations).boxed().collect(Collectors.toSet());
+            int iterations = Math.max(5, 100 / stations);
+            System.out.printf("%d station(s), %d addresses%n", stations,
+                    stationNumbers.stream().mapToInt(station -> snapshot.addresses(station).size()).sum());
+
+            if (stations <= 10) {
+                Measurement.run("List.contains grouping", iterations, () -> {
+                    var addresses = stationNumbers.stream()
+                            .flatMap(station -> snapshot.addresses(station).stream())
+                            .distinct().sorted().toList();
+                    var persons = addresses.stream()
+                            .flatMap(address -> snapshot.residentData(address).stream()).toList();
+                    persons.stream()
+                            .filter(person -> addresses.contains(person.address()))
+                            .collect(Collectors.groupingBy(PersonData::address));
+                });
+            }
+            for (int parallelism : new int[] {1, 2, 4}) {
+                var pool = new ForkJoinPool(parallelism);
+                Measurement.run("fork-join pool of " + parallelism, iterations, () -> {
+                    try {
+                        pool.submit(() -> service.getFloodStations(snapshot, stationNumbers)).get();
+                    } catch (InterruptedException | ExecutionException e) {
+                        throw new IllegalStateException(e);
+                    }
+                });
+                pool.shutdown();
+            }
+        }
+    }
+
+}
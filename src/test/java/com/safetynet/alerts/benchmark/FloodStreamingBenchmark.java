@@ -0,0 +1,83 @@
+package com.safetynet.alerts.benchmark;
+
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.safetynet.alerts.config.JsonConfig;
+import com.safetynet.alerts.data.BinarySnapshot;
+import com.safetynet.alerts.data.DataStore;
+import com.safetynet.alerts.data.Journal;
+import com.safetynet.alerts.search.SearchIndex;
+import com.safetynet.alerts.search.SearchService;
+import com.safetynet.alerts.util.JsonUtils;
+import com.safetynet.alerts.util.JsonUtils.Layout;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Compares a flood response collected into a single JSON result, as before, with the same
+ * households streamed as newline-delimited JSON, for growing coverages. The collected form holds
+ * the whole result and its encoding at once, the streamed form a single household.
+ *
+ * <p>Run with {@code mvn test -Dbenchmark=true -Dtest=FloodStreamingBenchmark}.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class FloodStreamingBenchmark {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void floodResponseCost() throws Exception {
+        var objectMapper = new JsonConfig().objectMapper();
+        var dataFile = SyntheticData.write(tempDir.resolve("data.json"), 100_000, objectMapper);
+        var store = new DataStore(new JsonUtils(dataFile.toString(), objectMapper, Layout.SINGLE),
+                new Journal(dataFile.toString(), objectMapper, false), new BinarySnapshot(dataFile.toString(), false));
+        var searchService = new SearchService(new SearchIndex(store, Clock.systemDefaultZone()));
+        var snapshot = searchService.snapshot();
+        var lineWriter = objectMapper.writer().without(SerializationFeature.INDENT_OUTPUT);
+
+        for (int stations : new int[] {1, 5, 10}) {
+            var stationNumbers = IntStream.rangeClosed(1, stations).boxed().collect(Collectors.toSet());
+            int largestLine = 0;
+            for (var household : searchService.streamFloodStations(snapshot, stationNumbers).toList()) {
+                largestLine = Math.max(largestLine, lineWriter.writeValueAsBytes(household).length);
+            }
+            System.out.printf("%d station(s): %d bytes collected, largest streamed line %d bytes%n", stations,
+                    objectMapper.writeValueAsBytes(searchService.getFloodStations(snapshot, stationNumbers)).length,
+                    largestLine);
+
+            int iterations = Math.max(10, 100 / stations);
+            Measurement.run("collected JSON", iterations, () -> {
+                try {
+                    OutputStream.nullOutputStream().write(
+                            objectMapper.writeValueAsBytes(searchService.getFloodStations(snapshot, stationNumbers)));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            Measurement.run("streamed NDJSON", iterations, () -> {
+                try {
+                    var out = new BufferedOutputStream(OutputStream.nullOutputStream(), 8192);
+                    var households = searchService.streamFloodStations(snapshot, stationNumbers).iterator();
+                    while (households.hasNext()) {
+                        out.write(lineWriter.writeValueAsBytes(households.next()));
+                        out.write('\n');
+                    }
+                    out.flush();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+    }
+
+}
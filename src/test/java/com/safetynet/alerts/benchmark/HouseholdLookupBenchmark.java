@@ -0,0 +1,48 @@
+package com.safetynet.alerts.benchmark;
+
+import com.safetynet.alerts.config.JsonConfig;
+import com.safetynet.alerts.data.BinarySnapshot;
+import com.safetynet.alerts.data.DataStore;
+import com.safetynet.alerts.data.Journal;
+import com.safetynet.alerts.search.SearchIndex;
+import com.safetynet.alerts.search.SearchService;
+import com.safetynet.alerts.util.JsonUtils;
+import com.safetynet.alerts.util.JsonUtils.Layout;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.nio.file.Path;
+import java.time.Clock;
+
+/**
+ * Measures /fire and /childAlert search latency percentiles for growing datasets. With the
+ * household index, latencies should not depend on the number of residents.
+ *
+ * <p>Run with {@code mvn test -Dbenchmark=true -Dtest=HouseholdLookupBenchmark}.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class HouseholdLookupBenchmark {
+
+    @TempDir
+    Path tempDir;
+
+    @ParameterizedTest
+    @ValueSource(ints = {10_000, 100_000, 400_000})
+    public void householdLookupLatency(int persons) throws Exception {
+        var objectMapper = new JsonConfig().objectMapper();
+        var dataFile = SyntheticData.write(tempDir.resolve("data.json"), persons, objectMapper);
+        var store = new DataStore(new JsonUtils(dataFile.toString(), objectMapper, Layout.SINGLE),
+                new Journal(dataFile.toString(), objectMapper, false), new BinarySnapshot(dataFile.toString(), false));
+        var searchService = new SearchService(new SearchIndex(store, Clock.systemDefaultZone()));
+        int households = persons / 3;
+
+        System.out.printf("Household lookups with %d persons%n", persons);
+        Measurement.latencies("/fire", 20_000,
+                i -> searchService.getFire(SyntheticData.address(i * 7919 % households)));
+        Measurement.latencies("/childAlert", 20_000,
+                i -> searchService.getChildAlert(SyntheticData.address(i * 7919 % households)));
+    }
+
+}
@@ -0,0 +1,92 @@
+package com.safetynet.alerts.benchmark;
+
+import com.safetynet.alerts.config.JsonConfig;
+import com.safetynet.alerts.data.BinarySnapshot;
+import com.safetynet.alerts.data.DataStore;
+import com.safetynet.alerts.data.Journal;
+import com.safetynet.alerts.search.NameMatch;
+import com.safetynet.alerts.search.SearchIndex;
+import com.safetynet.alerts.search.SearchService;
+import com.safetynet.alerts.util.JsonUtils;
+import com.safetynet.alerts.util.JsonUtils.Layout;
+import com.safetynet.alerts.util.SortedKeySet;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.nio.file.Path;
+import java.time.Clock;
+import java.util.ArrayList;
+
+/**
+ * Measures /personInfo and /lastNames latency percentiles for growing datasets, against a scan of
+ * all persons. With the last name index, latencies should not depend on the number of residents.
+ *
+ * <p>A million residents do not fit in the test heap with the full search stack, so the index
+ * alone is also measured with a million distinct last names.
+ *
+ * <p>Run with {@code mvn test -Dbenchmark=true -Dtest=LastNameLookupBenchmark}.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class LastNameLookupBenchmark {
+
+    @TempDir
+    Path tempDir;
+
+    @ParameterizedTest
+    @ValueSource(ints = {10_000, 100_000, 400_000})
+    public void lastNameLookupLatency(int persons) throws Exception {
+        var objectMapper = new JsonConfig().objectMapper();
+        var dataFile = SyntheticData.write(tempDir.resolve("data.json"), persons, objectMapper);
+        var store = new DataStore(new JsonUtils(dataFile.toString(), objectMapper, Layout.SINGLE),
+                new Journal(dataFile.toString(), objectMapper, false), new BinarySnapshot(dataFile.toString(), false));
+        var searchService = new SearchService(new SearchIndex(store, Clock.systemDefaultZone()));
+        var snapshot = searchService.snapshot();
+        int households = persons / 3;
+
+        System.out.printf("Last name lookups with %d persons%n", persons);
+        Measurement.latencies("/personInfo scan", 100,
+                i -> snapshot.personData().stream()
+                        .filter(personData -> personData.lastName().equals(lastName(i * 7919 % households)))
+                        .toList());
+        Measurement.latencies("/personInfo exact", 20_000,
+                i -> searchService.getPersonInfo(snapshot, lastName(i * 7919 % households), NameMatch.EXACT));
+        Measurement.latencies("/personInfo ignore-case", 20_000,
+                i -> searchService.getPersonInfo(snapshot, lastName(i * 7919 % households).toUpperCase(),
+                        NameMatch.IGNORE_CASE));
+        Measurement.latencies("/lastNames top 10", 20_000,
+                i -> searchService.getLastNames(snapshot, prefix(i), 10));
+    }
+
+    @Test
+    public void lastNameIndexLatency() {
+        int lastNames = 1_000_000;
+        var keys = new ArrayList<String>(lastNames);
+        for (int i = 0; i < lastNames; i++) {
+            keys.add(lastName(i).toLowerCase());
+        }
+        var index = SortedKeySet.copyOf(keys);
+
+        System.out.printf("Last name index with %d last names%n", lastNames);
+        Measurement.latencies("top 10 by prefix", 100_000, i -> index.startingWith(prefix(i), 10));
+        Measurement.latencies("top 100 by prefix", 100_000, i -> index.startingWith(prefix(i), 100));
+        var updated = new SortedKeySet[] {index};
+        Measurement.latencies("add and remove a last name", 100_000, i -> {
+            var key = "new" + i;
+            updated[0] = updated[0].with(key).without(key);
+        });
+    }
+
+    // last name of the n-th synthetic household
+    private static String lastName(int household) {
+        return new String[] {"Boyd", "Carman", "Cooper", "Duncan", "Ferguson", "Marrack", "Peters", "Shepard",
+                "Stelzer", "Walker", "Zemicks", "Adams", "Baker", "Clark", "Davis", "Evans"}[household % 16] + household;
+    }
+
+    private static String prefix(int i) {
+        return lastName(i * 7919 % 16).toLowerCase().substring(0, 1 + i % 4);
+    }
+
+}
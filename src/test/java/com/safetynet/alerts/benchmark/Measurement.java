@@ -0,0 +1,88 @@
+package com.safetynet.alerts.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Minimal measurement helpers shared by benchmarks: average time and heap allocation per
+ * operation on the calling thread.
+ */
+public final class Measurement {
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private Measurement() { }
+
+    /**
+     * Runs an operation repeatedly after a warmup phase and prints its average cost.
+     *
+     * @param label the label printed with the result
+     * @param iterations the number of measured iterations, also used for warmup
+     * @param operation the measured operation
+     * @return the measurement result
+     */
+    public static Result run(String label, int iterations, Runnable operation) {
+        for (int i = 0; i < iterations; i++) {
+            operation.run();
+        }
+
+        long bytesBefore = THREADS.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            operation.run();
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = THREADS.getCurrentThreadAllocatedBytes() - bytesBefore;
+
+        var result = new Result(label, (double) elapsed / iterations, (double) allocated / iterations);
+        System.out.println(result);
+        return result;
+    }
+
+    /**
+     * Times each call of an operation separately and prints latency percentiles.
+     *
+     * @param label the label printed with the result
+     * @param iterations the number of measured calls, also used for warmup
+     * @param operation the measured operation, given the call number
+     * @return the latency percentiles
+     */
+    public static Latencies latencies(String label, int iterations, IntConsumer operation) {
+        for (int i = 0; i < iterations; i++) {
+            operation.accept(i);
+        }
+
+        var nanos = new long[iterations];
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            operation.accept(i);
+            nanos[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(nanos);
+
+        var latencies = new Latencies(label, nanos[iterations / 2], nanos[iterations * 99 / 100], nanos[iterations - 1]);
+        System.out.println(latencies);
+        return latencies;
+    }
+
+    public record Latencies(String label, long p50, long p99, long max) {
+
+        @Override
+        public String toString() {
+            return "%-45s p50 %8.1f us  p99 %8.1f us  max %9.1f us".formatted(label, p50 / 1e3, p99 / 1e3, max / 1e3);
+        }
+
+    }
+
+    public record Result(String label, double nanosPerOp, double bytesPerOp) {
+
+        @Override
+        public String toString() {
+            return "%-45s %12.1f us/op %14.0f B/op".formatted(label, nanosPerOp / 1_000, bytesPerOp);
+        }
+
+    }
+
+}
@@ -0,0 +1,88 @@
+package com.safetynet.alerts.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.safetynet.alerts.config.JsonConfig;
+import com.safetynet.alerts.data.BinarySnapshot;
+import com.safetynet.alerts.data.DataStore;
+import com.safetynet.alerts.data.Journal;
+import com.safetynet.alerts.search.EncodedResult;
+import com.safetynet.alerts.search.SearchIndex;
+import com.safetynet.alerts.search.SearchService;
+import com.safetynet.alerts.util.JsonUtils;
+import com.safetynet.alerts.util.JsonUtils.Layout;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.util.Set;
+
+/**
+ * Measures the cost of writing a cached search result to a response, serialized by Jackson for
+ * each response as before, against its encoded form kept with the result, with and without gzip.
+ *
+ * <p>Run with {@code mvn test -Dbenchmark=true -Dtest=ResponseEncodingBenchmark}.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class ResponseEncodingBenchmark {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void responseEncodingCost() throws Exception {
+        var objectMapper = new JsonConfig().objectMapper();
+        var dataFile = SyntheticData.write(tempDir.resolve("data.json"), 100_000, objectMapper);
+        var store = new DataStore(new JsonUtils(dataFile.toString(), objectMapper, Layout.SINGLE),
+                new Journal(dataFile.toString(), objectMapper, false), new BinarySnapshot(dataFile.toString(), false));
+        var searchService = new SearchService(new SearchIndex(store, Clock.systemDefaultZone()));
+        var snapshot = searchService.snapshot();
+
+        measure("/fire", searchService.getFire(snapshot, SyntheticData.address(42)), objectMapper);
+        measure("/flood/stations (1 station)", searchService.getFloodStations(snapshot, Set.of(1)), objectMapper);
+        measure("/flood/stations (5 stations)", searchService.getFloodStations(snapshot, Set.of(1, 2, 3, 4, 5)), objectMapper);
+    }
+
+    private static void measure(String label, Object result, ObjectMapper objectMapper) {
+        var response = new ByteArrayOutputStream();
+        var encoded = new EncodedResult<>(result);
+        System.out.printf("%s: %d bytes, %d gzipped%n", label,
+                encoded.json(value -> encode(objectMapper, value)).length,
+                encoded.gzip(value -> encode(objectMapper, value)).length);
+
+        int iterations = label.startsWith("/fire") ? 20_000 : 200;
+        Measurement.run("Jackson per response", iterations, () -> {
+            response.reset();
+            try {
+                objectMapper.writeValue(response, result);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        Measurement.run("encoded once", iterations, () -> {
+            response.reset();
+            response.writeBytes(encoded.json(value -> encode(objectMapper, value)));
+        });
+        Measurement.run("Jackson and gzip per response", iterations, () -> {
+            response.reset();
+            response.writeBytes(new EncodedResult<>(result).gzip(value -> encode(objectMapper, value)));
+        });
+        Measurement.run("encoded and gzipped once", iterations, () -> {
+            response.reset();
+            response.writeBytes(encoded.gzip(value -> encode(objectMapper, value)));
+        });
+    }
+
+    private static byte[] encode(ObjectMapper objectMapper, Object result) {
+        try {
+            return objectMapper.writeValueAsBytes(result);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+}
@@ -0,0 +1,66 @@
+package com.safetynet.alerts.benchmark;
+
+import com.safetynet.alerts.config.JsonConfig;
+import com.safetynet.alerts.data.BinarySnapshot;
+import com.safetynet.alerts.data.DataStore;
+import com.safetynet.alerts.data.Journal;
+import com.safetynet.alerts.search.SearchIndex;
+import com.safetynet.alerts.search.SearchService;
+import com.safetynet.alerts.util.JsonUtils;
+import com.safetynet.alerts.util.JsonUtils.Layout;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.nio.file.Path;
+import java.time.Clock;
+import java.util.ArrayList;
+
+/**
+ * Measures the cost of publishing a new data snapshot on each change, and household lookup
+ * latency while changes are published. Snapshots share all unchanged shards with their
+ * predecessor, so the cost of a change should grow much slower than the dataset.
+ *
+ * <p>Run with {@code mvn test -Dbenchmark=true -Dtest=SnapshotPublicationBenchmark}.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class SnapshotPublicationBenchmark {
+
+    @TempDir
+    Path tempDir;
+
+    @ParameterizedTest
+    @ValueSource(ints = {10_000, 100_000, 400_000})
+    public void publicationCost(int persons) throws Exception {
+        var objectMapper = new JsonConfig().objectMapper();
+        var dataFile = SyntheticData.write(tempDir.resolve("data.json"), persons, objectMapper);
+        var store = new DataStore(new JsonUtils(dataFile.toString(), objectMapper, Layout.SINGLE),
+                new Journal(dataFile.toString(), objectMapper, false), new BinarySnapshot(dataFile.toString(), false));
+        var index = new SearchIndex(store, Clock.systemDefaultZone());
+        var searchService = new SearchService(index);
+        var people = new ArrayList<>(store.persons().values());
+        int households = persons / 3;
+
+        System.out.printf("Snapshot publication with %d persons%n", persons);
+        Measurement.run("person change", 20_000, () -> {
+            var person = people.get((int) (index.snapshot().version() * 7919 % people.size()));
+            store.persons().replace(person.getId(), person);
+        });
+
+        var writer = Thread.ofPlatform().start(() -> {
+            for (int i = 0; !Thread.currentThread().isInterrupted(); i++) {
+                var person = people.get(i * 7919 % people.size());
+                store.persons().replace(person.getId(), person);
+            }
+        });
+        try {
+            Measurement.latencies("/fire during writes", 20_000,
+                    i -> searchService.getFire(SyntheticData.address(i * 7919 % households)));
+        } finally {
+            writer.interrupt();
+            writer.join();
+        }
+    }
+
+}
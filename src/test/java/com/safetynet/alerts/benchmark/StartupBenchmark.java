@@ -0,0 +1,59 @@
+package com.safetynet.alerts.benchmark;
+
+import com.safetynet.alerts.config.JsonConfig;
+import com.safetynet.alerts.data.BinarySnapshot;
+import com.safetynet.alerts.data.DataStore;
+import com.safetynet.alerts.data.Journal;
+import com.safetynet.alerts.util.JsonUtils;
+import com.safetynet.alerts.util.JsonUtils.Layout;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Compares store loading times from data.json and from its binary snapshot.
+ *
+ * <p>Run with {@code mvn test -Dbenchmark=true -Dtest=StartupBenchmark}.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class StartupBenchmark {
+
+    private static final int RUNS = 5;
+
+    @TempDir
+    Path tempDir;
+
+    @ParameterizedTest
+    @ValueSource(ints = {100_000, 400_000})
+    public void compareJsonAndBinaryLoading(int persons) throws Exception {
+        var objectMapper = new JsonConfig().objectMapper();
+        var dataFile = SyntheticData.write(tempDir.resolve("data.json"), persons, objectMapper);
+        var jsonUtils = new JsonUtils(dataFile.toString(), objectMapper, Layout.SINGLE);
+        var journal = new Journal(dataFile.toString(), objectMapper, false);
+        var disabledSnapshot = new BinarySnapshot(dataFile.toString(), false);
+        var enabledSnapshot = new BinarySnapshot(dataFile.toString(), true);
+        enabledSnapshot.fromJson(jsonUtils);
+
+        System.out.printf("Store loading with %d persons: data.json %.1f MB, snapshot %.1f MB%n", persons,
+                Files.size(dataFile) / 1e6, Files.size(enabledSnapshot.getPath()) / 1e6);
+        long json = bestOf(() -> new DataStore(jsonUtils, journal, disabledSnapshot));
+        long binary = bestOf(() -> new DataStore(jsonUtils, journal, enabledSnapshot));
+        System.out.printf("  data.json       %6d ms%n", json);
+        System.out.printf("  binary snapshot %6d ms (%.1fx faster)%n", binary, (double) json / binary);
+    }
+
+    private static long bestOf(Runnable load) {
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < RUNS; i++) {
+            long start = System.nanoTime();
+            load.run();
+            best = Math.min(best, (System.nanoTime() - start) / 1_000_000);
+        }
+        return best;
+    }
+
+}
@@ -0,0 +1,102 @@
+package com.safetynet.alerts.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.safetynet.alerts.firestation.FirestationDTO;
+import com.safetynet.alerts.medicalrecord.MedicalRecordDTO;
+import com.safetynet.alerts.person.PersonDTO;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Generates data.json files of arbitrary size for benchmarks.
+ *
+ * <p>People are grouped in households of one to five residents, households are spread over 20
+ * cities and covered by 50 fire stations. Every person has a medical record.
+ */
+public final class SyntheticData {
+
+    public static final int STATIONS = 50;
+    public static final int CITIES = 20;
+
+    private static final String[] LAST_NAMES = {"Boyd", "Carman", "Cooper", "Duncan", "Ferguson", "Marrack",
+            "Peters", "Shepard", "Stelzer", "Walker", "Zemicks", "Adams", "Baker", "Clark", "Davis", "Evans"};
+
+    private SyntheticData() { }
+
+    /**
+     * Writes a synthetic data file.
+     *
+     * @param file the file to write
+     * @param personCount the number of persons to generate
+     * @param objectMapper the mapper used to write the file
+     * @return the written file
+     */
+    public static Path write(Path file, int personCount, ObjectMapper objectMapper) throws IOException {
+        var random = new Random(42);
+        var persons = new ArrayList<PersonDTO>(personCount);
+        var records = new ArrayList<MedicalRecordDTO>(personCount);
+        var firestations = new ArrayList<FirestationDTO>();
+
+        int household = 0;
+        while (persons.size() < personCount) {
+            var address = address(household);
+            var lastName = LAST_NAMES[household % LAST_NAMES.length] + household;
+            var city = "City" + household % CITIES;
+
+            var firestation = new FirestationDTO();
+            firestation.setAddress(address);
+            firestation.setStation(1 + household % STATIONS);
+            firestations.add(firestation);
+
+            int residents = 1 + random.nextInt(5);
+            for (int i = 0; i < residents && persons.size() < personCount; i++) {
+                var person = new PersonDTO();
+                person.setFirstName("First" + i);
+                person.setLastName(lastName);
+                person.setAddress(address);
+                person.setCity(city);
+                person.setZip("97451");
+                person.setPhone("841-874-%04d".formatted(household % 10_000));
+                person.setEmail("first%d.%s@email.com".formatted(i, lastName.toLowerCase()));
+                persons.add(person);
+
+                var record = new MedicalRecordDTO();
+                record.setFirstName(person.getFirstName());
+                record.setLastName(lastName);
+                record.setBirthdate(LocalDate.of(1930 + random.nextInt(95), 1 + random.nextInt(12), 1 + random.nextInt(28)));
+                record.setMedications(Set.of("aznol:350mg", "hydrapermazol:100mg"));
+                record.setAllergies(Set.of("nillacilan"));
+                records.add(record);
+            }
+            household++;
+        }
+
+        var root = new LinkedHashMap<String, List<?>>();
+        root.put("persons", persons);
+        root.put("firestations", firestations);
+        root.put("medicalrecords", records);
+        try (var outputStream = Files.newOutputStream(file)) {
+            objectMapper.writeValue(outputStream, root);
+        }
+        return file;
+    }
+
+    /**
+     * Returns the address of the n-th generated household.
+     *
+     * @param household the household number
+     * @return the household address
+     */
+    public static String address(int household) {
+        return household + " Synthetic St";
+    }
+
+}
@@ -0,0 +1,166 @@
+package com.safetynet.alerts.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.safetynet.alerts.config.JsonConfig;
+import com.safetynet.alerts.data.BinarySnapshot;
+import com.safetynet.alerts.data.DataStore;
+import com.safetynet.alerts.data.DataWriter;
+import com.safetynet.alerts.data.DataWriter.Mode;
+import com.safetynet.alerts.data.Journal;
+import com.safetynet.alerts.person.PersonDTO;
+import com.safetynet.alerts.search.SearchIndex;
+import com.safetynet.alerts.search.SearchService;
+import com.safetynet.alerts.util.JsonUtils;
+import com.safetynet.alerts.util.JsonUtils.Layout;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static com.safetynet.alerts.config.JsonTestConfig.SAMPLE_ORIG_PATH;
+
+/**
+ * Compares request execution on a pool of 200 platform threads, as Tomcat does by default, with
+ * one virtual thread per request, under a mixed workload: 4,000 requests per second for 2 seconds,
+ * 90% fire searches and 10% person changes written through to a disk taking 10 ms per write. Writes
+ * arrive faster than the disk can take them, so writing requests pile up waiting for the disk.
+ *
+ * <p>Latencies are measured from the arrival of each request, including the time spent waiting for
+ * a thread.
+ *
+ * <p>Run with {@code mvn test -Dbenchmark=true -Dtest=VirtualThreadBenchmark}.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class VirtualThreadBenchmark {
+
+    private static final int REQUESTS_PER_SECOND = 4_000;
+
+    private static final int REQUESTS = 8_000;
+
+    private static final int WRITE_EVERY = 10;
+
+    private static final Duration DISK_LATENCY = Duration.ofMillis(10);
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void mixedWorkload() throws Exception {
+        run("platform threads (200)", Executors.newFixedThreadPool(200), false);
+        run("virtual threads", Executors.newVirtualThreadPerTaskExecutor(), true);
+    }
+
+    private void run(String label, ExecutorService executor, boolean virtualThreads) throws Exception {
+        var objectMapper = new JsonConfig().objectMapper();
+        var dataFile = Files.copy(Paths.get(SAMPLE_ORIG_PATH), Files.createTempFile(tempDir, "data", ".json"),
+                java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+        var jsonUtils = new SlowDiskJsonUtils(dataFile, objectMapper);
+        var journal = new Journal(dataFile.toString(), objectMapper, false);
+        var binarySnapshot = new BinarySnapshot(dataFile.toString(), false);
+        var store = new DataStore(jsonUtils, journal, binarySnapshot);
+        var service = new SearchService(new SearchIndex(store, Clock.systemDefaultZone()));
+        var writer = new DataWriter(store, jsonUtils, journal, binarySnapshot, new SimpleMeterRegistry(),
+                Mode.WRITE_THROUGH, Duration.ofSeconds(1), 1000, virtualThreads);
+        writer.start();
+        var persons = List.copyOf(store.persons().values());
+
+        var readNanos = new long[REQUESTS];
+        var writeNanos = new long[REQUESTS];
+        long start = System.nanoTime();
+        for (int i = 0; i < REQUESTS; i++) {
+            long arrival = start + i * 1_000_000_000L / REQUESTS_PER_SECOND;
+            LockSupport.parkNanos(arrival - System.nanoTime());
+            var request = i;
+            var person = persons.get(i % persons.size());
+            executor.execute(() -> {
+                if (request % WRITE_EVERY == 0) {
+                    store.persons().replace(store.persons().idOf(person), withPhone(person, request));
+                    writeNanos[request] = System.nanoTime() - arrival;
+                } else {
+                    encode(objectMapper, service.getFire(service.snapshot(), person.getAddress()));
+                    readNanos[request] = System.nanoTime() - arrival;
+                }
+            });
+        }
+        executor.shutdown();
+        executor.awaitTermination(5, TimeUnit.MINUTES);
+        writer.shutdown();
+
+        var reads = completed(readNanos);
+        var writes = completed(writeNanos);
+        long lastRead = 0;
+        for (int i = 0; i < REQUESTS; i++) {
+            if (readNanos[i] > 0) {
+                lastRead = Math.max(lastRead, i * 1_000_000_000L / REQUESTS_PER_SECOND + readNanos[i]);
+            }
+        }
+        System.out.printf("%-25s reads  %5d in %6.2f s (%6.0f/s)  p50 %8.1f ms  p99 %8.1f ms  max %8.1f ms%n",
+                label, reads.length, lastRead / 1e9, reads.length / (lastRead / 1e9),
+                percentile(reads, 50), percentile(reads, 99), percentile(reads, 100));
+        System.out.printf("%-25s writes %5d                      p50 %8.1f ms  p99 %8.1f ms  max %8.1f ms%n",
+                label, writes.length, percentile(writes, 50), percentile(writes, 99), percentile(writes, 100));
+    }
+
+    private static long[] completed(long[] nanos) {
+        return Arrays.stream(nanos).filter(n -> n > 0).sorted().toArray();
+    }
+
+    private static double percentile(long[] sorted, int percentile) {
+        return sorted[Math.min(sorted.length - 1, sorted.length * percentile / 100)] / 1e6;
+    }
+
+    private static PersonDTO withPhone(PersonDTO person, int request) {
+        var changed = new PersonDTO();
+        changed.setFirstName(person.getFirstName());
+        changed.setLastName(person.getLastName());
+        changed.setAddress(person.getAddress());
+        changed.setCity(person.getCity());
+        changed.setZip(person.getZip());
+        changed.setPhone("841-874-%04d".formatted(request % 10_000));
+        changed.setEmail(person.getEmail());
+        return changed;
+    }
+
+    private static void encode(ObjectMapper objectMapper, Object result) {
+        try {
+            objectMapper.writeValueAsBytes(result);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes data.json as usual, after waiting as long as a slow disk would.
+     */
+    private static class SlowDiskJsonUtils extends JsonUtils {
+
+        SlowDiskJsonUtils(Path dataFile, ObjectMapper objectMapper) {
+            super(dataFile.toString(), objectMapper, Layout.SINGLE);
+        }
+
+        @Override
+        public Fingerprint update(Map<String, ? extends Collection<?>> sections) {
+            LockSupport.parkNanos(DISK_LATENCY.toNanos());
+            return super.update(sections);
+        }
+
+    }
+
+}
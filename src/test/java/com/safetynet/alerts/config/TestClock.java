@@ -0,0 +1,43 @@
+package com.safetynet.alerts.config;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+/**
+ * Clock set by tests, to check date-dependent behaviour on chosen dates.
+ */
+public class TestClock extends Clock {
+
+	private volatile Instant instant;
+
+	public TestClock(LocalDate date) {
+		instant = startOf(date);
+	}
+
+	public void setDate(LocalDate date) {
+		instant = startOf(date);
+	}
+
+	private static Instant startOf(LocalDate date) {
+		return date.atStartOfDay(ZoneOffset.UTC).toInstant();
+	}
+
+	@Override
+	public ZoneId getZone() {
+		return ZoneOffset.UTC;
+	}
+
+	@Override
+	public Clock withZone(ZoneId zone) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public Instant instant() {
+		return instant;
+	}
+
+}